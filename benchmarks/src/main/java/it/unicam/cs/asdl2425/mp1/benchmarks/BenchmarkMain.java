@@ -0,0 +1,31 @@
+package it.unicam.cs.asdl2425.mp1.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Punto di ingresso del jar dei benchmark. Accetta le stesse opzioni da riga
+ * di comando di JMH (ad esempio un'espressione regolare per selezionare i
+ * benchmark, o {@code -p log2Leaves=10} per fissare un parametro) e abilita
+ * sempre il profiler {@code gc}, così che i risultati riportino anche
+ * {@code gc.alloc.rate.norm}, i byte allocati per operazione.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(cmd)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,49 @@
+package it.unicam.cs.asdl2425.mp1.benchmarks;
+
+import it.unicam.cs.asdl2425.mp1.HashLinkedList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dati comuni ai benchmark: liste di interi consecutivi, eventualmente con
+ * alcuni elementi modificati a intervalli regolari.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * Restituisce gli interi da 0 a size - 1.
+     */
+    static List<Integer> data(int size) {
+        List<Integer> data = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) data.add(i);
+        return data;
+    }
+
+    /**
+     * Restituisce una lista con gli interi da 0 a size - 1.
+     */
+    static HashLinkedList<Integer> list(int size) {
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        list.addAllAtTail(data(size));
+        return list;
+    }
+
+    /**
+     * Restituisce una lista come {@link #list(int)} in cui differing elementi,
+     * distribuiti uniformemente, sono sostituiti da valori negativi.
+     */
+    static HashLinkedList<Integer> listWithDifferences(int size, int differing) {
+        List<Integer> data = data(size);
+        int step = size / differing;
+        for (int i = 0; i < differing; i++) data.set(i * step, -1 - i);
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        list.addAllAtTail(data);
+        return list;
+    }
+}
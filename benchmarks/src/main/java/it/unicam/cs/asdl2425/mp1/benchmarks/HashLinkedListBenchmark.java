@@ -0,0 +1,97 @@
+package it.unicam.cs.asdl2425.mp1.benchmarks;
+
+import it.unicam.cs.asdl2425.mp1.HashLinkedList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark delle operazioni di {@link HashLinkedList}: inserimento in testa,
+ * in coda e in blocco, rimozione e iterazione su liste di dimensione data.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HashLinkedListBenchmark {
+
+    @Param({ "1024", "65536" })
+    public int size;
+
+    private List<Integer> data;
+
+    private HashLinkedList<Integer> list;
+
+    @Setup
+    public void setup() {
+        data = Fixtures.data(size);
+        list = Fixtures.list(size);
+    }
+
+    /**
+     * Lista ricostruita prima di ogni invocazione, per i benchmark che la
+     * modificano.
+     */
+    @State(Scope.Thread)
+    public static class FreshList {
+        HashLinkedList<Integer> list;
+
+        @Setup(Level.Invocation)
+        public void setup(HashLinkedListBenchmark benchmark) {
+            list = Fixtures.list(benchmark.size);
+        }
+    }
+
+    @Benchmark
+    public HashLinkedList<Integer> addAtTail() {
+        HashLinkedList<Integer> result = new HashLinkedList<>();
+        for (Integer d : data) result.addAtTail(d);
+        return result;
+    }
+
+    @Benchmark
+    public HashLinkedList<Integer> addAtHead() {
+        HashLinkedList<Integer> result = new HashLinkedList<>();
+        for (Integer d : data) result.addAtHead(d);
+        return result;
+    }
+
+    @Benchmark
+    public HashLinkedList<Integer> addAllAtTail() {
+        HashLinkedList<Integer> result = new HashLinkedList<>();
+        result.addAllAtTail(data);
+        return result;
+    }
+
+    @Benchmark
+    public boolean removeLast(FreshList fresh) {
+        return fresh.list.remove(size - 1);
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        for (Integer d : list) bh.consume(d);
+    }
+
+    @Benchmark
+    public List<String> getAllHashes() {
+        return list.getAllHashes();
+    }
+}
@@ -0,0 +1,75 @@
+package it.unicam.cs.asdl2425.mp1.benchmarks;
+
+import it.unicam.cs.asdl2425.mp1.Digest;
+import it.unicam.cs.asdl2425.mp1.HashUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark del calcolo degli hash in {@link HashUtil}: hash di array di byte
+ * di varie dimensioni e hash dei dati.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HashUtilBenchmark {
+
+    @Param({ "16", "64", "1024", "65536" })
+    public int inputSize;
+
+    private byte[] input;
+
+    private final byte[] output = new byte[Digest.MD5_LENGTH];
+
+    private Integer data;
+
+    @Setup
+    public void setup() {
+        input = new byte[inputSize];
+        new Random(42).nextBytes(input);
+        data = 123456789;
+    }
+
+    @Benchmark
+    public String computeMD5() {
+        return HashUtil.computeMD5(input);
+    }
+
+    @Benchmark
+    public Digest computeDigest() {
+        return HashUtil.computeDigest(input);
+    }
+
+    @Benchmark
+    public byte[] computeMD5IntoArray() {
+        HashUtil.computeMD5(input, output, 0);
+        return output;
+    }
+
+    @Benchmark
+    public String dataToHash() {
+        return HashUtil.dataToHash(data);
+    }
+
+    @Benchmark
+    public Digest dataToDigest() {
+        return HashUtil.dataToDigest(data);
+    }
+}
@@ -0,0 +1,165 @@
+package it.unicam.cs.asdl2425.mp1.benchmarks;
+
+import it.unicam.cs.asdl2425.mp1.MerkleMultiProof;
+import it.unicam.cs.asdl2425.mp1.MerkleProof;
+import it.unicam.cs.asdl2425.mp1.MerkleProofCodec;
+import it.unicam.cs.asdl2425.mp1.MerkleProofVerifier;
+import it.unicam.cs.asdl2425.mp1.MerkleTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark della generazione delle prove di Merkle da un albero e della loro
+ * verifica, anche per prove multiple di 1000 foglie, e della codifica binaria
+ * delle prove con la verifica direttamente dal buffer. La verifica di un lotto
+ * di 10000 prove con {@link MerkleProofVerifier}, in sequenza e in parallelo,
+ * è confrontata con la verifica indipendente delle stesse prove.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class MerkleProofBenchmark {
+
+    private static final int BATCH = 1000; // Foglie provate da una prova multipla
+
+    private static final int PROOFS = 10000; // Prove di un lotto del verificatore
+
+    @Param({ "10", "14", "18", "22" })
+    public int log2Leaves;
+
+    private MerkleTree<Integer> tree;
+
+    private MerkleProof proof;
+
+    private Integer data;
+
+    private int[] batch;
+
+    private List<Integer> batchData;
+
+    private MerkleMultiProof multiProof;
+
+    private ByteBuffer encoded;
+
+    private ByteBuffer output;
+
+    private MerkleProofVerifier verifier;
+
+    private List<Integer> proofData;
+
+    private List<MerkleProof> proofs;
+
+    private ForkJoinPool sequential;
+
+    @Setup
+    public void setup() {
+        int size = 1 << log2Leaves;
+        tree = new MerkleTree<>(Fixtures.list(size));
+        data = size / 2;
+        proof = tree.getMerkleProof(data);
+        batch = new int[Math.min(BATCH, size)];
+        batchData = new ArrayList<>(batch.length);
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = (int) ((long) i * size / batch.length);     //foglie distribuite uniformemente
+            batchData.add(batch[i]);
+        }
+        multiProof = tree.getMerkleMultiProof(batch);
+        encoded = MerkleProofCodec.encode(proof);
+        output = ByteBuffer.allocateDirect(encoded.remaining());
+        verifier = new MerkleProofVerifier(tree.getRoot().getDigest());
+        int count = Math.min(PROOFS, size);
+        proofData = new ArrayList<>(count);
+        proofs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int leaf = (int) ((long) i * size / count);
+            proofData.add(leaf);
+            proofs.add(tree.getMerkleProofAt(leaf));
+        }
+        sequential = new ForkJoinPool(1);
+    }
+
+    @Benchmark
+    public MerkleProof getMerkleProofOfData() {
+        return tree.getMerkleProof(data);
+    }
+
+    @Benchmark
+    public MerkleProof getMerkleProofOfIndex() {
+        return tree.getMerkleProofAt(data);
+    }
+
+    @Benchmark
+    public MerkleProof getMerkleProofOfBranch() {
+        return tree.getMerkleProof(tree.getRoot().getLeft());
+    }
+
+    @Benchmark
+    public boolean proveValidityOfData() {
+        return proof.proveValidityOfData(data);
+    }
+
+    @Benchmark
+    public MerkleMultiProof getMerkleMultiProof() {
+        return tree.getMerkleMultiProof(batch);
+    }
+
+    @Benchmark
+    public boolean proveValidityOfBatch() {
+        return multiProof.proveValidityOfData(batchData);
+    }
+
+    @Benchmark
+    public int encode() {
+        output.clear();
+        return MerkleProofCodec.encode(proof, output);
+    }
+
+    @Benchmark
+    public MerkleProof decode() {
+        return MerkleProofCodec.decode(encoded.duplicate());
+    }
+
+    @Benchmark
+    public boolean verifyEncoded() {
+        return MerkleProofCodec.verifyData(encoded.duplicate(), data);
+    }
+
+    @Benchmark
+    public int verifyIndependent() {
+        int valid = 0;
+        for (int i = 0; i < proofs.size(); i++)
+            if (proofs.get(i).proveValidityOfData(proofData.get(i))) valid++;
+        return valid;
+    }
+
+    @Benchmark
+    public BitSet verifyBatch() {
+        return verifier.verify(proofData, proofs, sequential);
+    }
+
+    @Benchmark
+    public BitSet verifyBatchParallel() {
+        return verifier.verify(proofData, proofs, ForkJoinPool.commonPool());
+    }
+}
@@ -0,0 +1,129 @@
+package it.unicam.cs.asdl2425.mp1.benchmarks;
+
+import it.unicam.cs.asdl2425.mp1.ArrayMerkleTree;
+import it.unicam.cs.asdl2425.mp1.Digest;
+import it.unicam.cs.asdl2425.mp1.HashLinkedList;
+import it.unicam.cs.asdl2425.mp1.MerkleTree;
+import it.unicam.cs.asdl2425.mp1.TreeHashMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark di {@link MerkleTree}: costruzione da una lista di 2^10 fino a
+ * 2^22 foglie, sequenziale e parallela sul pool comune, calcolo della sola
+ * radice con il builder incrementale, sostituzione e aggiunta di una foglia,
+ * anche seguite da una ricerca sulla nuova versione, che ne deriva l'indice,
+ * ricerca dell'indice di un dato e validazione della radice, confrontati con gli
+ * stessi metodi di {@link ArrayMerkleTree}.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class MerkleTreeBenchmark {
+
+    @Param({ "10", "14", "18", "22" })
+    public int log2Leaves;
+
+    private HashLinkedList<Integer> list;
+
+    private MerkleTree<Integer> tree;
+
+    private ArrayMerkleTree<Integer> arrayTree;
+
+    private Integer first;
+
+    private Integer last;
+
+    @Setup
+    public void setup() {
+        int size = 1 << log2Leaves;
+        list = Fixtures.list(size);
+        tree = new MerkleTree<>(list);
+        arrayTree = new ArrayMerkleTree<>(list);
+        first = 0;
+        last = size - 1;
+    }
+
+    @Benchmark
+    public MerkleTree<Integer> construct() {
+        return new MerkleTree<>(list);
+    }
+
+    @Benchmark
+    public MerkleTree<Integer> constructParallel() {
+        return new MerkleTree<>(list, list.getHashFunction(), TreeHashMode.HEX_CONCAT, list.getDataEncoder(), false,
+                ForkJoinPool.commonPool(), MerkleTree.BUILD_THRESHOLD);
+    }
+
+    @Benchmark
+    public Digest streamRootDigest() {
+        return new MerkleTree.Builder<Integer>().addAll(list.iterator()).getRootDigest();
+    }
+
+    @Benchmark
+    public MerkleTree<Integer> withLeaf() {
+        return tree.withLeaf(1, last);
+    }
+
+    @Benchmark
+    public int withLeafThenQuery() {
+        return tree.withLeaf(1, last).getIndexOfData(last);
+    }
+
+    @Benchmark
+    public MerkleTree<Integer> append() {
+        return tree.append(first);
+    }
+
+    @Benchmark
+    public int appendThenQuery() {
+        return tree.append(first).getIndexOfData(first);
+    }
+
+    @Benchmark
+    public int getIndexOfFirstData() {
+        return tree.getIndexOfData(first);
+    }
+
+    @Benchmark
+    public int getIndexOfLastData() {
+        return tree.getIndexOfData(last);
+    }
+
+    @Benchmark
+    public boolean validateData() {
+        return tree.validateData(last);
+    }
+
+    @Benchmark
+    public boolean validateBranch() {
+        return tree.validateBranch(tree.getRoot());
+    }
+
+    @Benchmark
+    public ArrayMerkleTree<Integer> constructArray() {
+        return new ArrayMerkleTree<>(list);
+    }
+
+    @Benchmark
+    public int getIndexOfLastDataArray() {
+        return arrayTree.getIndexOfData(last);
+    }
+}
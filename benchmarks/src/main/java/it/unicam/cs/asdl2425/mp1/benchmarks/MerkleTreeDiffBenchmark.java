@@ -0,0 +1,93 @@
+package it.unicam.cs.asdl2425.mp1.benchmarks;
+
+import it.unicam.cs.asdl2425.mp1.ArrayMerkleTree;
+import it.unicam.cs.asdl2425.mp1.HashLinkedList;
+import it.unicam.cs.asdl2425.mp1.MerkleTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.BitSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark di {@link MerkleTree#findInvalidDataIndices(MerkleTree)} tra due
+ * alberi che differiscono per una sola foglia oppure per l'1% delle foglie.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class MerkleTreeDiffBenchmark {
+
+    @Param({ "10", "14", "18", "22" })
+    public int log2Leaves;
+
+    /**
+     * Numero di foglie diverse: "1" per una sola foglia, "1%" per l'1% delle
+     * foglie.
+     */
+    @Param({ "1", "1%" })
+    public String differing;
+
+    private MerkleTree<Integer> tree;
+
+    private MerkleTree<Integer> other;
+
+    private ArrayMerkleTree<Integer> arrayTree;
+
+    private ArrayMerkleTree<Integer> arrayOther;
+
+    @Setup
+    public void setup() {
+        int size = 1 << log2Leaves;
+        int count = differing.endsWith("%")
+                ? Math.max(1, size * Integer.parseInt(differing.substring(0, differing.length() - 1)) / 100)
+                : Integer.parseInt(differing);
+        HashLinkedList<Integer> list = Fixtures.list(size);
+        HashLinkedList<Integer> otherList = Fixtures.listWithDifferences(size, count);
+        tree = new MerkleTree<>(list);
+        other = new MerkleTree<>(otherList);
+        arrayTree = new ArrayMerkleTree<>(list);
+        arrayOther = new ArrayMerkleTree<>(otherList);
+    }
+
+    @Benchmark
+    public Set<Integer> findInvalidDataIndices() {
+        return tree.findInvalidDataIndices(other);
+    }
+
+    @Benchmark
+    public BitSet findInvalidDataBitSet() {
+        return tree.findInvalidDataBitSet(other);
+    }
+
+    @Benchmark
+    public BitSet findInvalidDataBitSetParallel() {
+        return tree.findInvalidDataBitSet(other, ForkJoinPool.commonPool(), 8);
+    }
+
+    @Benchmark
+    public boolean validateTree() {
+        return tree.validateTree(other);
+    }
+
+    @Benchmark
+    public Set<Integer> findInvalidDataIndicesArray() {
+        return arrayTree.findInvalidDataIndices(arrayOther);
+    }
+}
@@ -0,0 +1,564 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Un albero di Merkle con la stessa struttura e gli stessi hash di
+ * {@link MerkleTree}, memorizzato come heap implicito in un unico array di
+ * long invece che come grafo di {@link MerkleNode}. Il nodo di indice i (la
+ * radice ha indice 1) ha come figli i nodi 2i e 2i+1 e come padre il nodo
+ * i/2; le foglie occupano gli indici da {@code leaves} a
+ * {@code 2 * leaves - 1}, dove {@code leaves} è la più piccola potenza di due
+ * non inferiore al numero di dati.
+ *
+ * <p>
+ * Ogni nodo occupa le parole del proprio digest (due per MD5, cioè 16 byte),
+ * senza intestazioni di oggetto né riferimenti. I nodi che coprono soltanto
+ * posizioni di riempimento hanno il digest vuoto, che non è memorizzato ma
+ * dedotto dalla posizione del nodo. Le visite per le prove e i confronti tra
+ * alberi scorrono l'array per indici.
+ *
+ * @param <T> il tipo di dati su cui l'albero è costruito.
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+public class ArrayMerkleTree<T> {
+
+    /**
+     * Digest dei nodi: il nodo i occupa le parole da i * words a
+     * (i + 1) * words - 1. La posizione 0 non è usata.
+     */
+    private final long[] digests;
+
+    /**
+     * Numero di parole di ciascun digest.
+     */
+    private final int words;
+
+    /**
+     * Numero di foglie, potenza di due.
+     */
+    private final int leaves;
+
+    /**
+     * Altezza dell'albero, ovvero il logaritmo in base 2 del numero di foglie.
+     */
+    private final int height;
+
+    /**
+     * Larghezza dell'albero, ovvero il numero di dati.
+     */
+    private final int width;
+
+    /**
+     * Funzione di hash usata per le foglie e per i nodi intermedi.
+     */
+    private final HashFunction hashFunction;
+
+    /**
+     * Modalità di calcolo degli hash dei nodi intermedi.
+     */
+    private final TreeHashMode hashMode;
+
+    /**
+     * Encoder del contenuto dei dati, usato per calcolare gli hash delle
+     * foglie.
+     */
+    private final DataEncoder<? super T> encoder;
+
+    /**
+     * Cache dei digest dei dati ereditata dalla lista; null se assente o non
+     * compatibile con l'albero.
+     */
+    private final DigestCache<? super T> cache;
+
+    /**
+     * Indice dai digest delle foglie alla loro posizione nell'heap, per la
+     * ricerca dei dati in tempo costante.
+     */
+    private final DigestIndex leafIndex;
+
+    /**
+     * Indice opzionale dai digest dei nodi intermedi alla loro posizione
+     * nell'heap; null se l'albero è stato costruito senza.
+     */
+    private final DigestIndex branchIndex;
+
+    /**
+     * Costruisce un albero di Merkle a partire da un oggetto HashLinkedList,
+     * come {@link MerkleTree#MerkleTree(HashLinkedList)}.
+     *
+     * @param hashList un oggetto HashLinkedList contenente i dati e i
+     *                 relativi hash.
+     * @throws IllegalArgumentException se la lista è null o vuota.
+     */
+    public ArrayMerkleTree(HashLinkedList<T> hashList) {
+        this(hashList, hashList == null ? HashFunction.MD5 : hashList.getHashFunction());
+    }
+
+    /**
+     * Costruisce un albero di Merkle a partire da un oggetto HashLinkedList,
+     * come {@link MerkleTree#MerkleTree(HashLinkedList, HashFunction)}.
+     *
+     * @param hashList     un oggetto HashLinkedList contenente i dati e i
+     *                     relativi hash.
+     * @param hashFunction la funzione di hash da utilizzare.
+     * @throws IllegalArgumentException se la lista è null o vuota o se la
+     *                                  funzione di hash è null.
+     */
+    public ArrayMerkleTree(HashLinkedList<T> hashList, HashFunction hashFunction) {
+        this(hashList, hashFunction, TreeHashMode.HEX_CONCAT);
+    }
+
+    /**
+     * Costruisce un albero di Merkle a partire da un oggetto HashLinkedList,
+     * come {@link MerkleTree#MerkleTree(HashLinkedList, HashFunction, TreeHashMode)}.
+     *
+     * @param hashList     un oggetto HashLinkedList contenente i dati e i
+     *                     relativi hash.
+     * @param hashFunction la funzione di hash da utilizzare.
+     * @param hashMode     la modalità di calcolo dei nodi intermedi.
+     * @throws IllegalArgumentException se la lista è null o vuota o se la
+     *                                  funzione di hash o la modalità sono
+     *                                  null.
+     */
+    public ArrayMerkleTree(HashLinkedList<T> hashList, HashFunction hashFunction, TreeHashMode hashMode) {
+        this(hashList, hashFunction, hashMode, MerkleTree.encoderOf(hashList));
+    }
+
+    /**
+     * Costruisce un albero di Merkle a partire da un oggetto HashLinkedList,
+     * come
+     * {@link MerkleTree#MerkleTree(HashLinkedList, HashFunction, TreeHashMode, DataEncoder)}.
+     *
+     * @param hashList     un oggetto HashLinkedList contenente i dati e i
+     *                     relativi hash.
+     * @param hashFunction la funzione di hash da utilizzare.
+     * @param hashMode     la modalità di calcolo dei nodi intermedi.
+     * @param encoder      l'encoder del contenuto dei dati.
+     * @throws IllegalArgumentException se la lista è null o vuota, se la
+     *                                  funzione di hash, la modalità o
+     *                                  l'encoder sono null o se l'albero non
+     *                                  può essere contenuto in un array.
+     */
+    public ArrayMerkleTree(HashLinkedList<T> hashList, HashFunction hashFunction, TreeHashMode hashMode,
+                           DataEncoder<? super T> encoder) {
+        this(hashList, hashFunction, hashMode, encoder, false);
+    }
+
+    /**
+     * Costruisce un albero di Merkle a partire da un oggetto HashLinkedList,
+     * come
+     * {@link MerkleTree#MerkleTree(HashLinkedList, HashFunction, TreeHashMode, DataEncoder, boolean)}.
+     * L'indice dei nodi intermedi rende costante il tempo di
+     * {@link #validateBranch(MerkleNode)} e logaritmico quello di
+     * {@link #getMerkleProof(MerkleNode)} per i nodi intermedi.
+     *
+     * @param hashList      un oggetto HashLinkedList contenente i dati e i
+     *                      relativi hash.
+     * @param hashFunction  la funzione di hash da utilizzare.
+     * @param hashMode      la modalità di calcolo dei nodi intermedi.
+     * @param encoder       l'encoder del contenuto dei dati.
+     * @param indexBranches true per costruire l'indice dei nodi intermedi.
+     * @throws IllegalArgumentException se la lista è null o vuota, se la
+     *                                  funzione di hash, la modalità o
+     *                                  l'encoder sono null o se l'albero non
+     *                                  può essere contenuto in un array.
+     */
+    public ArrayMerkleTree(HashLinkedList<T> hashList, HashFunction hashFunction, TreeHashMode hashMode,
+                           DataEncoder<? super T> encoder, boolean indexBranches) {
+        if (hashList == null || hashList.getSize() == 0 || hashFunction == null || hashMode == null || encoder == null)
+            throw new IllegalArgumentException();
+        this.width = hashList.getSize();
+        this.hashFunction = hashFunction;
+        this.hashMode = hashMode;
+        this.encoder = encoder;
+        this.cache = MerkleTree.compatibleCache(hashList, hashFunction, encoder);
+        this.leaves = MerkleTree.closestPowOfTwo(width);
+        this.height = Integer.numberOfTrailingZeros(leaves);
+        this.words = hashFunction.digestLength() / 8;
+        long size = 2L * leaves * words;
+        if (size > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Albero troppo grande: " + width + " dati");
+        this.digests = new long[(int) size];
+
+        int i = leaves;
+        for (Digest h : MerkleTree.leafDigests(hashList, hashFunction, encoder)) {
+            if (h.length() != words * 8)
+                throw new IllegalArgumentException("Lunghezza del digest non valida: " + h.length());
+            h.writeWords(digests, i++ * words);
+        }
+        for (i = leaves - 1; i >= 1; i--) {         //dal basso verso l'alto, i figli precedono i padri
+            if (!isEmpty(i))
+                hashMode.combine(hashFunction, digestAt(2 * i), digestAt(2 * i + 1)).writeWords(digests, i * words);
+        }
+        this.leafIndex = new DigestIndex(digests, words, leaves, leaves + width);
+        if (indexBranches) {
+            branchIndex = new DigestIndex(digests, words, leaves);
+            for (i = 1; i < leaves; i++)            //in ordine di livello, come la ricerca per scansione
+                if (!isEmpty(i)) branchIndex.add(i);
+        } else {
+            branchIndex = null;
+        }
+    }
+
+    /**
+     * Restituisce il digest della radice dell'albero.
+     *
+     * @return il digest della radice.
+     */
+    public Digest getRootDigest() {
+        return digestAt(1);
+    }
+
+    /**
+     * Restituisce il nodo radice dell'albero, costruendo l'intero albero di
+     * {@link MerkleNode} corrispondente. Il costo è lineare nel numero di
+     * nodi: per il solo hash della radice si usi {@link #getRootDigest()}.
+     *
+     * @return il nodo radice dell'albero.
+     */
+    public MerkleNode getRoot() {
+        return toNode(1);
+    }
+
+    /**
+     * Restituisce il digest del nodo in una data posizione. Il livello 0
+     * contiene la sola radice, il livello {@link #getHeight()} le foglie; la
+     * posizione nel livello parte da 0 a sinistra.
+     *
+     * @param level  il livello del nodo.
+     * @param offset la posizione del nodo nel livello.
+     * @return il digest del nodo.
+     * @throws IndexOutOfBoundsException se la posizione non è nell'albero.
+     */
+    public Digest getDigest(int level, int offset) {
+        if (level < 0 || level > height || offset < 0 || offset >= 1 << level)
+            throw new IndexOutOfBoundsException("Nodo (" + level + ", " + offset + ") non presente");
+        return digestAt((1 << level) + offset);
+    }
+
+    /**
+     * Restituisce la larghezza dell'albero.
+     *
+     * @return la larghezza dell'albero.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Restituisce l'altezza dell'albero.
+     *
+     * @return l'altezza dell'albero.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Restituisce la funzione di hash utilizzata dall'albero.
+     *
+     * @return la funzione di hash dell'albero.
+     */
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    /**
+     * Restituisce la modalità di calcolo degli hash dei nodi intermedi.
+     *
+     * @return la modalità di calcolo dei nodi intermedi.
+     */
+    public TreeHashMode getHashMode() {
+        return hashMode;
+    }
+
+    /**
+     * Restituisce l'encoder del contenuto dei dati utilizzato dall'albero.
+     *
+     * @return l'encoder dei dati dell'albero.
+     */
+    public DataEncoder<? super T> getDataEncoder() {
+        return encoder;
+    }
+
+    /**
+     * Restituisce la cache dei digest dei dati utilizzata dall'albero.
+     *
+     * @return la cache dei digest; null se l'albero non ne usa una.
+     */
+    public DigestCache<? super T> getDigestCache() {
+        return cache;
+    }
+
+    /**
+     * Restituisce true se l'albero è stato costruito con l'indice dei nodi
+     * intermedi.
+     *
+     * @return true se l'albero ha l'indice dei nodi intermedi.
+     */
+    public boolean hasBranchIndex() {
+        return branchIndex != null;
+    }
+
+    /**
+     * Restituisce l'indice di un dato elemento relativo al sottoalbero
+     * descritto da un dato branch, come
+     * {@link MerkleTree#getIndexOfData(MerkleNode, Object)}.
+     *
+     * @param branch la radice del sottoalbero.
+     * @param data   l'elemento da cercare.
+     * @return l'indice del dato nel sottoalbero; -1 se l'hash del dato non è
+     * presente.
+     * @throws IllegalArgumentException se il branch o il dato sono null o
+     *                                  se il branch non è parte
+     *                                  dell'albero.
+     */
+    public int getIndexOfData(MerkleNode branch, T data) {
+        if (branch == null || data == null) throw new IllegalArgumentException();
+        int node = findNode(branch.getDigest(), branch.isLeaf());
+        if (node < 0) throw new IllegalArgumentException();
+        int span = leaves >> depth(node);
+        int first = (node << (height - depth(node))) - leaves;
+        int index = findLeaf(digestOf(data), first, Math.min(first + span, width));
+        return index < 0 ? -1 : index - first;
+    }
+
+    /**
+     * Restituisce l'indice di un elemento secondo questo albero di Merkle,
+     * come {@link MerkleTree#getIndexOfData(Object)}.
+     *
+     * @param data l'elemento da cercare.
+     * @return l'indice del dato nell'albero; -1 se il dato non è presente.
+     * @throws IllegalArgumentException se il dato è null.
+     */
+    public int getIndexOfData(T data) {
+        if (data == null) throw new IllegalArgumentException();
+        return findLeaf(digestOf(data));
+    }
+
+    /**
+     * Sottopone a validazione un elemento fornito per verificare se appartiene
+     * all'albero di Merkle, controllando se il suo hash è parte dell'albero
+     * come hash di un nodo foglia.
+     *
+     * @param data l'elemento da validare
+     * @return true se l'hash dell'elemento è parte dell'albero; false
+     * altrimenti.
+     */
+    public boolean validateData(T data) {
+        return findLeaf(digestOf(data)) >= 0;
+    }
+
+    /**
+     * Sottopone a validazione un dato sottoalbero di Merkle, come
+     * {@link MerkleTree#validateBranch(MerkleNode)}: è valido se l'hash della
+     * sua radice è uguale all'hash di un nodo dello stesso tipo (foglia o
+     * nodo intermedio) di questo albero.
+     *
+     * @param branch la radice del sottoalbero di Merkle da validare.
+     * @return true se il sottoalbero di Merkle è valido; false altrimenti.
+     */
+    public boolean validateBranch(MerkleNode branch) {
+        return branch != null && findNode(branch.getDigest(), branch.isLeaf()) >= 0;
+    }
+
+    /**
+     * Sottopone a validazione un dato albero di Merkle per verificare se è
+     * valido rispetto a questo albero e ai suoi hash, confrontando le radici.
+     *
+     * @param otherTree l'altro albero di Merkle da validare.
+     * @return true se l'altro albero di Merkle è valido; false altrimenti.
+     * @throws IllegalArgumentException se l'albero fornito è null.
+     */
+    public boolean validateTree(ArrayMerkleTree<T> otherTree) {
+        if (otherTree == null) throw new IllegalArgumentException();
+        return width == otherTree.width && hasSameHashing(otherTree) && sameNode(otherTree, 1);
+    }
+
+    /**
+     * Trova gli indici degli elementi di dati non validi in un dato albero,
+     * come {@link MerkleTree#findInvalidDataIndices(MerkleTree)}, scendendo
+     * soltanto nei sottoalberi con hash diversi.
+     *
+     * @param otherTree l'altro albero di Merkle.
+     * @return l'insieme di indici degli elementi di dati non validi.
+     * @throws IllegalArgumentException se l'altro albero è null, ha una
+     *                                  struttura diversa o usa una diversa
+     *                                  funzione di hash o modalità di calcolo.
+     */
+    public Set<Integer> findInvalidDataIndices(ArrayMerkleTree<T> otherTree) {
+        if (otherTree == null || !hasSameHashing(otherTree) || leaves != otherTree.leaves)
+            throw new IllegalArgumentException();
+        Set<Integer> invalidIndices = new HashSet<>();
+        int[] stack = new int[height + 2];      //al più un fratello in attesa per livello
+        int top = 0;
+        stack[top++] = 1;
+        while (top > 0) {
+            int node = stack[--top];
+            if (sameNode(otherTree, node)) continue;
+            if (node >= leaves) {
+                invalidIndices.add(node - leaves);
+            } else {
+                stack[top++] = 2 * node + 1;
+                stack[top++] = 2 * node;
+            }
+        }
+        return invalidIndices;
+    }
+
+    /**
+     * Restituisce la prova di Merkle per un dato elemento, come
+     * {@link MerkleTree#getMerkleProof(Object)}. Se il dato compare più volte,
+     * la prova è relativa alla sua prima occorrenza.
+     *
+     * @param data l'elemento per cui generare la prova di Merkle.
+     * @return la prova di Merkle per il dato.
+     * @throws IllegalArgumentException se il dato è null o non è parte
+     *                                  dell'albero.
+     */
+    public MerkleProof getMerkleProof(T data) {
+        if (data == null) throw new IllegalArgumentException();
+        int index = findLeaf(digestOf(data));
+        if (index < 0) throw new IllegalArgumentException();
+        return proofOf(leaves + index);
+    }
+
+    /**
+     * Restituisce la prova di Merkle per un dato branch, come
+     * {@link MerkleTree#getMerkleProof(MerkleNode)}.
+     *
+     * @param branch il branch per cui generare la prova di Merkle.
+     * @return la prova di Merkle per il branch.
+     * @throws IllegalArgumentException se il branch è null o non è parte
+     *                                  dell'albero.
+     */
+    public MerkleProof getMerkleProof(MerkleNode branch) {
+        if (branch == null) throw new IllegalArgumentException();
+        int node = findNode(branch.getDigest(), branch.isLeaf());
+        if (node < 0) throw new IllegalArgumentException();
+        return proofOf(node);
+    }
+
+    /**
+     * Restituisce la prova di Merkle per la foglia di indice dato, come
+     * {@link MerkleTree#getMerkleProofAt(int)}.
+     *
+     * @param leafIndex l'indice della foglia.
+     * @return la prova di Merkle per la foglia.
+     * @throws IndexOutOfBoundsException se l'indice non è compreso tra 0 e la
+     *                                   larghezza dell'albero esclusa.
+     */
+    public MerkleProof getMerkleProofAt(int leafIndex) {
+        if (leafIndex < 0 || leafIndex >= width)
+            throw new IndexOutOfBoundsException("Indice non valido: " + leafIndex);
+        return proofOf(leaves + leafIndex);
+    }
+
+    /**
+     * Restituisce la prova di Merkle per il nodo in una data posizione, come
+     * {@link MerkleTree#getMerkleProofAt(int, int)} e con le posizioni di
+     * {@link #getDigest(int, int)}.
+     *
+     * @param level  il livello del nodo.
+     * @param offset la posizione del nodo nel livello.
+     * @return la prova di Merkle per il nodo.
+     * @throws IndexOutOfBoundsException se la posizione non è nell'albero.
+     */
+    public MerkleProof getMerkleProofAt(int level, int offset) {
+        if (level < 0 || level > height || offset < 0 || offset >= 1 << level)
+            throw new IndexOutOfBoundsException("Nodo (" + level + ", " + offset + ") non presente");
+        return proofOf((1 << level) + offset);
+    }
+
+    private MerkleProof proofOf(int node) {
+        MerkleProof proof = new MerkleProof(digestAt(1), depth(node), hashFunction, hashMode);
+        for (int i = node; i > 1; i >>>= 1) {
+            int sibling = i ^ 1;
+            proof.addHash(digestAt(sibling), (sibling & 1) == 0);   //i fratelli di indice pari sono a sinistra
+        }
+        return proof;
+    }
+
+    private boolean hasSameHashing(ArrayMerkleTree<T> otherTree) {
+        return hashFunction.equals(otherTree.hashFunction) && hashMode == otherTree.hashMode;
+    }
+
+    private Digest digestOf(T data) {
+        return cache != null ? cache.digest(data) : HashUtil.dataToDigest(data, encoder, hashFunction);
+    }
+
+    /**
+     * Restituisce la profondità del nodo, 0 per la radice.
+     */
+    private static int depth(int node) {
+        return 31 - Integer.numberOfLeadingZeros(node);
+    }
+
+    /**
+     * Restituisce true se il nodo copre soltanto posizioni di riempimento.
+     */
+    private boolean isEmpty(int node) {
+        return (node << (height - depth(node))) - leaves >= width;
+    }
+
+    private Digest digestAt(int node) {
+        return isEmpty(node) ? Digest.EMPTY : Digest.ofWords(digests, node * words, words * 8);
+    }
+
+    private boolean matches(int node, Digest digest) {
+        if (isEmpty(node)) return digest.isEmpty();
+        return digest.length() == words * 8 && digest.matches(digests, node * words);
+    }
+
+    private boolean sameNode(ArrayMerkleTree<T> other, int node) {
+        boolean empty = isEmpty(node);
+        if (empty || other.isEmpty(node)) return empty == other.isEmpty(node);
+        int from = node * words;
+        for (int w = 0; w < words; w++)
+            if (digests[from + w] != other.digests[from + w]) return false;
+        return true;
+    }
+
+    /**
+     * Restituisce l'indice della prima foglia con il digest dato, -1 se non
+     * presente.
+     */
+    private int findLeaf(Digest digest) {
+        int node = leafIndex.get(digest);
+        return node < 0 ? -1 : node - leaves;
+    }
+
+    /**
+     * Restituisce l'indice della prima foglia in [from, to) con il digest
+     * dato, -1 se non presente.
+     */
+    private int findLeaf(Digest digest, int from, int to) {
+        if (digest.length() != words * 8) return -1;
+        for (int i = from; i < to; i++)
+            if (digest.matches(digests, (leaves + i) * words)) return i;
+        return -1;
+    }
+
+    /**
+     * Restituisce l'indice del primo nodo, in ordine di livello, con il
+     * digest dato tra le foglie o tra i nodi intermedi; -1 se non presente.
+     */
+    private int findNode(Digest digest, boolean leaf) {
+        if (!digest.isEmpty()) {
+            if (leaf) return leafIndex.get(digest);
+            if (branchIndex != null) return branchIndex.get(digest);
+        }
+        int from = leaf ? leaves : 1;
+        int to = leaf ? 2 * leaves : leaves;
+        for (int i = from; i < to; i++)
+            if (matches(i, digest)) return i;
+        return -1;
+    }
+
+    private MerkleNode toNode(int node) {
+        if (node >= leaves) return new MerkleNode(digestAt(node));
+        return new MerkleNode(digestAt(node), toNode(2 * node), toNode(2 * node + 1));
+    }
+}
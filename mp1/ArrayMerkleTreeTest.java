@@ -0,0 +1,204 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per la classe {@link ArrayMerkleTree}, che ne confronta il
+ * comportamento con quello di {@link MerkleTree}. Di seguito, l'elenco dei
+ * test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testSameHashesAsMerkleTree()}: Verifica che, per diverse
+ * larghezze, funzioni di hash e modalità, l'albero abbia gli stessi hash di un
+ * MerkleTree costruito dalla stessa lista.</li>
+ *
+ * <li>{@link #testDataQueries()}: Verifica validazione e ricerca dei dati,
+ * anche relativa a un branch.</li>
+ *
+ * <li>{@link #testValidateBranch()}: Verifica che vengano validati tutti i
+ * nodi dell'albero e respinti quelli di altri alberi.</li>
+ *
+ * <li>{@link #testMerkleProofs()}: Verifica che le prove per dati e branch
+ * siano valide e respingano dati diversi.</li>
+ *
+ * <li>{@link #testMerkleProofsAt()}: Verifica che le prove per indice e per
+ * posizione coincidano con quelle di MerkleTree.</li>
+ *
+ * <li>{@link #testFindInvalidDataIndices()}: Verifica il confronto con un
+ * altro albero e la sua validazione.</li>
+ *
+ * <li>{@link #testBranchIndex()}: Verifica che con l'indice dei nodi intermedi
+ * branch e prove siano gli stessi che senza.</li>
+ *
+ * <li>{@link #testInvalidArguments()}: Verifica che vengano lanciate eccezioni
+ * per argomenti non validi.</li>
+ * </ul>
+ */
+class ArrayMerkleTreeTest {
+
+    private static HashLinkedList<Integer> list(int size, int offset) {
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        for (int i = 0; i < size; i++)
+            list.addAtTail(i + offset);
+        return list;
+    }
+
+    @Test
+    void testSameHashesAsMerkleTree() {
+        for (int size : new int[] { 1, 2, 3, 5, 8, 13 }) {
+            HashLinkedList<Integer> list = list(size, 0);
+            for (HashFunction function : new HashFunction[] { HashFunction.MD5, HashFunction.SHA_256 }) {
+                for (TreeHashMode mode : TreeHashMode.values()) {
+                    MerkleTree<Integer> expected = new MerkleTree<>(list, function, mode);
+                    ArrayMerkleTree<Integer> tree = new ArrayMerkleTree<>(list, function, mode);
+
+                    assertEquals(expected.getRoot().getDigest(), tree.getRootDigest(),
+                            "La radice non corrisponde a quella del MerkleTree.");
+                    assertEquals(expected.getRoot(), tree.getRoot(), "I nodi non corrispondono a quelli del MerkleTree.");
+                    assertEquals(expected.getHeight(), tree.getHeight(), "L'altezza non è corretta.");
+                    assertEquals(size, tree.getWidth(), "La larghezza non è corretta.");
+                }
+            }
+        }
+        ArrayMerkleTree<Integer> tree = new ArrayMerkleTree<>(list(3, 0));
+        assertEquals(Digest.EMPTY, tree.getDigest(2, 3), "La foglia di riempimento dovrebbe avere il digest vuoto.");
+        assertEquals(HashUtil.dataToDigest(2), tree.getDigest(2, 2), "Il digest della foglia non è corretto.");
+    }
+
+    @Test
+    void testDataQueries() {
+        ArrayMerkleTree<Integer> tree = new ArrayMerkleTree<>(list(13, 0));
+        for (int i = 0; i < 13; i++) {
+            assertTrue(tree.validateData(i), "Il dato dovrebbe essere valido.");
+            assertEquals(i, tree.getIndexOfData(i), "L'indice del dato non è corretto.");
+        }
+        assertFalse(tree.validateData(13), "Il dato non dovrebbe essere valido.");
+        assertEquals(-1, tree.getIndexOfData(13), "Un dato non presente dovrebbe avere indice -1.");
+
+        MerkleNode right = new MerkleTree<>(list(13, 0)).getRoot().getRight();
+        assertEquals(2, tree.getIndexOfData(right, 10), "L'indice relativo al branch non è corretto.");
+        assertEquals(-1, tree.getIndexOfData(right, 3), "Un dato fuori dal branch dovrebbe avere indice -1.");
+    }
+
+    @Test
+    void testValidateBranch() {
+        MerkleNode root = new MerkleTree<>(list(6, 0)).getRoot();
+        ArrayMerkleTree<Integer> tree = new ArrayMerkleTree<>(list(6, 0));
+        assertTrue(tree.validateBranch(root), "La radice dovrebbe essere valida.");
+        assertTrue(tree.validateBranch(root.getLeft().getRight()), "Il nodo intermedio dovrebbe essere valido.");
+        assertTrue(tree.validateBranch(root.getRight().getLeft().getLeft()), "La foglia dovrebbe essere valida.");
+        assertTrue(tree.validateBranch(root.getRight().getRight()), "Il nodo di riempimento dovrebbe essere valido.");
+        assertFalse(tree.validateBranch(new MerkleTree<>(list(6, 1)).getRoot()),
+                "La radice di un altro albero non dovrebbe essere valida.");
+        assertFalse(tree.validateBranch(new MerkleNode(root.getLeft().getDigest())),
+                "Una foglia con l'hash di un nodo intermedio non dovrebbe essere valida.");
+        assertFalse(tree.validateBranch(null), "Un branch nullo non dovrebbe essere valido.");
+    }
+
+    @Test
+    void testMerkleProofs() {
+        MerkleTree<Integer> expected = new MerkleTree<>(list(7, 0));
+        ArrayMerkleTree<Integer> tree = new ArrayMerkleTree<>(list(7, 0));
+        for (int i = 0; i < 7; i++) {
+            MerkleProof proof = tree.getMerkleProof(i);
+            assertEquals(expected.getMerkleProof(i).getLength(), proof.getLength(), "La lunghezza della prova non è corretta.");
+            assertTrue(proof.proveValidityOfData(i), "La prova di Merkle dovrebbe essere valida.");
+            assertFalse(proof.proveValidityOfData(i + 1), "La prova non dovrebbe validare un altro dato.");
+        }
+        MerkleNode branch = expected.getRoot().getRight();
+        MerkleProof proof = tree.getMerkleProof(branch);
+        assertEquals(1, proof.getLength(), "La lunghezza della prova non è corretta.");
+        assertTrue(proof.proveValidityOfBranch(branch), "La prova del branch dovrebbe essere valida.");
+        assertFalse(proof.proveValidityOfBranch(expected.getRoot().getLeft()),
+                "La prova non dovrebbe validare un altro branch.");
+    }
+
+    @Test
+    void testMerkleProofsAt() {
+        HashLinkedList<Integer> list = list(7, 100);
+        MerkleTree<Integer> expected = new MerkleTree<>(list);
+        ArrayMerkleTree<Integer> tree = new ArrayMerkleTree<>(list);
+        for (int i = 0; i < 7; i++) {
+            MerkleProof proof = tree.getMerkleProofAt(i);
+            assertEquals(expected.getMerkleProofAt(i).getHashes(), proof.getHashes(),
+                    "La prova non corrisponde a quella del MerkleTree.");
+            assertTrue(proof.proveValidityOfData(100 + i), "La prova di Merkle dovrebbe essere valida.");
+        }
+        for (int level = 0; level <= tree.getHeight(); level++)
+            for (int offset = 0; offset < 1 << level; offset++)
+                assertEquals(expected.getMerkleProofAt(level, offset).getHashes(),
+                        tree.getMerkleProofAt(level, offset).getHashes(),
+                        "La prova non corrisponde a quella del MerkleTree.");
+        assertTrue(tree.getMerkleProofAt(1, 1).proveValidityOfBranch(expected.getRoot().getRight()),
+                "La prova del branch dovrebbe essere valida.");
+        assertTrue(tree.getMerkleProof(101).proveValidityOfData(101),
+                "La prova per dato dovrebbe essere valida anche con un argomento int.");
+
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.getMerkleProofAt(7),
+                "Dovrebbe essere lanciata un'eccezione per un indice fuori dall'albero.");
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.getMerkleProofAt(-1),
+                "Dovrebbe essere lanciata un'eccezione per un indice negativo.");
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.getMerkleProofAt(4, 0),
+                "Dovrebbe essere lanciata un'eccezione per un livello non presente.");
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.getMerkleProofAt(2, 4),
+                "Dovrebbe essere lanciata un'eccezione per una posizione non presente.");
+    }
+
+    @Test
+    void testFindInvalidDataIndices() {
+        HashLinkedList<Integer> other = new HashLinkedList<>();
+        for (int i = 0; i < 11; i++)
+            other.addAtTail(i == 2 || i == 9 ? -i : i);
+        ArrayMerkleTree<Integer> tree = new ArrayMerkleTree<>(list(11, 0));
+        ArrayMerkleTree<Integer> otherTree = new ArrayMerkleTree<>(other);
+
+        assertEquals(Set.of(2, 9), tree.findInvalidDataIndices(otherTree), "Gli indici non validi non sono corretti.");
+        assertTrue(tree.findInvalidDataIndices(new ArrayMerkleTree<>(list(11, 0))).isEmpty(),
+                "Alberi uguali non dovrebbero avere indici non validi.");
+        assertEquals(Set.of(11), tree.findInvalidDataIndices(new ArrayMerkleTree<>(list(12, 0))),
+                "Il dato aggiuntivo dovrebbe essere non valido.");
+        assertTrue(tree.validateTree(new ArrayMerkleTree<>(list(11, 0))), "L'albero dovrebbe essere valido.");
+        assertFalse(tree.validateTree(otherTree), "L'albero non dovrebbe essere valido.");
+        assertFalse(tree.validateTree(new ArrayMerkleTree<>(list(11, 0), HashFunction.SHA_256)),
+                "Un albero con un'altra funzione di hash non dovrebbe essere valido.");
+        assertThrows(IllegalArgumentException.class, () -> tree.findInvalidDataIndices(new ArrayMerkleTree<>(list(17, 0))),
+                "Dovrebbe essere lanciata un'eccezione per alberi con struttura diversa.");
+    }
+
+    @Test
+    void testBranchIndex() {
+        MerkleNode root = new MerkleTree<>(list(6, 0)).getRoot();
+        ArrayMerkleTree<Integer> tree = new ArrayMerkleTree<>(list(6, 0), HashFunction.MD5, TreeHashMode.HEX_CONCAT,
+                DataEncoder.HASH_CODE, true);
+        assertTrue(tree.hasBranchIndex(), "L'albero dovrebbe avere l'indice dei nodi intermedi.");
+        for (MerkleNode branch : new MerkleNode[] { root, root.getLeft().getRight(), root.getRight().getLeft().getLeft(),
+                root.getRight().getRight() }) {
+            assertTrue(tree.validateBranch(branch), "Il branch dovrebbe essere valido.");
+            assertTrue(tree.getMerkleProof(branch).proveValidityOfBranch(branch),
+                    "La prova del branch dovrebbe essere valida.");
+        }
+        assertFalse(tree.validateBranch(new MerkleNode(root.getLeft().getDigest())),
+                "Una foglia con l'hash di un nodo intermedio non dovrebbe essere valida.");
+        assertFalse(tree.validateBranch(new MerkleTree<>(list(6, 1)).getRoot()),
+                "La radice di un altro albero non dovrebbe essere valida.");
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new ArrayMerkleTree<Integer>(null),
+                "Dovrebbe essere lanciata un'eccezione per una lista nulla.");
+        assertThrows(IllegalArgumentException.class, () -> new ArrayMerkleTree<>(new HashLinkedList<Integer>()),
+                "Dovrebbe essere lanciata un'eccezione per una lista vuota.");
+        ArrayMerkleTree<Integer> tree = new ArrayMerkleTree<>(list(4, 0));
+        assertThrows(IllegalArgumentException.class, () -> tree.getMerkleProof(42),
+                "Dovrebbe essere lanciata un'eccezione per un dato non presente.");
+        assertThrows(IllegalArgumentException.class, () -> tree.getIndexOfData(new MerkleNode(HashUtil.dataToDigest(42)), 1),
+                "Dovrebbe essere lanciata un'eccezione per un branch non presente.");
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.getDigest(3, 0),
+                "Dovrebbe essere lanciata un'eccezione per un livello non presente.");
+    }
+}
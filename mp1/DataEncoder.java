@@ -0,0 +1,69 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codifica il contenuto di un dato come sequenza di byte, inviandola
+ * incrementalmente a un {@link HashFunction.Hasher}. Permette di calcolare
+ * l'hash del contenuto effettivo di un oggetto, anche di grandi dimensioni,
+ * senza costruirne prima una rappresentazione completa in memoria.
+ *
+ * <p>
+ * L'encoder predefinito, {@link #HASH_CODE}, codifica soltanto il valore di
+ * {@code hashCode()} del dato, come {@link HashUtil#dataToHash(Object)}: dati
+ * distinti con lo stesso hashCode producono quindi lo stesso hash. Gli altri
+ * encoder forniti codificano il contenuto completo.
+ *
+ * @param <T>
+ *                il tipo dei dati codificati.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+@FunctionalInterface
+public interface DataEncoder<T> {
+
+    /**
+     * Codifica il valore di hashCode() del dato in quattro byte big-endian.
+     */
+    DataEncoder<Object> HASH_CODE = (data, sink) -> {
+        int value = data.hashCode();
+        sink.update((byte) (value >> 24));
+        sink.update((byte) (value >> 16));
+        sink.update((byte) (value >> 8));
+        sink.update((byte) value);
+    };
+
+    /**
+     * Codifica il contenuto di un array di byte.
+     */
+    DataEncoder<byte[]> BYTES = (data, sink) -> sink.update(data);
+
+    /**
+     * Codifica i byte rimanenti di un ByteBuffer, senza modificarne la
+     * posizione.
+     */
+    DataEncoder<ByteBuffer> BYTE_BUFFER = (data, sink) -> sink.update(data.duplicate());
+
+    /**
+     * Codifica una sequenza di caratteri in UTF-8, a blocchi, senza costruirne
+     * la rappresentazione completa in byte. I surrogati spaiati sono codificati
+     * come '?', come in {@link String#getBytes(java.nio.charset.Charset)}.
+     */
+    DataEncoder<CharSequence> CHAR_SEQUENCE = Utf8Encoder::encode;
+
+    /**
+     * Codifica una stringa in UTF-8, con lo stesso risultato di
+     * {@link #CHAR_SEQUENCE}.
+     */
+    DataEncoder<String> STRING = Utf8Encoder::encode;
+
+    /**
+     * Invia la codifica del dato all'Hasher fornito.
+     *
+     * @param data
+     *                 il dato da codificare.
+     * @param sink
+     *                 l'Hasher che riceve i byte della codifica.
+     */
+    void encode(T data, HashFunction.Hasher sink);
+}
@@ -0,0 +1,93 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per l'interfaccia {@link DataEncoder} e gli encoder forniti.
+ * Di seguito, l'elenco dei test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testHashCodeEncoder()}: Verifica che l'encoder predefinito
+ * produca lo stesso hash di {@link HashUtil#dataToDigest(Object)}.</li>
+ *
+ * <li>{@link #testStringEncoder()}: Verifica che la codifica di stringhe e
+ * sequenze di caratteri coincida con la loro codifica UTF-8, anche per
+ * caratteri multi-byte, coppie di surrogati, surrogati spaiati e stringhe più
+ * lunghe del buffer di codifica.</li>
+ *
+ * <li>{@link #testByteBufferEncoder()}: Verifica che la codifica di un
+ * ByteBuffer ne consideri i byte rimanenti senza modificarne la
+ * posizione.</li>
+ *
+ * <li>{@link #testTreeWithContentEncoder()}: Verifica che un albero costruito
+ * con un encoder del contenuto distingua dati con lo stesso hashCode.</li>
+ * </ul>
+ */
+class DataEncoderTest {
+
+    @Test
+    void testHashCodeEncoder() {
+        assertEquals(HashUtil.dataToDigest("Alice paga Bob"),
+                HashUtil.dataToDigest("Alice paga Bob", DataEncoder.HASH_CODE, HashFunction.MD5),
+                "L'encoder predefinito dovrebbe codificare il valore di hashCode.");
+        HashFunction.Hasher hasher = HashFunction.SHA_256.newHasher();
+        DataEncoder.HASH_CODE.encode(42L, hasher);
+        assertEquals(HashUtil.dataToDigest(42L, HashFunction.SHA_256), hasher.digest(),
+                "L'encoder predefinito dovrebbe codificare il valore di hashCode.");
+    }
+
+    @Test
+    void testStringEncoder() {
+        String[] samples = { "", "Alice paga Bob", "Perché è così", "€ 100 😀",
+                "surrogato \uD800 spaiato \uDC00", "x".repeat(1000) + "è".repeat(300) };
+        for (String sample : samples) {
+            Digest expected = HashFunction.MD5.hash(sample.getBytes(StandardCharsets.UTF_8));
+            assertEquals(expected, HashUtil.dataToDigest(sample, DataEncoder.STRING, HashFunction.MD5),
+                    "La codifica della stringa non corrisponde alla codifica UTF-8.");
+            assertEquals(expected, HashUtil.dataToDigest(new StringBuilder(sample), DataEncoder.CHAR_SEQUENCE, HashFunction.MD5),
+                    "La codifica della sequenza di caratteri non corrisponde alla codifica UTF-8.");
+        }
+    }
+
+    @Test
+    void testByteBufferEncoder() {
+        byte[] bytes = "Hello, World!".getBytes(StandardCharsets.US_ASCII);
+        for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.wrap(bytes), ByteBuffer.allocateDirect(bytes.length).put(bytes).flip() }) {
+            buffer.position(7);
+            Digest digest = HashUtil.dataToDigest(buffer, DataEncoder.BYTE_BUFFER, HashFunction.MD5);
+
+            assertEquals(HashFunction.MD5.hash(bytes, 7, bytes.length - 7), digest,
+                    "La codifica dovrebbe considerare i soli byte rimanenti.");
+            assertEquals(7, buffer.position(), "La posizione del buffer non dovrebbe cambiare.");
+        }
+        assertEquals(HashFunction.MD5.hash(bytes), HashUtil.dataToDigest(bytes, DataEncoder.BYTES, HashFunction.MD5),
+                "La codifica dell'array dovrebbe coincidere con il suo contenuto.");
+    }
+
+    @Test
+    void testTreeWithContentEncoder() {
+        // "Aa" e "BB" hanno lo stesso hashCode
+        HashLinkedList<String> defaultList = new HashLinkedList<>();
+        defaultList.addAtTail("Aa");
+        assertTrue(new MerkleTree<>(defaultList).validateData("BB"),
+                "Con l'encoder predefinito dati con lo stesso hashCode non sono distinguibili.");
+
+        HashLinkedList<String> contentList = new HashLinkedList<>(HashFunction.MD5, DataEncoder.STRING);
+        contentList.addAtTail("Aa");
+        contentList.addAtTail("Bb");
+        MerkleTree<String> tree = new MerkleTree<>(contentList);
+        assertTrue(tree.validateData("Aa"), "Il dato dovrebbe essere valido.");
+        assertFalse(tree.validateData("BB"), "Un dato con lo stesso hashCode non dovrebbe essere valido.");
+        assertEquals(1, tree.getIndexOfData("Bb"), "L'indice del dato non è corretto.");
+
+        MerkleProof proof = tree.getMerkleProof("Aa");
+        assertTrue(proof.proveValidityOfData("Aa", DataEncoder.STRING), "La prova di Merkle dovrebbe essere valida.");
+        assertFalse(proof.proveValidityOfData("BB", DataEncoder.STRING),
+                "La prova non dovrebbe validare un dato con lo stesso hashCode.");
+    }
+}
@@ -0,0 +1,419 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Rappresenta un digest come valore immutabile di dimensione fissa. I primi 16
+ * byte del digest sono memorizzati in due valori long (big-endian), per cui il
+ * confronto tra due digest MD5 si riduce al confronto di due parole e
+ * l'occupazione di memoria è indipendente dalla rappresentazione esadecimale.
+ * Digest più lunghi (ad esempio SHA-256) conservano le parole successive in un
+ * array aggiuntivo.
+ *
+ * <p>
+ * Il digest {@link #EMPTY} ha lunghezza 0 e rappresenta l'hash "vuoto"
+ * utilizzato per le foglie di riempimento dell'albero di Merkle. La
+ * conversione in stringa esadecimale avviene solo ai margini dell'API tramite
+ * {@link #toHex()} e {@link #fromHex(String)}.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+public final class Digest {
+
+    /**
+     * Lunghezza in byte di un digest MD5.
+     */
+    public static final int MD5_LENGTH = 16;
+
+    /**
+     * Lunghezza in byte di un digest SHA-256.
+     */
+    public static final int SHA256_LENGTH = 32;
+
+    /**
+     * Digest vuoto, corrispondente alla stringa esadecimale "".
+     */
+    public static final Digest EMPTY = new Digest(0L, 0L, null, 0);
+
+    private final long high; // Byte 0-7 del digest.
+
+    private final long low; // Byte 8-15 del digest.
+
+    private final long[] tail; // Parole successive ai primi 16 byte, null per digest di 16 byte.
+
+    private final int length; // Lunghezza in byte: 0 oppure un multiplo di 8 non inferiore a 16.
+
+    private Digest(long high, long low, long[] tail, int length) {
+        this.high = high;
+        this.low = low;
+        this.tail = tail;
+        this.length = length;
+    }
+
+    /**
+     * Costruisce un digest a partire dai suoi byte.
+     *
+     * @param bytes
+     *                  i byte del digest, di lunghezza 0 oppure multipla di
+     *                  8 e non inferiore a {@value #MD5_LENGTH}.
+     * @return il digest corrispondente.
+     * @throws NullPointerException
+     *                                      se l'array è null.
+     * @throws IllegalArgumentException
+     *                                      se la lunghezza non è valida.
+     */
+    public static Digest of(byte[] bytes) {
+        return of(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Costruisce un digest a partire da una porzione di un array di byte.
+     *
+     * @param bytes
+     *                   l'array contenente il digest.
+     * @param offset
+     *                   la posizione del primo byte del digest.
+     * @param length
+     *                   la lunghezza del digest, 0 oppure multipla di 8 e
+     *                   non inferiore a {@value #MD5_LENGTH}.
+     * @return il digest corrispondente.
+     * @throws IllegalArgumentException
+     *                                      se la lunghezza non è valida.
+     */
+    public static Digest of(byte[] bytes, int offset, int length) {
+        if (length == 0)
+            return EMPTY;
+        checkLength(length);
+        long[] tail = null;
+        if (length > MD5_LENGTH) {
+            tail = new long[(length - MD5_LENGTH) / 8];
+            for (int i = 0; i < tail.length; i++)
+                tail[i] = readLong(bytes, offset + MD5_LENGTH + i * 8);
+        }
+        return new Digest(readLong(bytes, offset), readLong(bytes, offset + 8),
+                tail, length);
+    }
+
+    /**
+     * Costruisce un digest leggendone i byte da una posizione assoluta di un
+     * buffer, senza modificarne la posizione né copiarli in un array
+     * intermedio. L'ordine dei byte del buffer non ha effetto.
+     *
+     * @param buffer
+     *                   il buffer contenente il digest.
+     * @param index
+     *                   la posizione assoluta del primo byte del digest.
+     * @param length
+     *                   la lunghezza del digest, 0 oppure multipla di 8 e
+     *                   non inferiore a {@value #MD5_LENGTH}.
+     * @return il digest corrispondente.
+     * @throws IllegalArgumentException
+     *                                       se la lunghezza non è valida.
+     * @throws IndexOutOfBoundsException
+     *                                       se il buffer non contiene il
+     *                                       digest.
+     */
+    public static Digest of(ByteBuffer buffer, int index, int length) {
+        if (length == 0)
+            return EMPTY;
+        checkLength(length);
+        boolean swap = buffer.order() != ByteOrder.BIG_ENDIAN;
+        long[] tail = null;
+        if (length > MD5_LENGTH) {
+            tail = new long[(length - MD5_LENGTH) / 8];
+            for (int i = 0; i < tail.length; i++)
+                tail[i] = readLong(buffer, index + MD5_LENGTH + i * 8, swap);
+        }
+        return new Digest(readLong(buffer, index, swap), readLong(buffer, index + 8, swap),
+                tail, length);
+    }
+
+    /**
+     * Costruisce un digest di {@value #MD5_LENGTH} byte a partire dalle sue
+     * due parole big-endian, senza passare da un array di byte.
+     *
+     * @param high
+     *                 i byte 0-7 del digest.
+     * @param low
+     *                 i byte 8-15 del digest.
+     * @return il digest corrispondente.
+     */
+    static Digest ofWords(long high, long low) {
+        return new Digest(high, low, null, MD5_LENGTH);
+    }
+
+    /**
+     * Costruisce un digest leggendone le parole big-endian da un array di
+     * long, come scritte da {@link #writeWords(long[], int)}.
+     *
+     * @param words
+     *                   l'array di parole.
+     * @param offset
+     *                   la posizione della prima parola.
+     * @param length
+     *                   la lunghezza in byte del digest.
+     * @return il digest corrispondente.
+     */
+    static Digest ofWords(long[] words, int offset, int length) {
+        if (length == 0)
+            return EMPTY;
+        long[] tail = null;
+        if (length > MD5_LENGTH)
+            tail = Arrays.copyOfRange(words, offset + 2, offset + length / 8);
+        return new Digest(words[offset], words[offset + 1], tail, length);
+    }
+
+    /**
+     * Scrive le parole big-endian del digest nell'array di long fornito.
+     *
+     * @param dst
+     *                   l'array di destinazione.
+     * @param offset
+     *                   la posizione della prima parola.
+     * @return il numero di parole scritte.
+     */
+    int writeWords(long[] dst, int offset) {
+        if (length == 0)
+            return 0;
+        dst[offset] = high;
+        dst[offset + 1] = low;
+        if (tail != null)
+            System.arraycopy(tail, 0, dst, offset + 2, tail.length);
+        return length / 8;
+    }
+
+    /**
+     * Restituisce la prima parola big-endian del digest, 0 per il digest
+     * vuoto.
+     *
+     * @return i byte 0-7 del digest.
+     */
+    long firstWord() {
+        return high;
+    }
+
+    /**
+     * Confronta il digest con le parole di un array di long, come scritte da
+     * {@link #writeWords(long[], int)}.
+     *
+     * @param words
+     *                   l'array di parole.
+     * @param offset
+     *                   la posizione della prima parola.
+     * @return true se le parole coincidono con quelle del digest.
+     */
+    boolean matches(long[] words, int offset) {
+        if (words[offset] != high || words[offset + 1] != low)
+            return false;
+        if (tail != null)
+            for (int i = 0; i < tail.length; i++)
+                if (words[offset + 2 + i] != tail[i])
+                    return false;
+        return true;
+    }
+
+    /**
+     * Confronta il digest con una porzione di un array di byte.
+     *
+     * @param bytes
+     *                   l'array di byte.
+     * @param offset
+     *                   la posizione del primo byte.
+     * @param length
+     *                   il numero di byte da confrontare.
+     * @return true se i byte coincidono con quelli del digest.
+     */
+    boolean matches(byte[] bytes, int offset, int length) {
+        if (length != this.length)
+            return false;
+        if (length == 0)
+            return true;
+        if (readLong(bytes, offset) != high || readLong(bytes, offset + 8) != low)
+            return false;
+        if (tail != null)
+            for (int i = 0; i < tail.length; i++)
+                if (readLong(bytes, offset + MD5_LENGTH + i * 8) != tail[i])
+                    return false;
+        return true;
+    }
+
+    /**
+     * Costruisce un digest a partire dalla sua rappresentazione esadecimale.
+     * La stringa vuota corrisponde a {@link #EMPTY}.
+     *
+     * @param hex
+     *                la stringa esadecimale.
+     * @return il digest corrispondente.
+     * @throws NullPointerException
+     *                                      se la stringa è null.
+     * @throws IllegalArgumentException
+     *                                      se la stringa non è una
+     *                                      rappresentazione esadecimale valida.
+     */
+    public static Digest fromHex(String hex) {
+        if (hex.isEmpty())
+            return EMPTY;
+        if (hex.length() % 16 != 0 || hex.length() < MD5_LENGTH * 2)
+            throw new IllegalArgumentException("Hash non valido: " + hex);
+        long[] tail = null;
+        if (hex.length() > MD5_LENGTH * 2) {
+            tail = new long[(hex.length() - MD5_LENGTH * 2) / 16];
+            for (int i = 0; i < tail.length; i++)
+                tail[i] = HashUtil.parseHexLong(hex, MD5_LENGTH * 2 + i * 16);
+        }
+        return new Digest(HashUtil.parseHexLong(hex, 0),
+                HashUtil.parseHexLong(hex, 16), tail, hex.length() / 2);
+    }
+
+    /**
+     * Restituisce la lunghezza in byte del digest.
+     *
+     * @return la lunghezza in byte del digest.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Restituisce true se il digest è quello vuoto, false altrimenti.
+     *
+     * @return true se il digest è quello vuoto, false altrimenti.
+     */
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * Scrive i byte del digest nell'array fornito.
+     *
+     * @param dst
+     *                   l'array di destinazione.
+     * @param offset
+     *                   la posizione da cui iniziare a scrivere.
+     * @return il numero di byte scritti.
+     */
+    public int writeTo(byte[] dst, int offset) {
+        if (length == 0)
+            return 0;
+        writeLong(high, dst, offset);
+        writeLong(low, dst, offset + 8);
+        if (tail != null)
+            for (int i = 0; i < tail.length; i++)
+                writeLong(tail[i], dst, offset + MD5_LENGTH + i * 8);
+        return length;
+    }
+
+    /**
+     * Scrive i byte del digest nel buffer fornito, avanzandone la posizione.
+     *
+     * @param dst
+     *                il buffer di destinazione.
+     * @return il numero di byte scritti.
+     */
+    public int writeTo(ByteBuffer dst) {
+        if (length == 0)
+            return 0;
+        ByteOrder order = dst.order();
+        dst.order(ByteOrder.BIG_ENDIAN);
+        dst.putLong(high).putLong(low);
+        if (tail != null)
+            for (long word : tail)
+                dst.putLong(word);
+        dst.order(order);
+        return length;
+    }
+
+    /**
+     * Restituisce una copia dei byte del digest.
+     *
+     * @return un nuovo array con i byte del digest.
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[length];
+        writeTo(bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Scrive la rappresentazione esadecimale del digest, codificata in ASCII,
+     * nell'array fornito.
+     *
+     * @param dst
+     *                   l'array di destinazione.
+     * @param offset
+     *                   la posizione da cui iniziare a scrivere.
+     * @return il numero di byte scritti.
+     */
+    public int writeHex(byte[] dst, int offset) {
+        if (length == 0)
+            return 0;
+        HashUtil.writeHexLong(high, dst, offset);
+        HashUtil.writeHexLong(low, dst, offset + 16);
+        if (tail != null)
+            for (int i = 0; i < tail.length; i++)
+                HashUtil.writeHexLong(tail[i], dst, offset + MD5_LENGTH * 2 + i * 16);
+        return length * 2;
+    }
+
+    /**
+     * Restituisce la rappresentazione esadecimale del digest.
+     *
+     * @return la stringa esadecimale del digest; "" per il digest vuoto.
+     */
+    public String toHex() {
+        if (length == 0)
+            return "";
+        byte[] chars = new byte[length * 2];
+        writeHex(chars, 0);
+        return new String(chars, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof Digest)) return false;
+        Digest other = (Digest) obj;
+        return high == other.high && low == other.low && length == other.length
+                && Arrays.equals(tail, other.tail);
+    }
+
+    @Override
+    public int hashCode() {
+        // i byte di un digest sono già uniformemente distribuiti
+        return (int) high;
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+
+    private static void checkLength(int length) {
+        if (length < MD5_LENGTH || length % 8 != 0)
+            throw new IllegalArgumentException(
+                    "Lunghezza del digest non valida: " + length);
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static long readLong(ByteBuffer buffer, int index, boolean swap) {
+        long value = buffer.getLong(index);
+        return swap ? Long.reverseBytes(value) : value;
+    }
+
+    private static void writeLong(long value, byte[] dst, int offset) {
+        for (int i = 7; i >= 0; i--) {
+            dst[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache limitata e thread-safe dei digest dei dati, per evitare di ricalcolare
+ * l'hash di dati validati o cercati ripetutamente. Ogni cache è legata a una
+ * {@link HashFunction} e a un {@link DataEncoder}, per cui i digest memorizzati
+ * sono sempre quelli che si otterrebbero con
+ * {@link HashUtil#dataToDigest(Object, DataEncoder, HashFunction)}.
+ *
+ * <p>
+ * La cache è divisa in segmenti indipendenti, ciascuno con il proprio lock,
+ * scelti in base all'hash della chiave, così che thread diversi possano
+ * accedere in parallelo a dati di segmenti diversi. La capacità è ripartita
+ * tra i segmenti e quando la capacità di un segmento è raggiunta viene
+ * rimosso il suo dato usato meno di recente (LRU); le cache con meno di
+ * {@value #SEGMENT_SIZE} digest per segmento ne usano meno, fino a un unico
+ * segmento, in cui l'ordine LRU è quello globale. Le chiavi possono essere
+ * confrontate con equals() oppure per
+ * identità: nel primo caso i dati non devono essere modificati dopo
+ * l'inserimento in cache, altrimenti il digest memorizzato non corrisponde più
+ * al loro contenuto.
+ *
+ * @param <T>
+ *                il tipo dei dati.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+public class DigestCache<T> {
+
+    /**
+     * Numero massimo di segmenti di una cache.
+     */
+    static final int MAX_SEGMENTS = 16;
+
+    /**
+     * Capacità minima di un segmento, per cui una cache ha tanti segmenti
+     * quanti, fino a {@link #MAX_SEGMENTS}, ne possono avere almeno questa
+     * capacità.
+     */
+    static final int SEGMENT_SIZE = 64;
+
+    private final HashFunction hashFunction; // Funzione di hash dei digest memorizzati
+
+    private final DataEncoder<? super T> encoder; // Codifica del contenuto dei dati
+
+    private final boolean identity; // true se le chiavi sono confrontate per identità
+
+    private final List<Map<Object, Digest>> segments; // Digest in ordine di accesso, protetti dal lock sul segmento
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Costruisce una cache di capacità data le cui chiavi sono confrontate
+     * con equals().
+     *
+     * @param hashFunction la funzione di hash dei dati.
+     * @param encoder      l'encoder del contenuto dei dati.
+     * @param maxSize      il numero massimo di digest memorizzati.
+     * @throws IllegalArgumentException se la funzione di hash o l'encoder
+     *                                  sono null o se la capacità non è
+     *                                  positiva.
+     */
+    public DigestCache(HashFunction hashFunction, DataEncoder<? super T> encoder, int maxSize) {
+        this(hashFunction, encoder, maxSize, false);
+    }
+
+    /**
+     * Costruisce una cache di capacità data.
+     *
+     * @param hashFunction la funzione di hash dei dati.
+     * @param encoder      l'encoder del contenuto dei dati.
+     * @param maxSize      il numero massimo di digest memorizzati.
+     * @param identity     true per confrontare le chiavi per identità, false
+     *                     per confrontarle con equals().
+     * @throws IllegalArgumentException se la funzione di hash o l'encoder
+     *                                  sono null o se la capacità non è
+     *                                  positiva.
+     */
+    public DigestCache(HashFunction hashFunction, DataEncoder<? super T> encoder, int maxSize, boolean identity) {
+        if (hashFunction == null || encoder == null || maxSize <= 0)
+            throw new IllegalArgumentException();
+        this.hashFunction = hashFunction;
+        this.encoder = encoder;
+        this.identity = identity;
+        int count = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, maxSize / SEGMENT_SIZE)));
+        this.segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)     //la capacità avanzata va ai primi segmenti
+            segments.add(newSegment(maxSize / count + (i < maxSize % count ? 1 : 0)));
+    }
+
+    private Map<Object, Digest> newSegment(int maxSize) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Digest> eldest) {
+                if (size() <= maxSize) return false;
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Restituisce il digest del dato, calcolandolo e memorizzandolo se non è
+     * presente in cache.
+     *
+     * @param data il dato di cui calcolare il digest.
+     * @return il digest del dato.
+     * @throws NullPointerException se il dato è null.
+     */
+    public Digest digest(T data) {
+        if (data == null) throw new NullPointerException("dato nullo");
+        Object key = key(data);
+        Map<Object, Digest> segment = segments.get(segmentOf(key));
+        Digest digest;
+        synchronized (segment) {
+            digest = segment.get(key);
+        }
+        if (digest != null) {
+            hits.increment();
+            return digest;
+        }
+        misses.increment();
+        digest = HashUtil.dataToDigest(data, encoder, hashFunction);    //calcolato fuori dal lock
+        synchronized (segment) {
+            segment.put(key, digest);
+        }
+        return digest;
+    }
+
+    /**
+     * Restituisce la funzione di hash della cache.
+     *
+     * @return la funzione di hash della cache.
+     */
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    /**
+     * Restituisce l'encoder del contenuto dei dati della cache.
+     *
+     * @return l'encoder dei dati della cache.
+     */
+    public DataEncoder<? super T> getDataEncoder() {
+        return encoder;
+    }
+
+    /**
+     * Restituisce il numero di digest attualmente memorizzati.
+     *
+     * @return il numero di digest memorizzati.
+     */
+    public int size() {
+        int size = 0;
+        for (Map<Object, Digest> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Restituisce il numero di richieste soddisfatte dalla cache.
+     *
+     * @return il numero di richieste soddisfatte dalla cache.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Restituisce il numero di richieste che hanno richiesto il calcolo del
+     * digest.
+     *
+     * @return il numero di richieste non soddisfatte dalla cache.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Restituisce il numero di digest rimossi per far posto a nuovi digest.
+     *
+     * @return il numero di digest rimossi.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Restituisce la frazione di richieste soddisfatte dalla cache, 0 se non
+     * ci sono state richieste.
+     *
+     * @return la frazione di richieste soddisfatte dalla cache.
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * Restituisce i digest di tutti i dati della lista, nello stesso ordine,
+     * come {@link #digest(Object)}: i dati sono raggruppati per segmento e
+     * quelli presenti in cache sono cercati con un'unica acquisizione del lock
+     * di ciascun segmento, quelli assenti sono hashati in parallelo sul pool
+     * fornito con
+     * {@link HashUtil#dataToDigests(List, DataEncoder, HashFunction, ForkJoinPool)}
+     * e poi memorizzati, di nuovo con un'acquisizione per segmento.
+     *
+     * @param data i dati di cui calcolare i digest.
+     * @param pool il pool su cui calcolare i digest dei dati assenti.
+     * @return i digest dei dati, nello stesso ordine.
+     * @throws NullPointerException se uno dei dati è null; in tal caso la
+     *                              cache non viene modificata.
+     */
+    Digest[] digests(List<? extends T> data, ForkJoinPool pool) {
+        List<T> items = new ArrayList<>(data);
+        int n = items.size();
+        Object[] keys = new Object[n];
+        int[] start = new int[segments.size() + 1];                 //inizio del gruppo di ciascun segmento
+        for (int i = 0; i < n; i++) {
+            if (items.get(i) == null) throw new NullPointerException("dato nullo in posizione " + i);
+            keys[i] = key(items.get(i));
+            start[segmentOf(keys[i]) + 1]++;
+        }
+        for (int s = 0; s < segments.size(); s++)
+            start[s + 1] += start[s];
+        int[] order = new int[n];                                   //posizioni dei dati raggruppate per segmento
+        int[] next = Arrays.copyOf(start, segments.size());
+        for (int i = 0; i < n; i++)
+            order[next[segmentOf(keys[i])]++] = i;
+
+        Digest[] digests = new Digest[n];
+        List<T> missing = new ArrayList<>();
+        int[] positions = new int[n];                               //posizioni dei dati assenti, per segmento
+        for (int s = 0; s < segments.size(); s++) {
+            Map<Object, Digest> segment = segments.get(s);
+            if (start[s] == start[s + 1]) continue;
+            synchronized (segment) {
+                for (int j = start[s]; j < start[s + 1]; j++) {
+                    int i = order[j];
+                    digests[i] = segment.get(keys[i]);
+                    if (digests[i] == null) {
+                        positions[missing.size()] = i;
+                        missing.add(items.get(i));
+                    }
+                }
+            }
+        }
+        hits.add(n - missing.size());
+        misses.add(missing.size());
+        if (missing.isEmpty()) return digests;
+        Digest[] computed = HashUtil.dataToDigests(missing, encoder, hashFunction, pool);  //calcolati fuori dal lock
+        for (int j = 0; j < computed.length; ) {                    //i dati assenti sono già in ordine di segmento
+            int s = segmentOf(keys[positions[j]]);
+            Map<Object, Digest> segment = segments.get(s);
+            synchronized (segment) {
+                for (; j < computed.length && segmentOf(keys[positions[j]]) == s; j++) {
+                    segment.put(keys[positions[j]], computed[j]);
+                    digests[positions[j]] = computed[j];
+                }
+            }
+        }
+        return digests;
+    }
+
+    private Object key(Object data) {
+        return identity ? new IdentityKey(data) : data;
+    }
+
+    /**
+     * Restituisce l'indice del segmento della chiave, dai bit dell'hash della
+     * chiave mescolati come in HashMap.
+     */
+    private int segmentOf(Object key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (segments.size() - 1);
+    }
+
+    /**
+     * Rimuove tutti i digest dalla cache, senza azzerare i contatori.
+     */
+    public void clear() {
+        for (Map<Object, Digest> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Chiave che confronta il dato per identità.
+     */
+    private static final class IdentityKey {
+        private final Object data;
+
+        IdentityKey(Object data) {
+            this.data = data;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof IdentityKey && ((IdentityKey) obj).data == data;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(data);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per la classe {@link DigestCache}. Di seguito, l'elenco dei
+ * test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testDigest()}: Verifica che la cache restituisca lo stesso
+ * digest di {@link HashUtil#dataToDigest(Object, DataEncoder, HashFunction)} e
+ * conti correttamente successi e fallimenti.</li>
+ *
+ * <li>{@link #testEviction()}: Verifica che, a capacità raggiunta, venga
+ * rimosso il dato usato meno di recente.</li>
+ *
+ * <li>{@link #testIdentityKeys()}: Verifica che con chiavi per identità dati
+ * uguali ma distinti non condividano il digest memorizzato.</li>
+ *
+ * <li>{@link #testInvalidArguments()}: Verifica che vengano lanciate eccezioni
+ * per argomenti non validi.</li>
+ *
+ * <li>{@link #testCacheInListTreeAndProof()}: Verifica che la cache della
+ * lista sia usata dall'albero per validare e cercare i dati e dalla prova di
+ * Merkle per verificarli.</li>
+ *
+ * <li>{@link #testBulkInsertion()}: Verifica che l'inserimento in blocco in
+ * una lista con cache usi i digest memorizzati e memorizzi soltanto quelli
+ * assenti.</li>
+ *
+ * <li>{@link #testSegments()}: Verifica che una cache divisa in segmenti
+ * rispetti la capacità totale e conti successi, fallimenti e rimozioni, anche
+ * con accessi concorrenti e con l'inserimento in blocco.</li>
+ * </ul>
+ */
+class DigestCacheTest {
+
+    @Test
+    void testDigest() {
+        DigestCache<String> cache = new DigestCache<>(HashFunction.SHA_256, DataEncoder.STRING, 8);
+        Digest expected = HashUtil.dataToDigest("Alice paga Bob", DataEncoder.STRING, HashFunction.SHA_256);
+
+        assertEquals(expected, cache.digest("Alice paga Bob"), "Il digest non è corretto.");
+        assertEquals(expected, cache.digest("Alice paga Bob"), "Il digest memorizzato non è corretto.");
+        assertEquals(1, cache.getHitCount(), "Il numero di successi non è corretto.");
+        assertEquals(1, cache.getMissCount(), "Il numero di fallimenti non è corretto.");
+        assertEquals(0.5, cache.getHitRate(), "La frazione di successi non è corretta.");
+        assertEquals(1, cache.size(), "La dimensione della cache non è corretta.");
+
+        cache.clear();
+        assertEquals(0, cache.size(), "La cache dovrebbe essere vuota.");
+        assertEquals(expected, cache.digest("Alice paga Bob"), "Il digest non è corretto.");
+        assertEquals(2, cache.getMissCount(), "Il numero di fallimenti non è corretto.");
+    }
+
+    @Test
+    void testEviction() {
+        DigestCache<Integer> cache = new DigestCache<>(HashFunction.MD5, DataEncoder.HASH_CODE, 2);
+        cache.digest(1);
+        cache.digest(2);
+        cache.digest(1);    // 2 diventa il meno recente
+        cache.digest(3);
+
+        assertEquals(2, cache.size(), "La cache non dovrebbe superare la capacità.");
+        assertEquals(1, cache.getEvictionCount(), "Il numero di rimozioni non è corretto.");
+        cache.digest(1);
+        assertEquals(2, cache.getHitCount(), "Il dato usato più di recente dovrebbe essere in cache.");
+        cache.digest(2);
+        assertEquals(4, cache.getMissCount(), "Il dato meno recente dovrebbe essere stato rimosso.");
+    }
+
+    @Test
+    void testIdentityKeys() {
+        DigestCache<String> cache = new DigestCache<>(HashFunction.MD5, DataEncoder.STRING, 8, true);
+        String first = new String("dato");
+        String second = new String("dato");
+
+        assertEquals(cache.digest(first), cache.digest(second), "Dati uguali dovrebbero avere lo stesso digest.");
+        assertEquals(0, cache.getHitCount(), "Dati distinti non dovrebbero condividere la chiave.");
+        cache.digest(first);
+        assertEquals(1, cache.getHitCount(), "Lo stesso oggetto dovrebbe essere in cache.");
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new DigestCache<>(null, DataEncoder.HASH_CODE, 1),
+                "Dovrebbe essere lanciata un'eccezione per una funzione di hash nulla.");
+        assertThrows(IllegalArgumentException.class, () -> new DigestCache<>(HashFunction.MD5, null, 1),
+                "Dovrebbe essere lanciata un'eccezione per un encoder nullo.");
+        assertThrows(IllegalArgumentException.class, () -> new DigestCache<>(HashFunction.MD5, DataEncoder.HASH_CODE, 0),
+                "Dovrebbe essere lanciata un'eccezione per una capacità non positiva.");
+        DigestCache<Object> cache = new DigestCache<>(HashFunction.MD5, DataEncoder.HASH_CODE, 1);
+        assertThrows(NullPointerException.class, () -> cache.digest(null),
+                "Dovrebbe essere lanciata un'eccezione per un dato nullo.");
+    }
+
+    @Test
+    void testCacheInListTreeAndProof() {
+        DigestCache<String> cache = new DigestCache<>(HashFunction.MD5, DataEncoder.STRING, 16);
+        HashLinkedList<String> list = new HashLinkedList<>(cache);
+        list.addAtTail("Aa");
+        list.addAtTail("BB");
+        list.addAtTail("Cc");
+        assertEquals(HashFunction.MD5, list.getHashFunction(), "La lista dovrebbe usare la funzione della cache.");
+        assertSame(DataEncoder.STRING, list.getDataEncoder(), "La lista dovrebbe usare l'encoder della cache.");
+        assertEquals(3, cache.getMissCount(), "Gli hash dei dati inseriti dovrebbero essere calcolati dalla cache.");
+
+        MerkleTree<String> tree = new MerkleTree<>(list);
+        assertSame(cache, tree.getDigestCache(), "L'albero dovrebbe usare la cache della lista.");
+        assertTrue(tree.validateData("BB"), "Il dato dovrebbe essere valido.");
+        assertEquals(2, tree.getIndexOfData("Cc"), "L'indice del dato non è corretto.");
+        MerkleProof proof = tree.getMerkleProof("Aa");
+        assertEquals(3, cache.getHitCount(), "I dati già inseriti dovrebbero essere trovati in cache.");
+
+        assertTrue(proof.proveValidityOfData("Aa", cache), "La prova di Merkle dovrebbe essere valida.");
+        assertFalse(proof.proveValidityOfData("BB", cache), "La prova non dovrebbe validare un altro dato.");
+        assertEquals(5, cache.getHitCount(), "Ogni verifica dovrebbe passare dalla cache.");
+
+        assertNull(new MerkleTree<>(list, HashFunction.SHA_256).getDigestCache(),
+                "Un albero con un'altra funzione di hash non dovrebbe usare la cache.");
+        DigestCache<String> other = new DigestCache<>(HashFunction.SHA_256, DataEncoder.STRING, 16);
+        assertThrows(IllegalArgumentException.class, () -> proof.proveValidityOfData("Aa", other),
+                "Dovrebbe essere lanciata un'eccezione per una cache con un'altra funzione di hash.");
+    }
+
+    @Test
+    void testBulkInsertion() {
+        DigestCache<String> cache = new DigestCache<>(HashFunction.SHA_256, DataEncoder.STRING, 16);
+        Digest cached = cache.digest("B");
+        HashLinkedList<String> list = new HashLinkedList<>(cache);
+        list.addAllAtTail(List.of("A", "B", "C", "A"), new ForkJoinPool(2));
+
+        assertEquals(1, cache.getHitCount(), "Il dato già presente dovrebbe essere preso dalla cache.");
+        assertEquals(4, cache.getMissCount(), "I dati assenti dovrebbero essere contati come fallimenti.");
+        assertEquals(3, cache.size(), "I dati assenti dovrebbero essere memorizzati.");
+        assertSame(cached, list.getAllDigests().get(1), "Il digest dovrebbe essere quello memorizzato.");
+        for (int i = 0; i < 4; i++)
+            assertEquals(HashUtil.dataToDigest(List.of("A", "B", "C", "A").get(i), DataEncoder.STRING, HashFunction.SHA_256),
+                    list.getAllDigests().get(i), "Il digest in posizione " + i + " non è corretto.");
+
+        list.addAllAtTail(List.of("A", "C"));
+        assertEquals(3, cache.getHitCount(), "I dati memorizzati dovrebbero essere presi dalla cache.");
+        assertThrows(NullPointerException.class, () -> list.addAllAtTail(Arrays.asList("D", null)),
+                "Dovrebbe essere lanciata un'eccezione per un dato nullo.");
+        assertEquals(6, list.getSize(), "La lista non dovrebbe essere modificata.");
+        assertEquals(3, cache.size(), "La cache non dovrebbe essere modificata.");
+    }
+
+    @Test
+    void testSegments() {
+        int capacity = DigestCache.MAX_SEGMENTS * DigestCache.SEGMENT_SIZE;
+        DigestCache<Integer> cache = new DigestCache<>(HashFunction.MD5, DataEncoder.HASH_CODE, capacity);
+        List<Integer> data = new ArrayList<>();
+        for (int i = 0; i < capacity; i++)
+            data.add(i);
+        Digest[] digests = cache.digests(data, new ForkJoinPool(2));
+        for (int i = 0; i < capacity; i++)
+            assertEquals(HashUtil.dataToDigest(i), digests[i], "Il digest in posizione " + i + " non è corretto.");
+        assertEquals(capacity, cache.size(), "Tutti i dati dovrebbero essere memorizzati.");
+        assertEquals(0, cache.getEvictionCount(), "Nessun dato dovrebbe essere rimosso.");
+
+        IntStream.range(0, 4 * capacity).parallel().forEach(i -> assertEquals(HashUtil.dataToDigest(i % (2 * capacity)),
+                cache.digest(i % (2 * capacity)), "Il digest non è corretto."));
+        assertEquals(5 * capacity, cache.getHitCount() + cache.getMissCount(),
+                "Ogni richiesta dovrebbe essere contata una volta.");
+        assertEquals(capacity, cache.size(), "La cache non dovrebbe superare la capacità.");
+        assertTrue(cache.getEvictionCount() > 0 && cache.getEvictionCount() <= cache.getMissCount() - capacity,
+                "Soltanto i dati memorizzati oltre la capacità dovrebbero rimuoverne altri.");
+
+        DigestCache<Integer> small = new DigestCache<>(HashFunction.MD5, DataEncoder.HASH_CODE,
+                DigestCache.SEGMENT_SIZE + 1);
+        for (int i = 0; i <= DigestCache.SEGMENT_SIZE; i++)
+            small.digest(i * DigestCache.MAX_SEGMENTS);
+        assertEquals(0, small.getEvictionCount(), "Una cache piccola dovrebbe avere un unico segmento.");
+    }
+}
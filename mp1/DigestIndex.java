@@ -0,0 +1,206 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Indice da digest a posizione, realizzato come tabella hash a indirizzamento
+ * aperto con scansione lineare su un array di int. Le chiavi non sono
+ * copiate: il digest della posizione p è letto dall'array di parole fornito,
+ * a partire dalla parola {@code p * words}, come nella memorizzazione di
+ * {@link ArrayMerkleTree}. Se più posizioni hanno lo stesso digest, l'indice
+ * restituisce quella aggiunta per prima.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+final class DigestIndex {
+
+    private final long[] keys; // Parole dei digest indicizzati
+
+    private final int words; // Numero di parole di ciascun digest
+
+    private final int[] table; // Posizione + 1 per ogni cella, 0 se vuota
+
+    private final int shift; // 32 - log2(table.length), per ricavare la cella dai bit alti dell'hash
+
+    /**
+     * Costruisce l'indice delle posizioni in [from, to).
+     *
+     * @param keys  le parole dei digest.
+     * @param words il numero di parole di ciascun digest.
+     * @param from  la prima posizione da indicizzare.
+     * @param to    la posizione successiva all'ultima da indicizzare.
+     */
+    DigestIndex(long[] keys, int words, int from, int to) {
+        this(keys, words, to - from);
+        for (int p = from; p < to; p++)
+            add(p);
+    }
+
+    /**
+     * Costruisce un indice vuoto per al più {@code expected} posizioni, da
+     * aggiungere con {@link #add(int)}.
+     *
+     * @param keys     le parole dei digest.
+     * @param words    il numero di parole di ciascun digest.
+     * @param expected il numero massimo di posizioni da indicizzare.
+     */
+    DigestIndex(long[] keys, int words, int expected) {
+        this.keys = keys;
+        this.words = words;
+        int capacity = Integer.highestOneBit(Math.max(2, expected) * 2 - 1) << 1;     //carico non superiore a 1/2
+        this.table = new int[capacity];
+        this.shift = 32 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    /**
+     * Restituisce la prima posizione aggiunta con il digest dato, -1 se non
+     * presente.
+     *
+     * @param digest il digest da cercare.
+     * @return la posizione del digest; -1 se non presente.
+     */
+    int get(Digest digest) {
+        if (digest.length() != words * 8) return -1;
+        int mask = table.length - 1;
+        for (int cell = cellOf(digest.firstWord()); ; cell = (cell + 1) & mask) {
+            int p = table[cell] - 1;
+            if (p < 0) return -1;
+            if (digest.matches(keys, p * words)) return p;
+        }
+    }
+
+    /**
+     * Aggiunge una posizione all'indice, se il suo digest non è già
+     * presente.
+     *
+     * @param p la posizione da aggiungere.
+     */
+    void add(int p) {
+        int mask = table.length - 1;
+        int from = p * words;
+        for (int cell = cellOf(keys[from]); ; cell = (cell + 1) & mask) {
+            int q = table[cell] - 1;
+            if (q < 0) {
+                table[cell] = p + 1;
+                return;
+            }
+            if (sameKey(q * words, from)) return;   //duplicato: resta la posizione inserita prima
+        }
+    }
+
+    private boolean sameKey(int a, int b) {
+        for (int w = 0; w < words; w++)
+            if (keys[a + w] != keys[b + w]) return false;
+        return true;
+    }
+
+    private int cellOf(long firstWord) {
+        int h = (int) (firstWord ^ (firstWord >>> 32));
+        return (h * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * Una versione di un indice in cui alcune posizioni hanno un nuovo
+     * digest, ottenuta senza copiare l'indice di base: le posizioni sostituite
+     * sono memorizzate a parte con il loro digest e soltanto queste sono
+     * copiate a ogni nuova versione. Come l'indice di base, restituisce la
+     * prima posizione con il digest cercato; se però la prima posizione
+     * dell'indice di base ha cambiato digest, le sue eventuali altre
+     * occorrenze non sono note e la ricerca restituisce {@link #UNKNOWN}.
+     *
+     * <p>
+     * Per un indice di posizioni nell'heap di un albero, la versione può
+     * anche seguire il raddoppio dell'albero, in cui la vecchia radice
+     * diventa il figlio sinistro della nuova: il nodo in posizione p alla
+     * profondità d passa in posizione p + 2^d.
+     */
+    static final class Overlay {
+
+        /**
+         * Esito di una ricerca che richiede di ricostruire l'indice.
+         */
+        static final int UNKNOWN = Integer.MIN_VALUE;
+
+        private final DigestIndex base;
+
+        private final int doublings; // Raddoppi dell'albero dalla costruzione dell'indice di base
+
+        private final Map<Integer, Digest> replaced; // Digest attuale di ogni posizione sostituita
+
+        private final Map<Digest, Integer> first; // Prima posizione sostituita per ogni digest
+
+        /**
+         * Costruisce una versione dell'indice dato senza posizioni sostituite.
+         *
+         * @param base l'indice di base.
+         */
+        Overlay(DigestIndex base) {
+            this(base, 0, Collections.emptyMap());
+        }
+
+        private Overlay(DigestIndex base, int doublings, Map<Integer, Digest> replaced) {
+            this.base = base;
+            this.doublings = doublings;
+            this.replaced = replaced;
+            this.first = new HashMap<>();
+            for (Map.Entry<Integer, Digest> entry : replaced.entrySet())
+                first.merge(entry.getValue(), entry.getKey(), Math::min);
+        }
+
+        /**
+         * Restituisce la prima posizione con il digest dato, -1 se non
+         * presente o {@link #UNKNOWN} se non determinabile senza ricostruire
+         * l'indice.
+         *
+         * @param digest il digest da cercare.
+         * @return la posizione del digest; -1 se non presente;
+         *         {@link #UNKNOWN} se non determinabile.
+         */
+        int get(Digest digest) {
+            int p = base.get(digest);
+            if (p >= 0) {
+                p += ((1 << doublings) - 1) * Integer.highestOneBit(p);   //posizione dopo i raddoppi
+                Digest current = replaced.get(p);
+                if (current != null && !current.equals(digest)) return UNKNOWN;
+            }
+            Integer own = first.get(digest);
+            if (own == null) return p;
+            return p < 0 ? own : Math.min(p, own);
+        }
+
+        /**
+         * Restituisce una nuova versione in cui le prime {@code count}
+         * posizioni date hanno i digest corrispondenti, o null se le posizioni
+         * sostituite in tutto sarebbero più di {@code limit}.
+         *
+         * @param positions le posizioni sostituite.
+         * @param digests   i nuovi digest delle posizioni.
+         * @param count     il numero di posizioni sostituite.
+         * @param limit     il numero massimo di posizioni sostituite.
+         * @return la nuova versione; null se supera il limite.
+         */
+        Overlay with(int[] positions, Digest[] digests, int count, int limit) {
+            if (count > limit) return null;
+            Map<Integer, Digest> next = new HashMap<>(replaced);
+            for (int i = 0; i < count; i++)
+                next.put(positions[i], digests[i]);
+            return next.size() > limit ? null : new Overlay(base, doublings, next);
+        }
+
+        /**
+         * Restituisce la versione per l'albero raddoppiato, con le stesse
+         * posizioni sostituite traslate; la nuova radice e il nuovo
+         * sottoalbero destro vanno sostituiti con {@link #with}.
+         *
+         * @return la versione per l'albero raddoppiato.
+         */
+        Overlay doubled() {
+            Map<Integer, Digest> next = new HashMap<>();
+            for (Map.Entry<Integer, Digest> entry : replaced.entrySet())
+                next.put(entry.getKey() + Integer.highestOneBit(entry.getKey()), entry.getValue());
+            return new Overlay(base, doublings + 1, next);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per la classe {@link DigestIndex}. Di seguito, l'elenco dei
+ * test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testGet()}: Verifica che ogni digest indicizzato venga trovato
+ * nella propria posizione e che digest assenti o di lunghezza diversa non
+ * vengano trovati.</li>
+ *
+ * <li>{@link #testDuplicates()}: Verifica che per digest ripetuti venga
+ * restituita la posizione più piccola.</li>
+ *
+ * <li>{@link #testRange()}: Verifica che vengano indicizzate soltanto le
+ * posizioni dell'intervallo fornito.</li>
+ * </ul>
+ */
+class DigestIndexTest {
+
+    private static long[] keys(HashFunction function, int... data) {
+        int words = function.digestLength() / 8;
+        long[] keys = new long[data.length * words];
+        for (int i = 0; i < data.length; i++)
+            HashUtil.dataToDigest(data[i], function).writeWords(keys, i * words);
+        return keys;
+    }
+
+    @Test
+    void testGet() {
+        int[] data = new int[1000];
+        for (int i = 0; i < data.length; i++) data[i] = i;
+        for (HashFunction function : new HashFunction[] { HashFunction.MD5, HashFunction.SHA_256 }) {
+            DigestIndex index = new DigestIndex(keys(function, data), function.digestLength() / 8, 0, data.length);
+            for (int i = 0; i < data.length; i++)
+                assertEquals(i, index.get(HashUtil.dataToDigest(i, function)), "La posizione del digest non è corretta.");
+            assertEquals(-1, index.get(HashUtil.dataToDigest(-1, function)), "Un digest assente non dovrebbe essere trovato.");
+            assertEquals(-1, index.get(Digest.EMPTY), "Il digest vuoto non dovrebbe essere trovato.");
+        }
+        DigestIndex md5 = new DigestIndex(keys(HashFunction.MD5, 1, 2), 2, 0, 2);
+        assertEquals(-1, md5.get(HashUtil.dataToDigest(1, HashFunction.SHA_256)),
+                "Un digest di lunghezza diversa non dovrebbe essere trovato.");
+    }
+
+    @Test
+    void testDuplicates() {
+        DigestIndex index = new DigestIndex(keys(HashFunction.MD5, 7, 3, 7, 3, 5), 2, 0, 5);
+        assertEquals(0, index.get(HashUtil.dataToDigest(7)), "Dovrebbe essere restituita la prima posizione.");
+        assertEquals(1, index.get(HashUtil.dataToDigest(3)), "Dovrebbe essere restituita la prima posizione.");
+        assertEquals(4, index.get(HashUtil.dataToDigest(5)), "La posizione del digest non è corretta.");
+    }
+
+    @Test
+    void testRange() {
+        DigestIndex index = new DigestIndex(keys(HashFunction.MD5, 1, 2, 3, 4), 2, 1, 3);
+        assertEquals(-1, index.get(HashUtil.dataToDigest(1)), "Le posizioni precedenti non dovrebbero essere indicizzate.");
+        assertEquals(2, index.get(HashUtil.dataToDigest(3)), "La posizione del digest non è corretta.");
+        assertEquals(-1, index.get(HashUtil.dataToDigest(4)), "Le posizioni successive non dovrebbero essere indicizzate.");
+    }
+}
@@ -0,0 +1,153 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool globale di interning dei digest. Se abilitato, le liste e gli alberi
+ * di Merkle fanno passare dal pool i digest dei propri nodi, per cui digest
+ * uguali presenti in versioni diverse di un albero condividono la stessa
+ * istanza. Il pool è disabilitato per impostazione predefinita; in tal caso
+ * {@link #intern(Digest)} restituisce il digest fornito.
+ *
+ * <p>
+ * I digest sono referenziati debolmente: un digest non più usato da alcun
+ * nodo viene rimosso dal pool dal garbage collector. Il pool è suddiviso in
+ * segmenti sincronizzati separatamente, per ridurre la contesa tra thread che
+ * costruiscono alberi in parallelo.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+public final class DigestPool {
+
+    private static final int SEGMENTS = 16; // Numero di segmenti, potenza di due
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static final Map<Digest, WeakReference<Digest>>[] POOL = new Map[SEGMENTS];
+
+    private static final LongAdder hits = new LongAdder();
+
+    private static final LongAdder misses = new LongAdder();
+
+    private static volatile boolean enabled;
+
+    static {
+        for (int i = 0; i < SEGMENTS; i++)
+            POOL[i] = new WeakHashMap<>();
+    }
+
+    private DigestPool() {
+    }
+
+    /**
+     * Abilita o disabilita l'interning dei digest. Disabilitare il pool non
+     * ne rimuove i digest già presenti.
+     *
+     * @param enable
+     *                   true per abilitare l'interning.
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * Restituisce true se l'interning dei digest è abilitato.
+     *
+     * @return true se l'interning è abilitato.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Restituisce l'istanza condivisa di un digest uguale a quello fornito,
+     * aggiungendo quest'ultimo al pool se non è presente. Se il pool è
+     * disabilitato restituisce il digest fornito.
+     *
+     * @param digest
+     *                   il digest da condividere.
+     * @return l'istanza condivisa del digest.
+     */
+    public static Digest intern(Digest digest) {
+        if (!enabled || digest == Digest.EMPTY) return digest;
+        Map<Digest, WeakReference<Digest>> segment = segmentOf(digest);
+        synchronized (segment) {
+            WeakReference<Digest> ref = segment.get(digest);
+            Digest shared = ref == null ? null : ref.get();
+            if (shared != null) {
+                hits.increment();
+                return shared;
+            }
+            segment.put(digest, new WeakReference<>(digest));
+        }
+        misses.increment();
+        return digest;
+    }
+
+    /**
+     * Restituisce il numero di digest distinti attualmente nel pool.
+     *
+     * @return il numero di digest nel pool.
+     */
+    public static int size() {
+        int size = 0;
+        for (Map<Digest, WeakReference<Digest>> segment : POOL) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Restituisce il numero di digest per cui è stata restituita un'istanza
+     * già presente nel pool.
+     *
+     * @return il numero di digest condivisi.
+     */
+    public static long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Restituisce il numero di digest aggiunti al pool.
+     *
+     * @return il numero di digest aggiunti.
+     */
+    public static long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Restituisce la frazione di digest per cui è stata restituita un'istanza
+     * già presente, 0 se non ci sono state richieste.
+     *
+     * @return la frazione di digest condivisi.
+     */
+    public static double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * Rimuove tutti i digest dal pool e azzera i contatori. Le istanze già
+     * condivise restano valide.
+     */
+    public static void clear() {
+        for (Map<Digest, WeakReference<Digest>> segment : POOL) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    private static Map<Digest, WeakReference<Digest>> segmentOf(Digest digest) {
+        int h = digest.hashCode();
+        return POOL[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+}
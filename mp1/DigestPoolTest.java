@@ -0,0 +1,79 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per la classe {@link DigestPool}. Di seguito, l'elenco dei
+ * test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testDisabled()}: Verifica che con il pool disabilitato venga
+ * restituito il digest fornito.</li>
+ *
+ * <li>{@link #testIntern()}: Verifica che digest uguali vengano condivisi e
+ * che dimensione e frazione di successi siano corrette.</li>
+ *
+ * <li>{@link #testSharedAcrossTrees()}: Verifica che alberi costruiti da liste
+ * diverse con gli stessi dati condividano i digest dei nodi.</li>
+ * </ul>
+ */
+class DigestPoolTest {
+
+    @Test
+    void testDisabled() {
+        DigestPool.setEnabled(false);
+        DigestPool.clear();
+        Digest digest = HashUtil.dataToDigest("dato");
+        assertSame(digest, DigestPool.intern(digest), "Il pool disabilitato dovrebbe restituire il digest fornito.");
+        assertEquals(0, DigestPool.size(), "Il pool disabilitato non dovrebbe memorizzare digest.");
+    }
+
+    @Test
+    void testIntern() {
+        DigestPool.clear();
+        DigestPool.setEnabled(true);
+        try {
+            Digest first = HashUtil.dataToDigest("dato");
+            Digest second = HashUtil.dataToDigest("dato");
+            assertNotSame(first, second, "I digest calcolati dovrebbero essere istanze distinte.");
+
+            assertSame(first, DigestPool.intern(first), "Il primo digest dovrebbe essere aggiunto al pool.");
+            assertSame(first, DigestPool.intern(second), "Un digest uguale dovrebbe condividere l'istanza.");
+            assertSame(Digest.EMPTY, DigestPool.intern(Digest.EMPTY), "Il digest vuoto dovrebbe restare tale.");
+            assertEquals(1, DigestPool.size(), "La dimensione del pool non è corretta.");
+            assertEquals(0.5, DigestPool.getHitRate(), "La frazione di successi non è corretta.");
+        } finally {
+            DigestPool.setEnabled(false);
+            DigestPool.clear();
+        }
+    }
+
+    @Test
+    void testSharedAcrossTrees() {
+        DigestPool.clear();
+        DigestPool.setEnabled(true);
+        try {
+            HashLinkedList<Integer> firstList = new HashLinkedList<>();
+            HashLinkedList<Integer> secondList = new HashLinkedList<>();
+            for (int i = 0; i < 4; i++) {
+                firstList.addAtTail(i);
+                secondList.addAtTail(i == 3 ? 42 : i);
+            }
+            MerkleTree<Integer> first = new MerkleTree<>(firstList);
+            MerkleTree<Integer> second = new MerkleTree<>(secondList);
+
+            assertSame(first.getRoot().getLeft().getDigest(), second.getRoot().getLeft().getDigest(),
+                    "Sottoalberi uguali dovrebbero condividere il digest.");
+            assertSame(first.getRoot().getRight().getLeft().getDigest(),
+                    second.getRoot().getRight().getLeft().getDigest(), "Foglie uguali dovrebbero condividere il digest.");
+            assertNotEquals(first.getRoot().getDigest(), second.getRoot().getDigest(),
+                    "Le radici dovrebbero essere diverse.");
+            assertTrue(DigestPool.getHitCount() > 0, "Il pool dovrebbe aver condiviso dei digest.");
+        } finally {
+            DigestPool.setEnabled(false);
+            DigestPool.clear();
+        }
+    }
+}
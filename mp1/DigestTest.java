@@ -0,0 +1,77 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per la classe {@link Digest}. Questa classe verifica la
+ * conversione tra rappresentazione esadecimale e binaria dei digest.
+ * Di seguito, l'elenco dei test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testHexRoundTrip()}: Verifica che la conversione da e verso la
+ * rappresentazione esadecimale preservi il digest.</li>
+ *
+ * <li>{@link #testBytesRoundTrip()}: Verifica che la conversione da e verso
+ * un array di byte o un buffer preservi il digest.</li>
+ *
+ * <li>{@link #testEmptyDigest()}: Verifica che la stringa vuota corrisponda al
+ * digest vuoto.</li>
+ *
+ * <li>{@link #testInvalidHex()}: Verifica che venga lanciata un'eccezione per
+ * stringhe esadecimali non valide.</li>
+ * </ul>
+ */
+class DigestTest {
+
+    @Test
+    void testHexRoundTrip() {
+        String hex = "65a8e27d8879283831b664bd8b7f0ad4";
+        Digest digest = Digest.fromHex(hex);
+
+        assertEquals(hex, digest.toHex(), "La rappresentazione esadecimale non è corretta.");
+        assertEquals(Digest.MD5_LENGTH, digest.length(), "La lunghezza del digest non è corretta.");
+        assertEquals(digest, Digest.fromHex(hex), "Due digest con lo stesso valore dovrebbero essere uguali.");
+        assertEquals(digest.hashCode(), Digest.fromHex(hex).hashCode(),
+                "Due digest uguali dovrebbero avere lo stesso hashCode.");
+    }
+
+    @Test
+    void testBytesRoundTrip() {
+        Digest digest = HashUtil.computeDigest("Hello, World!".getBytes());
+
+        assertEquals(digest, Digest.of(digest.toByteArray()),
+                "La conversione in byte dovrebbe preservare il digest.");
+        ByteBuffer buffer = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+        Digest sha = HashUtil.dataToDigest("Hello", HashFunction.SHA_256);
+        sha.writeTo(buffer.position(8));
+        assertEquals(digest, Digest.of(ByteBuffer.wrap(digest.toByteArray()), 0, Digest.MD5_LENGTH),
+                "La lettura da un buffer dovrebbe preservare il digest.");
+        assertEquals(sha, Digest.of(buffer, 8, Digest.SHA256_LENGTH),
+                "La lettura da un buffer little-endian dovrebbe preservare il digest.");
+        assertEquals(40, buffer.position(), "La lettura non dovrebbe modificare la posizione del buffer.");
+        assertEquals(HashUtil.computeMD5("Hello, World!".getBytes()), digest.toHex(),
+                "Il digest dovrebbe corrispondere all'hash esadecimale.");
+    }
+
+    @Test
+    void testEmptyDigest() {
+        assertSame(Digest.EMPTY, Digest.fromHex(""), "La stringa vuota dovrebbe corrispondere al digest vuoto.");
+        assertTrue(Digest.EMPTY.isEmpty(), "Il digest vuoto dovrebbe essere vuoto.");
+        assertEquals("", Digest.EMPTY.toHex(), "Il digest vuoto dovrebbe corrispondere alla stringa vuota.");
+        assertNotEquals(Digest.EMPTY, Digest.of(new byte[Digest.MD5_LENGTH]),
+                "Il digest vuoto non dovrebbe essere uguale al digest nullo.");
+    }
+
+    @Test
+    void testInvalidHex() {
+        assertThrows(IllegalArgumentException.class, () -> Digest.fromHex("hash123"),
+                "Dovrebbe lanciare IllegalArgumentException per una lunghezza non valida.");
+        assertThrows(IllegalArgumentException.class, () -> Digest.fromHex("zz" + "0".repeat(30)),
+                "Dovrebbe lanciare IllegalArgumentException per caratteri non esadecimali.");
+    }
+}
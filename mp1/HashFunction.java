@@ -0,0 +1,228 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Una funzione di hash utilizzabile per calcolare i digest dei dati e dei nodi
+ * di un albero di Merkle. Le implementazioni fornite sono {@link #MD5},
+ * {@link #SHA_256} e {@link #MURMUR3_128}, quest'ultima non crittografica ma
+ * molto più veloce, adatta solo a repliche fidate.
+ *
+ * <p>
+ * Le implementazioni devono essere thread-safe, mentre i singoli oggetti
+ * {@link Hasher} restituiti da {@link #newHasher()} non lo sono. I metodi
+ * {@code hash} delle implementazioni fornite riutilizzano lo stato di calcolo
+ * per thread invece di crearne uno nuovo a ogni invocazione.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+public interface HashFunction {
+
+    /**
+     * Funzione di hash MD5, con digest di 16 byte.
+     */
+    HashFunction MD5 = new MessageDigestHashFunction("MD5",
+            Digest.MD5_LENGTH);
+
+    /**
+     * Funzione di hash SHA-256, con digest di 32 byte.
+     */
+    HashFunction SHA_256 = new MessageDigestHashFunction("SHA-256",
+            Digest.SHA256_LENGTH);
+
+    /**
+     * Funzione di hash non crittografica MurmurHash3 (variante x64 a 128 bit),
+     * con digest di 16 byte.
+     */
+    HashFunction MURMUR3_128 = new Murmur3HashFunction();
+
+    /**
+     * Restituisce il nome dell'algoritmo.
+     *
+     * @return il nome dell'algoritmo.
+     */
+    String name();
+
+    /**
+     * Restituisce la lunghezza in byte dei digest prodotti.
+     *
+     * @return la lunghezza in byte dei digest prodotti.
+     */
+    int digestLength();
+
+    /**
+     * Crea un nuovo oggetto per il calcolo incrementale di un digest.
+     *
+     * @return un nuovo Hasher.
+     */
+    Hasher newHasher();
+
+    /**
+     * Calcola il digest di un array di byte.
+     *
+     * @param input
+     *                  l'array di byte di cui calcolare l'hash.
+     * @return il digest dell'array.
+     */
+    default Digest hash(byte[] input) {
+        return hash(input, 0, input.length);
+    }
+
+    /**
+     * Calcola il digest di una porzione di un array di byte.
+     *
+     * @param input
+     *                   l'array di byte.
+     * @param offset
+     *                   la posizione del primo byte da considerare.
+     * @param length
+     *                   il numero di byte da considerare.
+     * @return il digest della porzione dell'array.
+     */
+    default Digest hash(byte[] input, int offset, int length) {
+        Hasher hasher = newHasher();
+        hasher.update(input, offset, length);
+        return hasher.digest();
+    }
+
+    /**
+     * Calcola il digest di una porzione di un array di byte scrivendolo
+     * nell'array di output fornito.
+     *
+     * @param input
+     *                         l'array di byte.
+     * @param offset
+     *                         la posizione del primo byte da considerare.
+     * @param length
+     *                         il numero di byte da considerare.
+     * @param output
+     *                         l'array in cui scrivere il digest.
+     * @param outputOffset
+     *                         la posizione da cui iniziare a scrivere.
+     * @return il numero di byte scritti, pari a {@link #digestLength()}.
+     * @throws IllegalArgumentException
+     *                                      se lo spazio in output non è
+     *                                      sufficiente.
+     */
+    default int hash(byte[] input, int offset, int length, byte[] output,
+            int outputOffset) {
+        if (output.length - outputOffset < digestLength())
+            throw new IllegalArgumentException("Spazio insufficiente per il digest");
+        return hash(input, offset, length).writeTo(output, outputOffset);
+    }
+
+    /**
+     * Calcola il digest dei byte rimanenti di un ByteBuffer scrivendolo nel
+     * ByteBuffer di output. Le posizioni di entrambi i buffer vengono
+     * avanzate.
+     *
+     * @param input
+     *                   il buffer di cui calcolare l'hash.
+     * @param output
+     *                   il buffer in cui scrivere il digest.
+     * @return il numero di byte scritti, pari a {@link #digestLength()}.
+     * @throws BufferOverflowException
+     *                                     se lo spazio in output non è
+     *                                     sufficiente.
+     */
+    default int hash(ByteBuffer input, ByteBuffer output) {
+        if (output.remaining() < digestLength())
+            throw new BufferOverflowException();
+        Hasher hasher = newHasher();
+        hasher.update(input);
+        return hasher.digest().writeTo(output);
+    }
+
+    /**
+     * Restituisce la funzione di hash fornita corrispondente al nome dato.
+     *
+     * @param name
+     *                 il nome dell'algoritmo.
+     * @return la funzione di hash corrispondente.
+     * @throws IllegalArgumentException
+     *                                      se l'algoritmo non è tra quelli
+     *                                      forniti.
+     */
+    static HashFunction forName(String name) {
+        for (HashFunction f : new HashFunction[] { MD5, SHA_256, MURMUR3_128 })
+            if (f.name().equals(name))
+                return f;
+        throw new IllegalArgumentException("Algoritmo non supportato: " + name);
+    }
+
+    /**
+     * Calcolo incrementale di un digest. Dopo {@link #digest()} l'oggetto
+     * torna allo stato iniziale e può essere riutilizzato.
+     */
+    interface Hasher {
+
+        /**
+         * Dimensione massima in byte dei blocchi con cui
+         * {@link #update(ByteBuffer)} copia i buffer senza un array
+         * accessibile.
+         */
+        int UPDATE_CHUNK = 8192;
+
+        /**
+         * Aggiunge un byte all'input.
+         *
+         * @param b
+         *              il byte da aggiungere.
+         */
+        void update(byte b);
+
+        /**
+         * Aggiunge una porzione di un array di byte all'input.
+         *
+         * @param input
+         *                   l'array di byte.
+         * @param offset
+         *                   la posizione del primo byte da aggiungere.
+         * @param length
+         *                   il numero di byte da aggiungere.
+         */
+        void update(byte[] input, int offset, int length);
+
+        /**
+         * Aggiunge un array di byte all'input.
+         *
+         * @param input
+         *                  l'array di byte da aggiungere.
+         */
+        default void update(byte[] input) {
+            update(input, 0, input.length);
+        }
+
+        /**
+         * Aggiunge i byte rimanenti di un ByteBuffer all'input, avanzandone
+         * la posizione. I buffer senza un array accessibile (diretti, mappati
+         * in memoria o di sola lettura) sono copiati a blocchi di al più
+         * {@value #UPDATE_CHUNK} byte in un array di appoggio.
+         *
+         * @param input
+         *                  il buffer da aggiungere.
+         */
+        default void update(ByteBuffer input) {
+            if (input.hasArray()) {
+                update(input.array(), input.arrayOffset() + input.position(), input.remaining());
+                input.position(input.limit());
+            } else {
+                byte[] chunk = new byte[Math.min(input.remaining(), UPDATE_CHUNK)];
+                while (input.hasRemaining()) {
+                    int n = Math.min(input.remaining(), chunk.length);
+                    input.get(chunk, 0, n);
+                    update(chunk, 0, n);
+                }
+            }
+        }
+
+        /**
+         * Completa il calcolo e restituisce il digest dell'input aggiunto
+         * finora, riportando l'oggetto allo stato iniziale.
+         *
+         * @return il digest dell'input.
+         */
+        Digest digest();
+    }
+}
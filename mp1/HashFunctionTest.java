@@ -0,0 +1,104 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per l'interfaccia {@link HashFunction} e le sue
+ * implementazioni fornite. Di seguito, l'elenco dei test inclusi con una breve
+ * descrizione:
+ *
+ * <ul>
+ * <li>{@link #testMD5()}: Verifica che la funzione MD5 coincida con
+ * {@link HashUtil#computeMD5(byte[])}.</li>
+ *
+ * <li>{@link #testSHA256()}: Verifica il digest SHA-256 di un valore noto.</li>
+ *
+ * <li>{@link #testMurmur3()}: Verifica il digest MurmurHash3 di valori noti.</li>
+ *
+ * <li>{@link #testIncrementalHashing()}: Verifica che il calcolo incrementale
+ * produca lo stesso digest del calcolo in un'unica passata.</li>
+ *
+ * <li>{@link #testByteBufferUpdate()}: Verifica che l'aggiunta di buffer
+ * diretti, di sola lettura o più grandi di un blocco produca lo stesso
+ * digest dell'array corrispondente.</li>
+ *
+ * <li>{@link #testForName()}: Verifica la ricerca delle funzioni fornite per
+ * nome.</li>
+ * </ul>
+ */
+class HashFunctionTest {
+
+    @Test
+    void testMD5() {
+        byte[] input = "Hello, World!".getBytes();
+        assertEquals(HashUtil.computeMD5(input), HashFunction.MD5.hash(input).toHex(),
+                "Il digest MD5 non corrisponde all'atteso.");
+        assertEquals(Digest.MD5_LENGTH, HashFunction.MD5.digestLength());
+    }
+
+    @Test
+    void testSHA256() {
+        Digest digest = HashFunction.SHA_256.hash("abc".getBytes());
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", digest.toHex(),
+                "Il digest SHA-256 non corrisponde all'atteso.");
+        assertEquals(Digest.SHA256_LENGTH, digest.length());
+        assertEquals(digest, Digest.fromHex(digest.toHex()),
+                "La conversione esadecimale dovrebbe preservare un digest di 32 byte.");
+    }
+
+    @Test
+    void testMurmur3() {
+        assertEquals("6c1b07bc7bbc4be347939ac4a93c437a",
+                HashFunction.MURMUR3_128.hash("The quick brown fox jumps over the lazy dog".getBytes()).toHex(),
+                "Il digest MurmurHash3 non corrisponde all'atteso.");
+        assertEquals("00000000000000000000000000000000",
+                HashFunction.MURMUR3_128.hash(new byte[0]).toHex(),
+                "Il digest MurmurHash3 dell'input vuoto non corrisponde all'atteso.");
+    }
+
+    @Test
+    void testIncrementalHashing() {
+        byte[] input = new byte[100];
+        for (int i = 0; i < input.length; i++) input[i] = (byte) (i * 31);
+        for (HashFunction function : new HashFunction[] { HashFunction.MD5, HashFunction.SHA_256, HashFunction.MURMUR3_128 }) {
+            Digest expected = function.hash(input);
+            HashFunction.Hasher hasher = function.newHasher();
+            for (int split = 0; split <= input.length; split += 7) {
+                hasher.update(input, 0, split);
+                hasher.update(input, split, input.length - split);
+                assertEquals(expected, hasher.digest(), function.name() + ": il calcolo incrementale non è corretto.");
+            }
+            for (byte b : input) hasher.update(b);
+            assertEquals(expected, hasher.digest(), function.name() + ": il calcolo byte per byte non è corretto.");
+        }
+    }
+
+    @Test
+    void testForName() {
+        assertSame(HashFunction.SHA_256, HashFunction.forName("SHA-256"));
+        assertSame(HashFunction.MURMUR3_128, HashFunction.forName(HashFunction.MURMUR3_128.name()));
+        assertThrows(IllegalArgumentException.class, () -> HashFunction.forName("CRC32"),
+                "Dovrebbe lanciare IllegalArgumentException per un algoritmo non supportato.");
+    }
+
+    @Test
+    void testByteBufferUpdate() {
+        byte[] input = new byte[3 * HashFunction.Hasher.UPDATE_CHUNK + 17];
+        for (int i = 0; i < input.length; i++) input[i] = (byte) (i * 31);
+        for (HashFunction function : new HashFunction[] { HashFunction.MD5, HashFunction.SHA_256, HashFunction.MURMUR3_128 }) {
+            Digest expected = function.hash(input, 5, input.length - 5);
+            ByteBuffer direct = ByteBuffer.allocateDirect(input.length).put(input).flip().position(5);
+            ByteBuffer readOnly = ByteBuffer.wrap(input).asReadOnlyBuffer().position(5);
+            for (ByteBuffer buffer : new ByteBuffer[] { direct, readOnly }) {
+                HashFunction.Hasher hasher = function.newHasher();
+                hasher.update(buffer);
+                assertEquals(expected, hasher.digest(), "Il digest del buffer di " + function + " non è corretto.");
+                assertFalse(buffer.hasRemaining(), "Il buffer dovrebbe essere consumato.");
+            }
+        }
+    }
+}
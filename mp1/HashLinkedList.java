@@ -1,9 +1,12 @@
 package it.unicam.cs.asdl2425.mp1;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
 
 //TODO inserire gli import della Java SE che si ritengono necessari
 
@@ -29,7 +32,10 @@ import java.util.NoSuchElementException;
  * coda un'operazione O(1).
  *
  * <p>
- * La classe utilizza la classe HashUtil per calcolare l'hash MD5 dei dati.
+ * La classe utilizza la classe HashUtil per calcolare l'hash MD5 dei dati, o
+ * l'hash secondo la {@link HashFunction} fornita alla costruzione. Il
+ * contenuto hashato di ciascun dato è deciso da un {@link DataEncoder}: quello
+ * predefinito codifica soltanto il valore di hashCode() del dato.
  *
  * @param <T>
  *                il tipo generico dei dati contenuti nei nodi della lista.
@@ -46,11 +52,90 @@ public class HashLinkedList<T> implements Iterable<T> {
 
     private int numeroModifiche; // Numero di modifiche effettuate sulla lista per l'implementazione dell'iteratore fail-fast
 
+    private final HashFunction hashFunction; // Funzione di hash usata per i dati inseriti
+
+    private final DataEncoder<? super T> encoder; // Codifica del contenuto dei dati inseriti
+
+    private final DigestCache<? super T> cache; // Cache opzionale dei digest dei dati, null se assente
+
     public HashLinkedList() {
+        this(HashFunction.MD5);
+    }
+
+    /**
+     * Costruisce una lista vuota che calcola gli hash dei dati con la funzione
+     * di hash fornita.
+     *
+     * @param hashFunction la funzione di hash da utilizzare.
+     * @throws NullPointerException se la funzione di hash è null.
+     */
+    public HashLinkedList(HashFunction hashFunction) {
+        this(hashFunction, DataEncoder.HASH_CODE);
+    }
+
+    /**
+     * Costruisce una lista vuota che calcola gli hash dei dati con la funzione
+     * di hash fornita, sul contenuto codificato dall'encoder dato.
+     *
+     * @param hashFunction la funzione di hash da utilizzare.
+     * @param encoder      l'encoder del contenuto dei dati.
+     * @throws NullPointerException se la funzione di hash o l'encoder sono
+     *                              null.
+     */
+    public HashLinkedList(HashFunction hashFunction, DataEncoder<? super T> encoder) {
+        this(hashFunction, encoder, null);
+    }
+
+    /**
+     * Costruisce una lista vuota che calcola gli hash dei dati attraverso la
+     * cache fornita, con la sua funzione di hash e il suo encoder. La cache
+     * è condivisa con gli alberi di Merkle costruiti dalla lista, che la
+     * usano per validare e cercare i dati.
+     *
+     * @param cache la cache dei digest dei dati.
+     * @throws NullPointerException se la cache è null.
+     */
+    public HashLinkedList(DigestCache<? super T> cache) {
+        this(cache.getHashFunction(), cache.getDataEncoder(), cache);
+    }
+
+    private HashLinkedList(HashFunction hashFunction, DataEncoder<? super T> encoder, DigestCache<? super T> cache) {
+        if (hashFunction == null) throw new NullPointerException("funzione di hash nulla");
+        if (encoder == null) throw new NullPointerException("encoder nullo");
         this.head = null;
         this.tail = null;
         this.size = 0;
         this.numeroModifiche = 0;
+        this.hashFunction = hashFunction;
+        this.encoder = encoder;
+        this.cache = cache;
+    }
+
+    /**
+     * Restituisce la funzione di hash utilizzata dalla lista.
+     *
+     * @return la funzione di hash utilizzata dalla lista.
+     */
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    /**
+     * Restituisce l'encoder del contenuto dei dati utilizzato dalla lista.
+     *
+     * @return l'encoder dei dati della lista.
+     */
+    public DataEncoder<? super T> getDataEncoder() {
+        return encoder;
+    }
+
+    /**
+     * Restituisce la cache dei digest dei dati utilizzata dalla lista.
+     *
+     * @return la cache dei digest; null se la lista non ne usa una.
+     */
+    public DigestCache<? super T> getDigestCache() {
+        return cache;
     }
 
     /**
@@ -66,15 +151,19 @@ public class HashLinkedList<T> implements Iterable<T> {
      * Rappresenta un nodo nella lista concatenata.
      */
     private class Node {
-        String hash;
+        Digest hash;
 
         T data;
 
         Node next;
 
         Node(T data) {
+            this(data, cache != null ? cache.digest(data) : HashUtil.dataToDigest(data, encoder, hashFunction));
+        }
+
+        Node(T data, Digest hash) {
             this.data = data;
-            this.hash = HashUtil.dataToHash(data);
+            this.hash = DigestPool.intern(hash);
             this.next = null;
         }
     }
@@ -122,6 +211,51 @@ public class HashLinkedList<T> implements Iterable<T> {
         numeroModifiche++;
     }
 
+    /**
+     * Aggiunge in coda alla lista tutti gli elementi della collezione data,
+     * nell'ordine della collezione. Gli hash degli elementi sono calcolati in
+     * parallelo sul pool comune di ForkJoin.
+     *
+     * @param data gli elementi da aggiungere.
+     * @throws NullPointerException se la collezione o uno dei suoi elementi è
+     *                              null; in tal caso la lista non viene
+     *                              modificata.
+     */
+    public void addAllAtTail(Collection<? extends T> data) {
+        addAllAtTail(data, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Aggiunge in coda alla lista tutti gli elementi della collezione data,
+     * nell'ordine della collezione, calcolandone gli hash in parallelo sul
+     * pool di ForkJoin fornito. Se la lista usa una cache, gli hash degli
+     * elementi presenti sono presi dalla cache e soltanto gli altri vengono
+     * calcolati e memorizzati.
+     *
+     * @param data gli elementi da aggiungere.
+     * @param pool il pool su cui calcolare gli hash.
+     * @throws NullPointerException se la collezione o uno dei suoi elementi è
+     *                              null; in tal caso la lista non viene
+     *                              modificata.
+     */
+    public void addAllAtTail(Collection<? extends T> data, ForkJoinPool pool) {
+        if (data == null) throw new NullPointerException("eccezione in addAllAtTail");
+        List<? extends T> items = data instanceof List ? (List<? extends T>) data : new ArrayList<>(data);
+        Digest[] hashes = cache != null ? cache.digests(items, pool)
+                : HashUtil.dataToDigests(items, encoder, hashFunction, pool);
+        for (int i = 0; i < hashes.length; i++) {
+            Node newNode = new Node(items.get(i), hashes[i]);
+            if (head == null) {
+                head = newNode;
+            } else {
+                tail.next = newNode;
+            }
+            tail = newNode;
+        }
+        size += hashes.length;
+        numeroModifiche++;
+    }
+
     /**
      * Restituisce un'ArrayList contenente tutti gli hash nella lista in ordine.
      *
@@ -129,15 +263,27 @@ public class HashLinkedList<T> implements Iterable<T> {
      */
     public ArrayList<String> getAllHashes() {
         // TODO implementare
-        ArrayList<String> hashes = new ArrayList<>();
-        Iterator<T> itr = this.iterator();
-
-        while(itr.hasNext()){
-            hashes.add(HashUtil.dataToHash(itr.next()));
+        ArrayList<String> hashes = new ArrayList<>(size);
+        for (Node current = head; current != null; current = current.next) {
+            hashes.add(current.hash.toHex());       //gli hash sono già calcolati all'inserimento
         }
         return hashes;
     }
 
+    /**
+     * Restituisce un'ArrayList contenente tutti i digest nella lista in
+     * ordine, senza ricalcolarli né convertirli in stringhe.
+     *
+     * @return una lista con tutti i digest della lista.
+     */
+    public ArrayList<Digest> getAllDigests() {
+        ArrayList<Digest> digests = new ArrayList<>(size);
+        for (Node current = head; current != null; current = current.next) {
+            digests.add(current.hash);
+        }
+        return digests;
+    }
+
     /**
      * Costruisce una stringa contenente tutti i nodi della lista, includendo
      * dati e hash. La stringa dovrebbe essere formattata come nel seguente
@@ -154,14 +300,11 @@ public class HashLinkedList<T> implements Iterable<T> {
      */
     public String buildNodesString() {
         // TODO implementare
-        Iterator<T> itr = this.iterator();
-
         StringBuilder str = new StringBuilder();
-        while(itr.hasNext())
+        for (Node current = head; current != null; current = current.next)
         {
-            T data = itr.next();
-            str.append("Dato: ").append(data).append(", ")
-                    .append("Hash: ").append(HashUtil.dataToHash(data)).append("\n");
+            str.append("Dato: ").append(current.data).append(", ")
+                    .append("Hash: ").append(current.hash).append("\n");
 
         }
         return str.toString();
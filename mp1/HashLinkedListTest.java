@@ -65,6 +65,12 @@ import static org.junit.jupiter.api.Assertions.*;
  * 
  * <li>{@link #testFailFastIterator2()}: Verifica che l'iteratore sia
  * {@code fail-fast} rimuovendo un elemento durante l'iterazione.</li>
+ * 
+ * <li>{@link #testAddAllAtTail()}: Aggiunge in blocco molti elementi e verifica
+ * ordine, dimensione e hash della lista.</li>
+ * 
+ * <li>{@link #testAddAllAtTailWithNull()}: Verifica che l'aggiunta in blocco di
+ * una collezione contenente {@code null} non modifichi la lista.</li>
  * </ul>
  */
 class HashLinkedListTest {
@@ -337,4 +343,34 @@ class HashLinkedListTest {
                 "L'iteratore non è fail-fast."
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    void testAddAllAtTail() {
+        list.addAtTail("Primo");
+        List<String> data = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) data.add("Dato " + i);
+        list.addAllAtTail(data);
+        list.addAtTail("Ultimo");
+
+        assertEquals(2002, list.getSize(), "La dimensione della lista non è corretta.");
+        List<String> hashes = list.getAllHashes();
+        Iterator<String> itr = list.iterator();
+        assertEquals("Primo", itr.next());
+        for (int i = 0; i < data.size(); i++) {
+            assertEquals(data.get(i), itr.next(), "L'ordine degli elementi non è corretto.");
+            assertEquals(HashUtil.dataToHash(data.get(i)), hashes.get(i + 1), "L'hash dell'elemento non è corretto.");
+        }
+        assertEquals("Ultimo", itr.next());
+        assertFalse(itr.hasNext());
+    }
+
+    @Test
+    void testAddAllAtTailWithNull() {
+        list.addAtTail("Primo");
+        assertThrows(NullPointerException.class, () -> list.addAllAtTail(Arrays.asList("A", null, "B")),
+                "Dovrebbe lanciare NullPointerException per un elemento null.");
+        assertEquals(1, list.getSize(), "La lista non dovrebbe essere modificata.");
+        assertEquals("Dato: Primo, Hash: " + HashUtil.dataToHash("Primo") + "\n", list.buildNodesString(),
+                "La lista non dovrebbe essere modificata.");
+    }
+}
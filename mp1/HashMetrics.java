@@ -0,0 +1,406 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metriche dei calcoli di hash eseguiti da {@link HashUtil}: numero di digest
+ * calcolati e di byte hashati per tipo di operazione e, opzionalmente, un
+ * istogramma delle latenze. Le metriche sono disabilitate per impostazione
+ * predefinita; in tal caso ogni calcolo costa soltanto la lettura di un
+ * campo volatile.
+ *
+ * <p>
+ * I contatori sono {@link LongAdder}, per cui thread diversi che calcolano
+ * hash in parallelo non si contendono la stessa variabile. Lo stato corrente
+ * si legge con {@link #snapshot()} oppure tramite JMX, dopo aver registrato
+ * l'MBean con {@link #registerMBean()}.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+public final class HashMetrics {
+
+    /**
+     * Nome con cui l'MBean delle metriche è registrato.
+     */
+    public static final String OBJECT_NAME = "it.unicam.cs.asdl2425.mp1:type=HashMetrics";
+
+    /**
+     * Numero di intervalli dell'istogramma delle latenze. L'intervallo i
+     * contiene le latenze in [2^i, 2^(i+1)) nanosecondi, lo 0 anche quelle
+     * nulle.
+     */
+    public static final int LATENCY_BUCKETS = 64;
+
+    /**
+     * Tipo di operazione di hash.
+     */
+    public enum Operation {
+        /**
+         * Hash di un dato: inserimento nelle liste, validazione e ricerca dei
+         * dati negli alberi.
+         */
+        DATA,
+        /**
+         * Hash di un nodo intermedio: costruzione degli alberi e verifica
+         * delle prove.
+         */
+        NODE,
+        /**
+         * Hash di un array di byte o di un ByteBuffer.
+         */
+        RAW
+    }
+
+    /**
+     * Valori restituiti da {@link #start()} quando le metriche o le sole
+     * latenze sono disabilitate.
+     */
+    private static final long DISABLED = Long.MIN_VALUE, NO_LATENCY = Long.MIN_VALUE + 1;
+
+    private static volatile boolean enabled;
+
+    private static volatile boolean latencyEnabled;
+
+    private static final Counters[] COUNTERS = new Counters[Operation.values().length];
+
+    static {
+        for (Operation op : Operation.values())
+            COUNTERS[op.ordinal()] = new Counters();
+    }
+
+    private HashMetrics() {
+    }
+
+    /**
+     * Abilita o disabilita la raccolta delle metriche.
+     *
+     * @param enable
+     *                   true per abilitare la raccolta.
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * Restituisce true se la raccolta delle metriche è abilitata.
+     *
+     * @return true se la raccolta è abilitata.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Abilita o disabilita la misura delle latenze, che richiede due letture
+     * del clock per ogni calcolo. Ha effetto solo se la raccolta delle
+     * metriche è abilitata.
+     *
+     * @param enable
+     *                   true per abilitare la misura delle latenze.
+     */
+    public static void setLatencyEnabled(boolean enable) {
+        latencyEnabled = enable;
+    }
+
+    /**
+     * Restituisce true se la misura delle latenze è abilitata.
+     *
+     * @return true se la misura delle latenze è abilitata.
+     */
+    public static boolean isLatencyEnabled() {
+        return latencyEnabled;
+    }
+
+    /**
+     * Restituisce lo stato corrente delle metriche. I valori di operazioni
+     * diverse sono letti separatamente, per cui in presenza di calcoli
+     * concorrenti non costituiscono una fotografia atomica.
+     *
+     * @return lo stato corrente delle metriche.
+     */
+    public static Snapshot snapshot() {
+        return new Snapshot();
+    }
+
+    /**
+     * Azzera tutte le metriche.
+     */
+    public static void reset() {
+        for (Counters c : COUNTERS)
+            c.reset();
+    }
+
+    /**
+     * Registra l'MBean delle metriche nel server MBean della piattaforma con
+     * il nome {@value #OBJECT_NAME}. Non ha effetto se è già registrato.
+     *
+     * @throws IllegalStateException
+     *                                   se la registrazione fallisce.
+     */
+    public static void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new MXBeanImpl(), new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // già registrato
+        } catch (JMException e) {
+            throw new IllegalStateException("Registrazione dell'MBean fallita", e);
+        }
+    }
+
+    /**
+     * Rimuove l'MBean delle metriche dal server MBean della piattaforma. Non
+     * ha effetto se non è registrato.
+     *
+     * @throws IllegalStateException
+     *                                   se la rimozione fallisce.
+     */
+    public static void unregisterMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(new ObjectName(OBJECT_NAME));
+        } catch (InstanceNotFoundException e) {
+            // non registrato
+        } catch (JMException e) {
+            throw new IllegalStateException("Rimozione dell'MBean fallita", e);
+        }
+    }
+
+    /**
+     * Inizia la misura di un calcolo, restituendo l'istante corrente in
+     * nanosecondi se le latenze sono misurate.
+     */
+    static long start() {
+        if (!enabled) return DISABLED;
+        return latencyEnabled ? System.nanoTime() : NO_LATENCY;
+    }
+
+    /**
+     * Restituisce true se la misura iniziata da {@link #start()} va
+     * registrata.
+     */
+    static boolean isRecording(long start) {
+        return start != DISABLED;
+    }
+
+    /**
+     * Registra un calcolo iniziato con {@link #start()}.
+     */
+    static void record(Operation op, long bytes, long start) {
+        if (start == DISABLED) return;
+        Counters c = COUNTERS[op.ordinal()];
+        c.invocations.increment();
+        c.bytes.add(bytes);
+        if (start != NO_LATENCY) {
+            long elapsed = System.nanoTime() - start;
+            c.latency[elapsed <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(elapsed)].increment();
+        }
+    }
+
+    /**
+     * Contatori di un tipo di operazione.
+     */
+    private static final class Counters {
+        final LongAdder invocations = new LongAdder();
+
+        final LongAdder bytes = new LongAdder();
+
+        final LongAdder[] latency = new LongAdder[LATENCY_BUCKETS];
+
+        Counters() {
+            for (int i = 0; i < LATENCY_BUCKETS; i++)
+                latency[i] = new LongAdder();
+        }
+
+        void reset() {
+            invocations.reset();
+            bytes.reset();
+            for (LongAdder l : latency)
+                l.reset();
+        }
+    }
+
+    /**
+     * Stato delle metriche in un dato istante.
+     */
+    public static final class Snapshot {
+        private final long[] invocations = new long[COUNTERS.length];
+
+        private final long[] bytes = new long[COUNTERS.length];
+
+        private final long[][] latency = new long[COUNTERS.length][LATENCY_BUCKETS];
+
+        private Snapshot() {
+            for (int op = 0; op < COUNTERS.length; op++) {
+                invocations[op] = COUNTERS[op].invocations.sum();
+                bytes[op] = COUNTERS[op].bytes.sum();
+                for (int i = 0; i < LATENCY_BUCKETS; i++)
+                    latency[op][i] = COUNTERS[op].latency[i].sum();
+            }
+        }
+
+        /**
+         * Restituisce il numero di digest calcolati per il tipo di operazione
+         * dato.
+         *
+         * @param op
+         *               il tipo di operazione.
+         * @return il numero di digest calcolati.
+         */
+        public long getInvocations(Operation op) {
+            return invocations[op.ordinal()];
+        }
+
+        /**
+         * Restituisce il numero di byte hashati per il tipo di operazione
+         * dato.
+         *
+         * @param op
+         *               il tipo di operazione.
+         * @return il numero di byte hashati.
+         */
+        public long getBytes(Operation op) {
+            return bytes[op.ordinal()];
+        }
+
+        /**
+         * Restituisce l'istogramma delle latenze per il tipo di operazione
+         * dato: l'elemento i conta i calcoli durati tra 2^i e 2^(i+1)
+         * nanosecondi.
+         *
+         * @param op
+         *               il tipo di operazione.
+         * @return una copia dell'istogramma delle latenze.
+         */
+        public long[] getLatencyHistogram(Operation op) {
+            return latency[op.ordinal()].clone();
+        }
+
+        /**
+         * Restituisce il numero totale di digest calcolati.
+         *
+         * @return il numero totale di digest calcolati.
+         */
+        public long getTotalInvocations() {
+            long total = 0;
+            for (long i : invocations) total += i;
+            return total;
+        }
+
+        /**
+         * Restituisce il numero totale di byte hashati.
+         *
+         * @return il numero totale di byte hashati.
+         */
+        public long getTotalBytes() {
+            long total = 0;
+            for (long b : bytes) total += b;
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder str = new StringBuilder();
+            for (Operation op : Operation.values())
+                str.append(op).append(": ").append(getInvocations(op)).append(" digest, ")
+                        .append(getBytes(op)).append(" byte\n");
+            return str.toString();
+        }
+    }
+
+    /**
+     * Interfaccia JMX delle metriche.
+     */
+    public interface HashMetricsMXBean {
+
+        boolean isEnabled();
+
+        void setEnabled(boolean enable);
+
+        boolean isLatencyEnabled();
+
+        void setLatencyEnabled(boolean enable);
+
+        long getTotalInvocations();
+
+        long getTotalBytes();
+
+        Map<String, Long> getInvocations();
+
+        Map<String, Long> getBytes();
+
+        Map<String, long[]> getLatencyHistograms();
+
+        void reset();
+    }
+
+    private static final class MXBeanImpl implements HashMetricsMXBean {
+
+        @Override
+        public boolean isEnabled() {
+            return HashMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enable) {
+            HashMetrics.setEnabled(enable);
+        }
+
+        @Override
+        public boolean isLatencyEnabled() {
+            return HashMetrics.isLatencyEnabled();
+        }
+
+        @Override
+        public void setLatencyEnabled(boolean enable) {
+            HashMetrics.setLatencyEnabled(enable);
+        }
+
+        @Override
+        public long getTotalInvocations() {
+            return snapshot().getTotalInvocations();
+        }
+
+        @Override
+        public long getTotalBytes() {
+            return snapshot().getTotalBytes();
+        }
+
+        @Override
+        public Map<String, Long> getInvocations() {
+            Snapshot s = snapshot();
+            Map<String, Long> result = new LinkedHashMap<>();
+            for (Operation op : Operation.values()) result.put(op.name(), s.getInvocations(op));
+            return result;
+        }
+
+        @Override
+        public Map<String, Long> getBytes() {
+            Snapshot s = snapshot();
+            Map<String, Long> result = new LinkedHashMap<>();
+            for (Operation op : Operation.values()) result.put(op.name(), s.getBytes(op));
+            return result;
+        }
+
+        @Override
+        public Map<String, long[]> getLatencyHistograms() {
+            Snapshot s = snapshot();
+            Map<String, long[]> result = new LinkedHashMap<>();
+            for (Operation op : Operation.values()) result.put(op.name(), s.getLatencyHistogram(op));
+            return result;
+        }
+
+        @Override
+        public void reset() {
+            HashMetrics.reset();
+        }
+    }
+}
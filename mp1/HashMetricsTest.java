@@ -0,0 +1,108 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per la classe {@link HashMetrics}. Di seguito, l'elenco dei
+ * test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testDisabled()}: Verifica che con le metriche disabilitate
+ * nessun calcolo venga registrato.</li>
+ *
+ * <li>{@link #testCounters()}: Verifica che digest e byte vengano contati per
+ * tipo di operazione.</li>
+ *
+ * <li>{@link #testLatencyHistogram()}: Verifica che con la misura delle
+ * latenze abilitata ogni calcolo venga registrato nell'istogramma.</li>
+ *
+ * <li>{@link #testMBean()}: Verifica che le metriche siano leggibili tramite
+ * JMX.</li>
+ * </ul>
+ */
+class HashMetricsTest {
+
+    @Test
+    void testDisabled() {
+        HashMetrics.setEnabled(false);
+        HashMetrics.reset();
+        HashUtil.dataToHash("dato");
+        HashUtil.computeMD5(new byte[10]);
+        assertEquals(0, HashMetrics.snapshot().getTotalInvocations(),
+                "Con le metriche disabilitate non dovrebbe essere registrato nulla.");
+    }
+
+    @Test
+    void testCounters() {
+        HashMetrics.reset();
+        HashMetrics.setEnabled(true);
+        try {
+            HashUtil.dataToDigest("dato");
+            HashUtil.dataToDigest("dato", DataEncoder.STRING, HashFunction.SHA_256);
+            HashUtil.computeMD5(new byte[10]);
+            HashUtil.computeMD5(ByteBuffer.allocate(20), ByteBuffer.allocate(Digest.MD5_LENGTH));
+            HashUtil.combine(HashUtil.dataToDigest(1), HashUtil.dataToDigest(2));
+            HashUtil.combineRaw(HashFunction.MD5, Digest.EMPTY, Digest.EMPTY);
+        } finally {
+            HashMetrics.setEnabled(false);
+        }
+        HashMetrics.Snapshot snapshot = HashMetrics.snapshot();
+        assertEquals(4, snapshot.getInvocations(HashMetrics.Operation.DATA), "Numero di hash dei dati errato.");
+        assertEquals(4 + 4 + 4 + 4, snapshot.getBytes(HashMetrics.Operation.DATA), "Byte dei dati errati.");
+        assertEquals(2, snapshot.getInvocations(HashMetrics.Operation.RAW), "Numero di hash di byte errato.");
+        assertEquals(30, snapshot.getBytes(HashMetrics.Operation.RAW), "Byte hashati errati.");
+        assertEquals(1, snapshot.getInvocations(HashMetrics.Operation.NODE),
+                "Due figli vuoti non dovrebbero richiedere un calcolo.");
+        assertEquals(64, snapshot.getBytes(HashMetrics.Operation.NODE), "Byte dei nodi errati.");
+        assertEquals(7, snapshot.getTotalInvocations(), "Numero totale di hash errato.");
+        for (long count : snapshot.getLatencyHistogram(HashMetrics.Operation.DATA))
+            assertEquals(0, count, "Senza la misura delle latenze l'istogramma dovrebbe essere vuoto.");
+    }
+
+    @Test
+    void testLatencyHistogram() {
+        HashMetrics.reset();
+        HashMetrics.setEnabled(true);
+        HashMetrics.setLatencyEnabled(true);
+        try {
+            for (int i = 0; i < 10; i++)
+                HashUtil.dataToDigest(i);
+        } finally {
+            HashMetrics.setLatencyEnabled(false);
+            HashMetrics.setEnabled(false);
+        }
+        long total = 0;
+        for (long count : HashMetrics.snapshot().getLatencyHistogram(HashMetrics.Operation.DATA))
+            total += count;
+        assertEquals(10, total, "Ogni calcolo dovrebbe essere registrato nell'istogramma.");
+    }
+
+    @Test
+    void testMBean() throws Exception {
+        HashMetrics.reset();
+        HashMetrics.registerMBean();
+        HashMetrics.registerMBean();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(HashMetrics.OBJECT_NAME);
+            server.setAttribute(name, new Attribute("Enabled", true));
+            HashUtil.computeMD5(new byte[8]);
+            HashMetrics.setEnabled(false);
+            assertEquals(1L, server.getAttribute(name, "TotalInvocations"), "Numero totale di hash errato.");
+            assertEquals(8L, server.getAttribute(name, "TotalBytes"), "Numero totale di byte errato.");
+        } finally {
+            HashMetrics.setEnabled(false);
+            HashMetrics.unregisterMBean();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(HashMetrics.OBJECT_NAME)),
+                "L'MBean dovrebbe essere stato rimosso.");
+    }
+}
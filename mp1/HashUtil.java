@@ -1,15 +1,76 @@
 package it.unicam.cs.asdl2425.mp1;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
- * Classe fornita di utilità per calcolare gli hash MD5.
+ * Classe fornita di utilità per calcolare gli hash MD5. I metodi che accettano
+ * una {@link HashFunction} permettono di utilizzare un algoritmo diverso.
+ *
+ * <p>
+ * Le istanze di MessageDigest sono riutilizzate per thread e la conversione
+ * esadecimale è basata su tabelle, per cui il calcolo degli hash dei nodi
+ * intermedi non alloca altro che il digest risultante.
+ *
+ * <p>
+ * Se abilitate, {@link HashMetrics} registra i digest calcolati, i byte
+ * hashati e le latenze di ciascun metodo.
  * 
  * @author Luca Tesei, Marco Caputo
  */
 public class HashUtil {
 
+    /**
+     * Numero minimo di dati hashati da un singolo task nel calcolo in
+     * parallelo.
+     */
+    public static final int BATCH_THRESHOLD = 512;
+
+    /**
+     * Coppie di cifre esadecimali (in ASCII) per ciascun valore di un byte.
+     */
+    private static final byte[] HEX_PAIRS = new byte[512];
+
+    /**
+     * Valore di ciascun carattere ASCII come cifra esadecimale, -1 se non è
+     * una cifra esadecimale.
+     */
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    /**
+     * Buffer di appoggio per thread, usato per concatenare i digest dei figli.
+     */
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal
+            .withInitial(() -> new byte[4 * Digest.SHA256_LENGTH]);
+
+    /**
+     * Hasher disponibili per thread, uno per funzione di hash, usati dal
+     * calcolo dei digest tramite encoder.
+     */
+    private static final ThreadLocal<Map<HashFunction, HashFunction.Hasher>> HASHERS = ThreadLocal
+            .withInitial(IdentityHashMap::new);
+
+    static {
+        byte[] digits = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        for (int b = 0; b < 256; b++) {
+            HEX_PAIRS[2 * b] = digits[b >>> 4];
+            HEX_PAIRS[2 * b + 1] = digits[b & 0xF];
+        }
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            HEX_VALUES[digits[i]] = (byte) i;
+            HEX_VALUES[Character.toUpperCase(digits[i])] = (byte) i;
+        }
+    }
+
     /**
      * Calcola l'hash del dato fornito utilizzando MD5.
      *
@@ -18,7 +79,149 @@ public class HashUtil {
      * @return l'hash come stringa esadecimale.
      */
     public static String dataToHash(Object data) {
-        return HashUtil.computeMD5(intToBytes(data.hashCode()));
+        return dataToDigest(data).toHex();
+    }
+
+    /**
+     * Calcola il digest MD5 del dato fornito.
+     *
+     * @param data
+     *                 il dato da hashare.
+     * @return il digest del dato.
+     */
+    public static Digest dataToDigest(Object data) {
+        return dataToDigest(data, HashFunction.MD5);
+    }
+
+    /**
+     * Calcola il digest del dato fornito utilizzando la funzione di hash data.
+     *
+     * @param data
+     *                     il dato da hashare.
+     * @param function
+     *                     la funzione di hash da utilizzare.
+     * @return il digest del dato.
+     */
+    public static Digest dataToDigest(Object data, HashFunction function) {
+        long start = HashMetrics.start();
+        Digest digest = function.hash(intToBytes(data.hashCode()));
+        HashMetrics.record(HashMetrics.Operation.DATA, Integer.BYTES, start);
+        return digest;
+    }
+
+    /**
+     * Calcola il digest del contenuto del dato fornito, codificato
+     * incrementalmente dall'encoder dato, utilizzando la funzione di hash
+     * data. Il calcolo riutilizza un Hasher per thread, per cui un encoder può
+     * a sua volta calcolare altri digest senza interferire.
+     *
+     * @param <T>
+     *                     il tipo del dato.
+     * @param data
+     *                     il dato da hashare.
+     * @param encoder
+     *                     l'encoder del contenuto del dato.
+     * @param function
+     *                     la funzione di hash da utilizzare.
+     * @return il digest del dato.
+     */
+    public static <T> Digest dataToDigest(T data, DataEncoder<? super T> encoder, HashFunction function) {
+        if (encoder == DataEncoder.HASH_CODE)
+            return dataToDigest(data, function);
+        long start = HashMetrics.start();
+        Map<HashFunction, HashFunction.Hasher> pool = HASHERS.get();
+        HashFunction.Hasher hasher = pool.remove(function);    //null se già in uso più in alto nello stack
+        if (hasher == null)
+            hasher = function.newHasher();
+        Digest digest;
+        if (HashMetrics.isRecording(start)) {
+            CountingHasher counting = new CountingHasher(hasher);
+            encoder.encode(data, counting);
+            digest = hasher.digest();
+            HashMetrics.record(HashMetrics.Operation.DATA, counting.count, start);
+        } else {
+            encoder.encode(data, hasher);
+            digest = hasher.digest();
+        }
+        pool.put(function, hasher);     //restituito solo se il calcolo è terminato correttamente
+        return digest;
+    }
+
+    /**
+     * Calcola i digest di tutti i dati di una lista, in parallelo sul pool
+     * comune di ForkJoin. I digest sono restituiti nell'ordine dei dati.
+     *
+     * @param <T>
+     *                     il tipo dei dati.
+     * @param data
+     *                     i dati da hashare.
+     * @param encoder
+     *                     l'encoder del contenuto dei dati.
+     * @param function
+     *                     la funzione di hash da utilizzare.
+     * @return i digest dei dati, nello stesso ordine.
+     * @throws NullPointerException
+     *                                  se uno dei dati è null.
+     */
+    public static <T> Digest[] dataToDigests(List<? extends T> data, DataEncoder<? super T> encoder,
+            HashFunction function) {
+        return dataToDigests(data, encoder, function, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Calcola i digest di tutti i dati di una lista, in parallelo sul pool di
+     * ForkJoin fornito. La lista viene suddivisa in blocchi di almeno
+     * {@value #BATCH_THRESHOLD} elementi, ciascuno hashato da un task; liste
+     * più piccole sono hashate direttamente dal thread chiamante. I digest
+     * sono restituiti nell'ordine dei dati.
+     *
+     * @param <T>
+     *                     il tipo dei dati.
+     * @param data
+     *                     i dati da hashare.
+     * @param encoder
+     *                     l'encoder del contenuto dei dati.
+     * @param function
+     *                     la funzione di hash da utilizzare.
+     * @param pool
+     *                     il pool su cui eseguire il calcolo.
+     * @return i digest dei dati, nello stesso ordine.
+     * @throws NullPointerException
+     *                                  se uno dei dati è null.
+     */
+    public static <T> Digest[] dataToDigests(List<? extends T> data, DataEncoder<? super T> encoder,
+            HashFunction function, ForkJoinPool pool) {
+        List<? extends T> items = data instanceof RandomAccess ? data : new ArrayList<>(data);
+        Digest[] digests = new Digest[items.size()];
+        BatchHashTask<T> task = new BatchHashTask<>(items, encoder, function, digests, 0, digests.length);
+        if (digests.length <= BATCH_THRESHOLD || pool.getParallelism() == 1)
+            task.compute();
+        else
+            pool.invoke(task);
+        return digests;
+    }
+
+    /**
+     * Calcola i digest di tutti i dati di un array, in parallelo sul pool di
+     * ForkJoin fornito, come {@link #dataToDigests(List, DataEncoder, HashFunction, ForkJoinPool)}.
+     *
+     * @param <T>
+     *                     il tipo dei dati.
+     * @param data
+     *                     i dati da hashare.
+     * @param encoder
+     *                     l'encoder del contenuto dei dati.
+     * @param function
+     *                     la funzione di hash da utilizzare.
+     * @param pool
+     *                     il pool su cui eseguire il calcolo.
+     * @return i digest dei dati, nello stesso ordine.
+     * @throws NullPointerException
+     *                                  se uno dei dati è null.
+     */
+    public static <T> Digest[] dataToDigests(T[] data, DataEncoder<? super T> encoder,
+            HashFunction function, ForkJoinPool pool) {
+        return dataToDigests(Arrays.asList(data), encoder, function, pool);
     }
 
     /**
@@ -31,17 +234,170 @@ public class HashUtil {
      *                              se l'algoritmo di hashing non è disponibile.
      */
     public static String computeMD5(byte[] input) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] hashBytes = md.digest(input);
-            StringBuilder hashString = new StringBuilder();
-            for (byte b : hashBytes) {
-                hashString.append(String.format("%02x", b));
-            }
-            return hashString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("MD5 algorithm not found", e);
+        return computeDigest(input).toHex();
+    }
+
+    /**
+     * Calcola il digest MD5 di un array di byte fornito.
+     *
+     * @param input
+     *                  l'array di byte di cui calcolare l'hash.
+     * @return il digest dell'array.
+     * @throws RuntimeException
+     *                              se l'algoritmo di hashing non è disponibile.
+     */
+    public static Digest computeDigest(byte[] input) {
+        long start = HashMetrics.start();
+        Digest digest = HashFunction.MD5.hash(input);
+        HashMetrics.record(HashMetrics.Operation.RAW, input.length, start);
+        return digest;
+    }
+
+    /**
+     * Calcola l'hash MD5 di un array di byte scrivendo il digest nell'array
+     * fornito, senza allocare memoria.
+     *
+     * @param input
+     *                   l'array di byte di cui calcolare l'hash.
+     * @param output
+     *                   l'array in cui scrivere il digest.
+     * @param offset
+     *                   la posizione da cui iniziare a scrivere.
+     * @return il numero di byte scritti.
+     * @throws IllegalArgumentException
+     *                                      se lo spazio in output non è
+     *                                      sufficiente.
+     */
+    public static int computeMD5(byte[] input, byte[] output, int offset) {
+        long start = HashMetrics.start();
+        int n = HashFunction.MD5.hash(input, 0, input.length, output, offset);
+        HashMetrics.record(HashMetrics.Operation.RAW, input.length, start);
+        return n;
+    }
+
+    /**
+     * Calcola l'hash MD5 dei byte rimanenti di un ByteBuffer scrivendo il
+     * digest nel ByteBuffer di output, senza allocare memoria. Le posizioni
+     * di entrambi i buffer vengono avanzate.
+     *
+     * @param input
+     *                   il buffer di cui calcolare l'hash.
+     * @param output
+     *                   il buffer in cui scrivere il digest.
+     * @return il numero di byte scritti.
+     * @throws java.nio.BufferOverflowException
+     *                                              se lo spazio in output non
+     *                                              è sufficiente.
+     */
+    public static int computeMD5(ByteBuffer input, ByteBuffer output) {
+        long start = HashMetrics.start();
+        int length = input.remaining();
+        int n = HashFunction.MD5.hash(input, output);
+        HashMetrics.record(HashMetrics.Operation.RAW, length, start);
+        return n;
+    }
+
+    /**
+     * Converte un array di byte nella sua rappresentazione esadecimale.
+     *
+     * @param bytes
+     *                  l'array di byte da convertire.
+     * @return la stringa esadecimale corrispondente.
+     */
+    public static String toHex(byte[] bytes) {
+        byte[] chars = new byte[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int b = (bytes[i] & 0xFF) << 1;
+            chars[2 * i] = HEX_PAIRS[b];
+            chars[2 * i + 1] = HEX_PAIRS[b + 1];
         }
+        return new String(chars, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Converte una stringa esadecimale nell'array di byte corrispondente.
+     *
+     * @param hex
+     *                la stringa esadecimale da convertire.
+     * @return l'array di byte corrispondente.
+     * @throws IllegalArgumentException
+     *                                      se la stringa non è una
+     *                                      rappresentazione esadecimale valida.
+     */
+    public static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0)
+            throw new IllegalArgumentException("Hash non valido: " + hex);
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte) ((hexValue(hex, 2 * i) << 4) | hexValue(hex, 2 * i + 1));
+        return bytes;
+    }
+
+    /**
+     * Calcola il digest di un nodo intermedio a partire dai digest dei due
+     * figli, applicando MD5 alla concatenazione delle loro rappresentazioni
+     * esadecimali. La concatenazione è scritta direttamente in byte ASCII,
+     * senza costruire stringhe intermedie. Se entrambi i figli hanno il digest
+     * vuoto, il risultato è il digest vuoto.
+     *
+     * @param left
+     *                  il digest del figlio sinistro.
+     * @param right
+     *                  il digest del figlio destro.
+     * @return il digest del nodo padre.
+     */
+    public static Digest combine(Digest left, Digest right) {
+        return combine(HashFunction.MD5, left, right);
+    }
+
+    /**
+     * Calcola il digest di un nodo intermedio come
+     * {@link #combine(Digest, Digest)}, utilizzando la funzione di hash data.
+     *
+     * @param function
+     *                     la funzione di hash da utilizzare.
+     * @param left
+     *                     il digest del figlio sinistro.
+     * @param right
+     *                     il digest del figlio destro.
+     * @return il digest del nodo padre.
+     */
+    public static Digest combine(HashFunction function, Digest left, Digest right) {
+        if (left.isEmpty() && right.isEmpty())
+            return Digest.EMPTY;
+        byte[] buffer = scratch((left.length() + right.length()) * 2);
+        int n = left.writeHex(buffer, 0);
+        n += right.writeHex(buffer, n);
+        long start = HashMetrics.start();
+        Digest digest = function.hash(buffer, 0, n);
+        HashMetrics.record(HashMetrics.Operation.NODE, n, start);
+        return digest;
+    }
+
+    /**
+     * Calcola il digest di un nodo intermedio applicando la funzione di hash
+     * data alla concatenazione dei byte dei digest dei due figli, senza
+     * conversioni esadecimali né allocazioni intermedie. Se entrambi i figli
+     * hanno il digest vuoto, il risultato è il digest vuoto.
+     *
+     * @param function
+     *                     la funzione di hash da utilizzare.
+     * @param left
+     *                     il digest del figlio sinistro.
+     * @param right
+     *                     il digest del figlio destro.
+     * @return il digest del nodo padre.
+     */
+    public static Digest combineRaw(HashFunction function, Digest left, Digest right) {
+        if (left.isEmpty() && right.isEmpty())
+            return Digest.EMPTY;
+        byte[] buffer = scratch(left.length() + right.length());
+        int n = left.writeTo(buffer, 0);
+        n += right.writeTo(buffer, n);
+        long start = HashMetrics.start();
+        Digest digest = function.hash(buffer, 0, n);
+        HashMetrics.record(HashMetrics.Operation.NODE, n, start);
+        return digest;
     }
 
     /**
@@ -61,4 +417,143 @@ public class HashUtil {
         return new byte[] { (byte) (value >> 24), (byte) (value >> 16),
                 (byte) (value >> 8), (byte) value };
     }
-}
\ No newline at end of file
+
+    /**
+     * Scrive le 16 cifre esadecimali di un valore long (big-endian), in ASCII,
+     * nell'array fornito.
+     */
+    static void writeHexLong(long value, byte[] dst, int offset) {
+        for (int i = 14; i >= 0; i -= 2) {
+            int b = ((int) value & 0xFF) << 1;
+            dst[offset + i] = HEX_PAIRS[b];
+            dst[offset + i + 1] = HEX_PAIRS[b + 1];
+            value >>>= 8;
+        }
+    }
+
+    /**
+     * Scrive le cifre esadecimali di una porzione di un array di byte, in
+     * ASCII, nell'array fornito, restituendo il numero di byte scritti.
+     */
+    static int writeHex(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+        for (int i = 0; i < length; i++) {
+            int b = (src[offset + i] & 0xFF) << 1;
+            dst[dstOffset + 2 * i] = HEX_PAIRS[b];
+            dst[dstOffset + 2 * i + 1] = HEX_PAIRS[b + 1];
+        }
+        return 2 * length;
+    }
+
+    /**
+     * Legge 16 cifre esadecimali a partire dalla posizione data come un valore
+     * long (big-endian).
+     *
+     * @throws IllegalArgumentException
+     *                                      se una cifra non è esadecimale.
+     */
+    static long parseHexLong(CharSequence hex, int offset) {
+        long value = 0;
+        for (int i = 0; i < 16; i++) {
+            value = (value << 4) | hexValue(hex, offset + i);
+        }
+        return value;
+    }
+
+    private static int hexValue(CharSequence hex, int index) {
+        char c = hex.charAt(index);
+        int value = c < HEX_VALUES.length ? HEX_VALUES[c] : -1;
+        if (value < 0)
+            throw new IllegalArgumentException("Hash non valido: " + hex);
+        return value;
+    }
+
+    /**
+     * Restituisce il buffer di appoggio del thread corrente, ampliandolo se
+     * più piccolo della dimensione richiesta.
+     */
+    private static byte[] scratch(int size) {
+        byte[] buffer = SCRATCH.get();
+        if (buffer.length < size) {
+            buffer = new byte[size];
+            SCRATCH.set(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Hasher che conta i byte ricevuti prima di inoltrarli, usato solo quando
+     * le metriche sono abilitate.
+     */
+    private static final class CountingHasher implements HashFunction.Hasher {
+        private final HashFunction.Hasher delegate;
+
+        long count;
+
+        CountingHasher(HashFunction.Hasher delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void update(byte b) {
+            count++;
+            delegate.update(b);
+        }
+
+        @Override
+        public void update(byte[] input, int offset, int length) {
+            count += length;
+            delegate.update(input, offset, length);
+        }
+
+        @Override
+        public void update(ByteBuffer input) {
+            count += input.remaining();
+            delegate.update(input);
+        }
+
+        @Override
+        public Digest digest() {
+            return delegate.digest();
+        }
+    }
+
+    /**
+     * Task che calcola i digest di un intervallo di dati, dividendosi a metà
+     * finché l'intervallo supera {@link #BATCH_THRESHOLD}.
+     */
+    private static class BatchHashTask<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<? extends T> data;
+        private final DataEncoder<? super T> encoder;
+        private final HashFunction function;
+        private final Digest[] digests;
+        private final int from;
+        private final int to;
+
+        BatchHashTask(List<? extends T> data, DataEncoder<? super T> encoder, HashFunction function,
+                Digest[] digests, int from, int to) {
+            this.data = data;
+            this.encoder = encoder;
+            this.function = function;
+            this.digests = digests;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    T item = data.get(i);
+                    if (item == null) throw new NullPointerException("dato nullo in posizione " + i);
+                    digests[i] = dataToDigest(item, encoder, function);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BatchHashTask<>(data, encoder, function, digests, from, mid),
+                    new BatchHashTask<>(data, encoder, function, digests, mid, to));
+        }
+    }
+}
@@ -2,6 +2,11 @@ package it.unicam.cs.asdl2425.mp1;
 
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -18,6 +23,18 @@ import static org.junit.jupiter.api.Assertions.*;
  * 
  * <li>{@link #testComputeMD5_nullInput()}: Verifica che il metodo
  * {@code computeMD5} lanci una {@code NullPointerException} quando l'input è {@code null}.</li>
+ * 
+ * <li>{@link #testComputeMD5_intoArray()}: Verifica che il metodo {@code computeMD5} scriva
+ * correttamente il digest in un array fornito, rispettando la posizione indicata.</li>
+ * 
+ * <li>{@link #testComputeMD5_intoByteBuffer()}: Verifica che il metodo {@code computeMD5} scriva
+ * correttamente il digest in un ByteBuffer, sia heap sia diretto, avanzando le posizioni.</li>
+ * 
+ * <li>{@link #testHexConversion()}: Verifica la conversione tra array di byte e stringhe
+ * esadecimali, anche maiuscole, e il rifiuto di stringhe non valide.</li>
+ * 
+ * <li>{@link #testDataToDigests()}: Verifica che il calcolo in parallelo dei digest di molti dati
+ * restituisca gli stessi digest del calcolo sequenziale, nello stesso ordine.</li>
  * </ul>
  */
 class HashUtilTest {
@@ -49,4 +66,66 @@ class HashUtilTest {
         assertThrows(NullPointerException.class, () -> HashUtil.computeMD5(null),
                 "Dovrebbe lanciare NullPointerException se l'input è null.");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testComputeMD5_intoArray() {
+        byte[] input = "Hello, World!".getBytes();
+        byte[] output = new byte[20];
+
+        assertEquals(16, HashUtil.computeMD5(input, output, 4), "Dovrebbero essere scritti 16 byte.");
+        assertEquals("65a8e27d8879283831b664bd8b7f0ad4", Digest.of(output, 4, 16).toHex(),
+                "Il digest scritto non corrisponde all'atteso.");
+        assertThrows(IllegalArgumentException.class, () -> HashUtil.computeMD5(input, output, 8),
+                "Dovrebbe lanciare IllegalArgumentException se lo spazio non è sufficiente.");
+        assertEquals("65a8e27d8879283831b664bd8b7f0ad4", HashUtil.computeMD5(input),
+                "Un errore precedente non dovrebbe alterare i calcoli successivi.");
+    }
+
+    @Test
+    void testComputeMD5_intoByteBuffer() {
+        for (ByteBuffer output : new ByteBuffer[] { ByteBuffer.allocate(16), ByteBuffer.allocateDirect(16) }) {
+            ByteBuffer input = ByteBuffer.allocateDirect(13).put("Hello, World!".getBytes());
+            input.flip();
+
+            assertEquals(16, HashUtil.computeMD5(input, output), "Dovrebbero essere scritti 16 byte.");
+            assertFalse(input.hasRemaining(), "L'input dovrebbe essere stato consumato.");
+            assertFalse(output.hasRemaining(), "La posizione dell'output dovrebbe essere avanzata.");
+            byte[] bytes = new byte[16];
+            output.flip();
+            output.get(bytes);
+            assertEquals("65a8e27d8879283831b664bd8b7f0ad4", HashUtil.toHex(bytes),
+                    "Il digest scritto non corrisponde all'atteso.");
+        }
+    }
+
+    @Test
+    void testHexConversion() {
+        byte[] bytes = { 0x00, 0x7f, (byte) 0x80, (byte) 0xff, 0x1a };
+        assertEquals("007f80ff1a", HashUtil.toHex(bytes), "La conversione esadecimale non è corretta.");
+        assertArrayEquals(bytes, HashUtil.fromHex("007F80ff1A"), "La conversione da esadecimale non è corretta.");
+        assertThrows(IllegalArgumentException.class, () -> HashUtil.fromHex("0g"),
+                "Dovrebbe lanciare IllegalArgumentException per caratteri non esadecimali.");
+        assertThrows(IllegalArgumentException.class, () -> HashUtil.fromHex("abc"),
+                "Dovrebbe lanciare IllegalArgumentException per una lunghezza dispari.");
+    }
+
+    @Test
+    void testDataToDigests() {
+        List<String> data = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) data.add("Dato " + i);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Digest[] digests = HashUtil.dataToDigests(data, DataEncoder.STRING, HashFunction.SHA_256, pool);
+            assertEquals(data.size(), digests.length, "Dovrebbe essere restituito un digest per dato.");
+            for (int i = 0; i < data.size(); i++)
+                assertEquals(HashUtil.dataToDigest(data.get(i), DataEncoder.STRING, HashFunction.SHA_256), digests[i],
+                        "Il digest in posizione " + i + " non è corretto.");
+
+            data.set(4321, null);
+            assertThrows(NullPointerException.class, () -> HashUtil.dataToDigests(data, DataEncoder.STRING, HashFunction.MD5, pool),
+                    "Dovrebbe lanciare NullPointerException per un dato null.");
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Una prova di Merkle per un insieme di foglie dello stesso albero. Invece di
+ * una prova indipendente per ciascuna foglia, la prova contiene le posizioni
+ * delle foglie e soltanto i digest dei sottoalberi che non contengono alcuna
+ * foglia da provare e il cui padre ne contiene almeno una: tutti gli altri
+ * nodi sul cammino verso la radice sono ricalcolati dalla verifica a partire
+ * dalle foglie stesse. Per k foglie in un albero di altezza h la prova
+ * contiene al più k·h digest, e in genere molti meno.
+ *
+ * <p>
+ * I digest dei sottoalberi sono memorizzati nell'ordine in cui la verifica li
+ * incontra scendendo dalla radice, da sinistra a destra, per cui la verifica
+ * ricostruisce la radice in un'unica visita.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+public class MerkleMultiProof {
+
+    /**
+     * Il digest della radice dell'albero di Merkle per il quale la prova è
+     * stata costruita.
+     */
+    private final Digest rootHash;
+
+    /**
+     * L'altezza dell'albero di Merkle.
+     */
+    private final int height;
+
+    /**
+     * Gli indici delle foglie provate, in ordine crescente e senza ripetizioni.
+     */
+    private final int[] indices;
+
+    /**
+     * I digest dei sottoalberi necessari alla verifica, nell'ordine di visita.
+     */
+    private final Digest[] siblings;
+
+    /**
+     * La funzione di hash con cui è stato costruito l'albero di Merkle.
+     */
+    private final HashFunction hashFunction;
+
+    /**
+     * La modalità di calcolo dei nodi intermedi dell'albero di Merkle.
+     */
+    private final TreeHashMode hashMode;
+
+    /**
+     * Costruisce una prova di Merkle per un insieme di foglie.
+     *
+     * @param rootHash
+     *                         il digest della radice dell'albero di Merkle.
+     * @param height
+     *                         l'altezza dell'albero di Merkle.
+     * @param indices
+     *                         gli indici delle foglie provate, in ordine
+     *                         strettamente crescente.
+     * @param siblings
+     *                         i digest dei sottoalberi necessari alla
+     *                         verifica, nell'ordine di visita.
+     * @param hashFunction
+     *                         la funzione di hash dell'albero di Merkle.
+     * @param hashMode
+     *                         la modalità di calcolo dei nodi intermedi.
+     * @throws IllegalArgumentException
+     *                                      se uno degli argomenti è null, se
+     *                                      l'altezza non è valida o se gli
+     *                                      indici sono vuoti, non crescenti o
+     *                                      fuori dall'albero.
+     */
+    public MerkleMultiProof(Digest rootHash, int height, int[] indices, Digest[] siblings,
+            HashFunction hashFunction, TreeHashMode hashMode) {
+        if (rootHash == null || indices == null || siblings == null || hashFunction == null || hashMode == null)
+            throw new IllegalArgumentException();
+        if (height < 0 || height > 30 || indices.length == 0)
+            throw new IllegalArgumentException();
+        for (int i = 0; i < indices.length; i++)
+            if (indices[i] < 0 || indices[i] >= 1 << height || (i > 0 && indices[i] <= indices[i - 1]))
+                throw new IllegalArgumentException("Indice non valido: " + indices[i]);
+        for (Digest sibling : siblings)
+            if (sibling == null) throw new IllegalArgumentException("digest nullo");
+        this.rootHash = rootHash;
+        this.height = height;
+        this.indices = indices.clone();
+        this.siblings = siblings.clone();
+        this.hashFunction = hashFunction;
+        this.hashMode = hashMode;
+    }
+
+    /**
+     * Restituisce il digest della radice dell'albero di Merkle.
+     *
+     * @return il digest della radice.
+     */
+    public Digest getRootHash() {
+        return rootHash;
+    }
+
+    /**
+     * Restituisce l'altezza dell'albero di Merkle.
+     *
+     * @return l'altezza dell'albero.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Restituisce gli indici delle foglie provate, in ordine crescente. I dati
+     * da verificare vanno forniti nello stesso ordine.
+     *
+     * @return una copia degli indici delle foglie.
+     */
+    public int[] getIndices() {
+        return indices.clone();
+    }
+
+    /**
+     * Restituisce i digest dei sottoalberi necessari alla verifica,
+     * nell'ordine di visita.
+     *
+     * @return i digest della prova.
+     */
+    public List<Digest> getSiblings() {
+        return List.of(siblings);
+    }
+
+    /**
+     * Restituisce il numero di digest contenuti nella prova.
+     *
+     * @return il numero di digest della prova.
+     */
+    public int getLength() {
+        return siblings.length;
+    }
+
+    /**
+     * Restituisce la funzione di hash con cui la prova deve essere verificata.
+     *
+     * @return la funzione di hash della prova.
+     */
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    /**
+     * Restituisce la modalità di calcolo dei nodi intermedi con cui la prova
+     * deve essere verificata.
+     *
+     * @return la modalità di calcolo dei nodi intermedi.
+     */
+    public TreeHashMode getHashMode() {
+        return hashMode;
+    }
+
+    /**
+     * Valida i dati forniti per questa prova, come
+     * {@link MerkleProof#proveValidityOfData(Object)}. I dati devono essere
+     * nell'ordine degli indici restituiti da {@link #getIndices()}.
+     *
+     * @param data
+     *                 i dati da validare.
+     * @return true se tutti i dati sono validi secondo la prova; false
+     *         altrimenti.
+     * @throws IllegalArgumentException
+     *                                      se la lista o uno dei dati sono
+     *                                      null.
+     */
+    public boolean proveValidityOfData(List<?> data) {
+        if (data == null) throw new IllegalArgumentException();
+        List<Digest> leaves = new ArrayList<>(data.size());
+        for (Object d : data) {
+            if (d == null) throw new IllegalArgumentException();
+            leaves.add(HashUtil.dataToDigest(d, hashFunction));
+        }
+        return proveValidityOfDigests(leaves);
+    }
+
+    /**
+     * Valida i dati forniti per questa prova, calcolandone gli hash sul
+     * contenuto codificato dall'encoder dato, come
+     * {@link MerkleProof#proveValidityOfData(Object, DataEncoder)}. I dati
+     * devono essere nell'ordine degli indici restituiti da
+     * {@link #getIndices()}.
+     *
+     * @param <T>
+     *                    il tipo dei dati.
+     * @param data
+     *                    i dati da validare.
+     * @param encoder
+     *                    l'encoder del contenuto dei dati.
+     * @return true se tutti i dati sono validi secondo la prova; false
+     *         altrimenti.
+     * @throws IllegalArgumentException
+     *                                      se la lista, uno dei dati o
+     *                                      l'encoder sono null.
+     */
+    public <T> boolean proveValidityOfData(List<? extends T> data, DataEncoder<? super T> encoder) {
+        if (data == null || encoder == null) throw new IllegalArgumentException();
+        List<Digest> leaves = new ArrayList<>(data.size());
+        for (T d : data) {
+            if (d == null) throw new IllegalArgumentException();
+            leaves.add(HashUtil.dataToDigest(d, encoder, hashFunction));
+        }
+        return proveValidityOfDigests(leaves);
+    }
+
+    /**
+     * Valida i digest delle foglie forniti per questa prova, ricostruendo la
+     * radice in un'unica visita e controllando che coincida con quella
+     * dell'albero e che tutti i digest della prova siano stati usati. I digest
+     * devono essere nell'ordine degli indici restituiti da
+     * {@link #getIndices()}.
+     *
+     * @param leaves
+     *                   i digest delle foglie da validare.
+     * @return true se tutte le foglie sono valide secondo la prova; false
+     *         altrimenti.
+     * @throws IllegalArgumentException
+     *                                      se la lista o uno dei digest sono
+     *                                      null.
+     */
+    public boolean proveValidityOfDigests(List<Digest> leaves) {
+        if (leaves == null || leaves.contains(null)) throw new IllegalArgumentException();
+        if (leaves.size() != indices.length) return false;
+        int[] next = { 0 };                                         //prossimo digest della prova da usare
+        Digest root = fold(height, 0, 0, indices.length, leaves, next);
+        return root != null && next[0] == siblings.length && root.equals(rootHash);
+    }
+
+    /**
+     * Ricostruisce il digest del sottoalbero dell'altezza data, la cui prima
+     * foglia ha l'indice {@code first} e che contiene le foglie provate di
+     * posizione [from, to); null se la prova non ha abbastanza digest.
+     */
+    private Digest fold(int height, int first, int from, int to, List<Digest> leaves, int[] next) {
+        if (from == to) return next[0] < siblings.length ? siblings[next[0]++] : null;
+        if (height == 0) return leaves.get(from);
+        int mid = first + (1 << (height - 1));
+        int split = from;
+        while (split < to && indices[split] < mid) split++;
+        Digest left = fold(height - 1, first, from, split, leaves, next);
+        if (left == null) return null;
+        Digest right = fold(height - 1, mid, split, to, leaves, next);
+        if (right == null) return null;
+        return hashMode.combine(hashFunction, left, right);
+    }
+}
@@ -0,0 +1,132 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per la classe {@link MerkleMultiProof}. Di seguito, l'elenco
+ * dei test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testValidMultiProof()}: Verifica che una prova per più foglie
+ * validi i dati corrispondenti e contenga meno digest delle prove
+ * singole.</li>
+ *
+ * <li>{@link #testInvalidData()}: Verifica che la prova respinga dati diversi,
+ * in ordine diverso o in numero diverso.</li>
+ *
+ * <li>{@link #testEdgeCases()}: Verifica le prove per una sola foglia, per
+ * tutte le foglie e per un albero con una sola foglia.</li>
+ *
+ * <li>{@link #testProofFromData()}: Verifica la prova costruita a partire dai
+ * dati invece che dagli indici.</li>
+ *
+ * <li>{@link #testInvalidArguments()}: Verifica che vengano lanciate eccezioni
+ * per argomenti non validi.</li>
+ * </ul>
+ */
+class MerkleMultiProofTest {
+
+    private static MerkleTree<Integer> tree(int size) {
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        for (int i = 0; i < size; i++)
+            list.addAtTail(i);
+        return new MerkleTree<>(list);
+    }
+
+    private static List<Integer> data(int[] indices) {
+        List<Integer> data = new ArrayList<>();
+        for (int i : indices)
+            data.add(i);
+        return data;
+    }
+
+    @Test
+    void testValidMultiProof() {
+        MerkleTree<Integer> tree = tree(1000);
+        int[] indices = { 999, 3, 4, 5, 500, 3, 64 };
+        MerkleMultiProof proof = tree.getMerkleMultiProof(indices);
+
+        assertArrayEquals(new int[] { 3, 4, 5, 64, 500, 999 }, proof.getIndices(),
+                "Gli indici dovrebbero essere ordinati e senza ripetizioni.");
+        assertEquals(tree.getRoot().getDigest(), proof.getRootHash(), "La radice della prova non è corretta.");
+        assertTrue(proof.proveValidityOfData(data(proof.getIndices())), "La prova dovrebbe essere valida.");
+
+        int single = 0;
+        for (int i : proof.getIndices())
+            single += tree.getMerkleProof(i).getLength();
+        assertTrue(proof.getLength() < single, "La prova dovrebbe contenere meno digest delle prove singole.");
+    }
+
+    @Test
+    void testInvalidData() {
+        MerkleTree<Integer> tree = tree(13);
+        MerkleMultiProof proof = tree.getMerkleMultiProof(new int[] { 1, 6, 12 });
+        assertFalse(proof.proveValidityOfData(List.of(1, 6, 11)), "Un dato diverso non dovrebbe essere valido.");
+        assertFalse(proof.proveValidityOfData(List.of(6, 1, 12)), "Dati in ordine diverso non dovrebbero essere validi.");
+        assertFalse(proof.proveValidityOfData(List.of(1, 6)), "Meno dati non dovrebbero essere validi.");
+
+        List<Digest> siblings = new ArrayList<>(proof.getSiblings());
+        siblings.remove(siblings.size() - 1);
+        MerkleMultiProof truncated = new MerkleMultiProof(proof.getRootHash(), proof.getHeight(), proof.getIndices(),
+                siblings.toArray(new Digest[0]), HashFunction.MD5, TreeHashMode.HEX_CONCAT);
+        assertFalse(truncated.proveValidityOfData(List.of(1, 6, 12)), "Una prova incompleta non dovrebbe essere valida.");
+        siblings.add(Digest.EMPTY);
+        siblings.add(Digest.EMPTY);
+        MerkleMultiProof extended = new MerkleMultiProof(proof.getRootHash(), proof.getHeight(), proof.getIndices(),
+                siblings.toArray(new Digest[0]), HashFunction.MD5, TreeHashMode.HEX_CONCAT);
+        assertFalse(extended.proveValidityOfData(List.of(1, 6, 12)),
+                "Una prova con digest in più non dovrebbe essere valida.");
+    }
+
+    @Test
+    void testEdgeCases() {
+        MerkleTree<Integer> tree = tree(11);
+        MerkleMultiProof one = tree.getMerkleMultiProof(new int[] { 10 });
+        assertEquals(tree.getMerkleProof(10).getLength(), one.getLength(),
+                "La prova di una foglia dovrebbe avere la lunghezza della prova singola.");
+        assertTrue(one.proveValidityOfData(List.of(10)), "La prova dovrebbe essere valida.");
+
+        int[] all = new int[11];
+        for (int i = 0; i < all.length; i++) all[i] = i;
+        MerkleMultiProof full = tree.getMerkleMultiProof(all);
+        assertEquals(2, full.getLength(), "Dovrebbero restare soltanto i digest dei sottoalberi di riempimento.");
+        assertTrue(full.proveValidityOfData(data(all)), "La prova dovrebbe essere valida.");
+
+        MerkleMultiProof single = tree(1).getMerkleMultiProof(new int[] { 0 });
+        assertEquals(0, single.getLength(), "La prova di un albero con una foglia dovrebbe essere vuota.");
+        assertTrue(single.proveValidityOfData(List.of(0)), "La prova dovrebbe essere valida.");
+    }
+
+    @Test
+    void testProofFromData() {
+        HashLinkedList<String> list = new HashLinkedList<>();
+        for (String s : new String[] { "A", "B", "C", "A", "D" }) list.addAtTail(s);
+        MerkleTree<String> tree = new MerkleTree<>(list, HashFunction.SHA_256, TreeHashMode.RAW_BYTES);
+        MerkleMultiProof proof = tree.getMerkleMultiProof(List.of("D", "A"));
+        assertArrayEquals(new int[] { 0, 4 }, proof.getIndices(), "Gli indici dei dati non sono corretti.");
+        assertTrue(proof.proveValidityOfData(List.of("A", "D"), DataEncoder.HASH_CODE), "La prova dovrebbe essere valida.");
+        assertEquals(TreeHashMode.RAW_BYTES, proof.getHashMode(), "La prova dovrebbe registrare la modalità dell'albero.");
+        assertThrows(IllegalArgumentException.class, () -> tree.getMerkleMultiProof(List.of("A", "E")),
+                "Dovrebbe essere lanciata un'eccezione per un dato non presente.");
+    }
+
+    @Test
+    void testInvalidArguments() {
+        MerkleTree<Integer> tree = tree(5);
+        assertThrows(IllegalArgumentException.class, () -> tree.getMerkleMultiProof(new int[0]),
+                "Dovrebbe essere lanciata un'eccezione per un insieme vuoto.");
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.getMerkleMultiProof(new int[] { 0, 5 }),
+                "Dovrebbe essere lanciata un'eccezione per un indice fuori dall'albero.");
+        assertThrows(IllegalArgumentException.class, () -> new MerkleMultiProof(Digest.EMPTY, 2, new int[] { 1, 1 },
+                new Digest[0], HashFunction.MD5, TreeHashMode.HEX_CONCAT),
+                "Dovrebbe essere lanciata un'eccezione per indici ripetuti.");
+        MerkleMultiProof proof = tree.getMerkleMultiProof(new int[] { 2 });
+        assertThrows(IllegalArgumentException.class, () -> proof.proveValidityOfData(null),
+                "Dovrebbe essere lanciata un'eccezione per una lista nulla.");
+    }
+}
@@ -6,7 +6,7 @@ package it.unicam.cs.asdl2425.mp1;
  * @author Luca Tesei, Marco Caputo (template), Lorenzo Pane lorenzo.pane@studenti.unicam.it (implementazione)
  */
 public class MerkleNode {
-    private final String hash; // Hash associato al nodo.
+    private final Digest hash; // Hash associato al nodo.
 
     private final MerkleNode left; // Figlio sinistro del nodo.
 
@@ -17,9 +17,22 @@ public class MerkleNode {
      * corrispondente all'hash di un dato.
      *
      * @param hash
-     *                 l'hash associato al nodo.
+     *                 l'hash associato al nodo, come stringa esadecimale.
+     * @throws IllegalArgumentException
+     *                                      se l'hash non è una stringa
+     *                                      esadecimale valida.
      */
     public MerkleNode(String hash) {
+        this(Digest.fromHex(hash), null, null);
+    }
+
+    /**
+     * Costruisce un nodo Merkle foglia a partire dal digest di un dato.
+     *
+     * @param hash
+     *                 il digest associato al nodo.
+     */
+    public MerkleNode(Digest hash) {
         this(hash, null, null);
     }
 
@@ -33,8 +46,28 @@ public class MerkleNode {
      *                  il figlio sinistro.
      * @param right
      *                  il figlio destro.
+     * @throws IllegalArgumentException
+     *                                      se l'hash non è una stringa
+     *                                      esadecimale valida.
      */
     public MerkleNode(String hash, MerkleNode left, MerkleNode right) {
+        this(Digest.fromHex(hash), left, right);
+    }
+
+    /**
+     * Costruisce un nodo Merkle con un digest e due figli, quindi,
+     * corrispondente all'hash di un branch.
+     *
+     * @param hash
+     *                  il digest associato al nodo.
+     * @param left
+     *                  il figlio sinistro.
+     * @param right
+     *                  il figlio destro.
+     */
+    public MerkleNode(Digest hash, MerkleNode left, MerkleNode right) {
+        if (hash == null)
+            throw new IllegalArgumentException("hash nullo");
         this.hash = hash;
         this.left = left;
         this.right = right;
@@ -43,9 +76,18 @@ public class MerkleNode {
     /**
      * Restituisce l'hash associato al nodo.
      *
-     * @return l'hash associato al nodo.
+     * @return l'hash associato al nodo come stringa esadecimale.
      */
     public String getHash() {
+        return hash.toHex();
+    }
+
+    /**
+     * Restituisce il digest associato al nodo.
+     *
+     * @return il digest associato al nodo.
+     */
+    public Digest getDigest() {
         return hash;
     }
 
@@ -80,7 +122,7 @@ public class MerkleNode {
 
     @Override
     public String toString() {
-        return hash;
+        return hash.toHex();
     }
 
     @Override
@@ -97,9 +139,7 @@ public class MerkleNode {
     @Override
     public int hashCode() {
         // TODO implementare
-		StringBuilder str = new StringBuilder();
-        str.append(this.hash).append(this.isLeaf());
-
-        return HashUtil.dataToHash(str.toString()).hashCode();
+		// il digest è già uniformemente distribuito, basta combinarlo con il tipo di nodo
+        return 31 * this.hash.hashCode() + Boolean.hashCode(this.isLeaf());
     }
 }
\ No newline at end of file
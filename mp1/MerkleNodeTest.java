@@ -28,15 +28,30 @@ import static org.junit.jupiter.api.Assertions.*;
  * <li>{@link #testNotEqualsWithNull()}: Verifica che un nodo non sia uguale a {@code null}.</li>
  * 
  * <li>{@link #testNotEqualsWithDifferentType()}: Verifica che un nodo non sia uguale a un oggetto di tipo diverso.</li>
+ * 
+ * <li>{@link #testDigestMatchesHex()}: Verifica che il digest del nodo corrisponda all'hash esadecimale
+ * fornito alla costruzione.</li>
+ * 
+ * <li>{@link #testInvalidHexHash()}: Verifica che venga lanciata un'eccezione per un hash che non è
+ * una stringa esadecimale valida.</li>
  * </ul>
  */
 class MerkleNodeTest {
 
+    private static final String HASH_123 = HashUtil.dataToHash("hash123");
+    private static final String LEFT_HASH = HashUtil.dataToHash("leftHash");
+    private static final String RIGHT_HASH = HashUtil.dataToHash("rightHash");
+    private static final String BRANCH_HASH = HashUtil.dataToHash("branchHash");
+    private static final String HASH_TO_STRING = HashUtil.dataToHash("hashToString");
+    private static final String HASH_EQUALS = HashUtil.dataToHash("hashEquals");
+    private static final String HASH_1 = HashUtil.dataToHash("hash1");
+    private static final String HASH_2 = HashUtil.dataToHash("hash2");
+
     @Test
     void testLeafNodeCreation() {
-        MerkleNode leaf = new MerkleNode("hash123");
+        MerkleNode leaf = new MerkleNode(HASH_123);
 
-        assertEquals("hash123", leaf.getHash(),
+        assertEquals(HASH_123, leaf.getHash(),
                 "L'hash del nodo foglia non è corretto.");
         assertNull(leaf.getLeft(),
                 "Un nodo foglia non dovrebbe avere un figlio sinistro.");
@@ -48,11 +63,11 @@ class MerkleNodeTest {
 
     @Test
     void testBranchNodeCreation() {
-        MerkleNode left = new MerkleNode("leftHash");
-        MerkleNode right = new MerkleNode("rightHash");
-        MerkleNode branch = new MerkleNode("branchHash", left, right);
+        MerkleNode left = new MerkleNode(LEFT_HASH);
+        MerkleNode right = new MerkleNode(RIGHT_HASH);
+        MerkleNode branch = new MerkleNode(BRANCH_HASH, left, right);
 
-        assertEquals("branchHash", branch.getHash(),
+        assertEquals(BRANCH_HASH, branch.getHash(),
                 "L'hash del nodo branch non è corretto.");
         assertEquals(left, branch.getLeft(),
                 "Il figlio sinistro del nodo branch non è corretto.");
@@ -64,16 +79,16 @@ class MerkleNodeTest {
 
     @Test
     void testToString() {
-        MerkleNode node = new MerkleNode("hashToString");
+        MerkleNode node = new MerkleNode(HASH_TO_STRING);
 
-        assertEquals("hashToString", node.toString(),
+        assertEquals(HASH_TO_STRING, node.toString(),
                 "Il metodo toString non restituisce l'hash corretto.");
     }
 
     @Test
     void testEqualsSameHash() {
-        MerkleNode node1 = new MerkleNode("hashEquals");
-        MerkleNode node2 = new MerkleNode("hashEquals");
+        MerkleNode node1 = new MerkleNode(HASH_EQUALS);
+        MerkleNode node2 = new MerkleNode(HASH_EQUALS);
 
         assertEquals(node1, node2,
                 "Due nodi con lo stesso hash dovrebbero essere uguali.");
@@ -81,8 +96,8 @@ class MerkleNodeTest {
 
     @Test
     void testEqualsDifferentHash() {
-        MerkleNode node1 = new MerkleNode("hash1");
-        MerkleNode node2 = new MerkleNode("hash2");
+        MerkleNode node1 = new MerkleNode(HASH_1);
+        MerkleNode node2 = new MerkleNode(HASH_2);
 
         assertNotEquals(node1, node2,
                 "Due nodi con hash diversi non dovrebbero essere uguali.");
@@ -90,8 +105,8 @@ class MerkleNodeTest {
 
     @Test
     void testHashCode() {
-        MerkleNode node1 = new MerkleNode("hash123");
-        MerkleNode node2 = new MerkleNode("hash123");
+        MerkleNode node1 = new MerkleNode(HASH_123);
+        MerkleNode node2 = new MerkleNode(HASH_123);
 
         assertEquals(node1.hashCode(), node2.hashCode(),
                 "Due nodi con lo stesso hash dovrebbero avere lo stesso hashCode.");
@@ -99,7 +114,7 @@ class MerkleNodeTest {
 
     @Test
     void testNotEqualsWithNull() {
-        MerkleNode node = new MerkleNode("hash123");
+        MerkleNode node = new MerkleNode(HASH_123);
 
         assertNotEquals(null, node,
                 "Un nodo non dovrebbe essere uguale a null.");
@@ -107,9 +122,25 @@ class MerkleNodeTest {
 
     @Test
     void testNotEqualsWithDifferentType() {
-        MerkleNode node = new MerkleNode("hash123");
+        MerkleNode node = new MerkleNode(HASH_123);
 
         assertNotEquals(node,
                 "Un oggetto di tipo diverso non dovrebbe essere uguale a un MerkleNode.");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testDigestMatchesHex() {
+        MerkleNode node = new MerkleNode(HASH_123);
+
+        assertEquals(Digest.fromHex(HASH_123), node.getDigest(),
+                "Il digest del nodo non corrisponde all'hash fornito.");
+        assertEquals(node, new MerkleNode(node.getDigest()),
+                "Due nodi costruiti con lo stesso digest dovrebbero essere uguali.");
+    }
+
+    @Test
+    void testInvalidHexHash() {
+        assertThrows(IllegalArgumentException.class, () -> new MerkleNode("hash123"),
+                "Dovrebbe lanciare IllegalArgumentException per un hash non esadecimale.");
+    }
+}
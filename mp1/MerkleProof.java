@@ -15,16 +15,39 @@ import java.util.*;
 public class MerkleProof {
 
     /**
-     * La prova di Merkle, rappresentata come una lista concatenata di oggetti
-     * MerkleProofHash.
+     * Buffer di appoggio per thread della verifica, che contiene la
+     * concatenazione dei digest da combinare seguita dal digest corrente.
      */
-    private final HashLinkedList<MerkleProofHash> proof;
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal
+            .withInitial(() -> new byte[5 * Digest.SHA256_LENGTH]);
+
+    /**
+     * I digest della prova, nell'ordine in cui vanno combinati, in un array
+     * allocato alla costruzione con la lunghezza massima della prova.
+     */
+    private final Digest[] hashes;
+
+    /**
+     * I flag dei digest della prova: il bit i è 1 se l'i-esimo digest va
+     * concatenato a sinistra.
+     */
+    private final long[] leftMask;
+
+    /**
+     * Il numero di digest aggiunti alla prova.
+     */
+    private int size;
+
+    /**
+     * La lunghezza in byte del più lungo dei digest aggiunti alla prova.
+     */
+    private int maxHashLength;
 
     /**
      * L'hash della radice dell'albero di Merkle per il quale la prova è stata
      * costruita.
      */
-    private final String rootHash;
+    private final Digest rootHash;
 
     /**
      * Lunghezza massima della prova, dato dal numero di hash che la compongono
@@ -33,6 +56,18 @@ public class MerkleProof {
      */
     private final int length;
 
+    /**
+     * La funzione di hash con cui è stato costruito l'albero di Merkle e con
+     * cui la prova deve essere verificata.
+     */
+    private final HashFunction hashFunction;
+
+    /**
+     * La modalità di calcolo dei nodi intermedi dell'albero di Merkle, con
+     * cui la prova deve essere verificata.
+     */
+    private final TreeHashMode hashMode;
+
     /**
      * Costruisce una nuova prova di Merkle per un dato albero di Merkle,
      * specificando la radice dell'albero e la lunghezza massima della prova. La
@@ -45,11 +80,67 @@ public class MerkleProof {
      *                     la lunghezza massima della prova.
      */
     public MerkleProof(String rootHash, int length) {
+        this(rootHash == null ? null : Digest.fromHex(rootHash), length);
+    }
+
+    /**
+     * Costruisce una nuova prova di Merkle per un dato albero di Merkle,
+     * specificando il digest della radice dell'albero e la lunghezza massima
+     * della prova.
+     *
+     * @param rootHash
+     *                     il digest della radice dell'albero di Merkle.
+     * @param length
+     *                     la lunghezza massima della prova.
+     */
+    public MerkleProof(Digest rootHash, int length) {
+        this(rootHash, length, HashFunction.MD5);
+    }
+
+    /**
+     * Costruisce una nuova prova di Merkle per un dato albero di Merkle,
+     * specificando il digest della radice dell'albero, la lunghezza massima
+     * della prova e la funzione di hash con cui l'albero è stato costruito.
+     *
+     * @param rootHash
+     *                         il digest della radice dell'albero di Merkle.
+     * @param length
+     *                         la lunghezza massima della prova.
+     * @param hashFunction
+     *                         la funzione di hash dell'albero di Merkle.
+     */
+    public MerkleProof(Digest rootHash, int length, HashFunction hashFunction) {
+        this(rootHash, length, hashFunction, TreeHashMode.HEX_CONCAT);
+    }
+
+    /**
+     * Costruisce una nuova prova di Merkle per un dato albero di Merkle,
+     * specificando il digest della radice dell'albero, la lunghezza massima
+     * della prova, la funzione di hash e la modalità di calcolo dei nodi
+     * intermedi con cui l'albero è stato costruito.
+     *
+     * @param rootHash
+     *                         il digest della radice dell'albero di Merkle.
+     * @param length
+     *                         la lunghezza massima della prova.
+     * @param hashFunction
+     *                         la funzione di hash dell'albero di Merkle.
+     * @param hashMode
+     *                         la modalità di calcolo dei nodi intermedi.
+     */
+    public MerkleProof(Digest rootHash, int length, HashFunction hashFunction, TreeHashMode hashMode) {
         if (rootHash == null)
             throw new IllegalArgumentException("rootHash nullo");
-        this.proof = new HashLinkedList<>();
+        if (hashFunction == null)
+            throw new IllegalArgumentException("funzione di hash nulla");
+        if (hashMode == null)
+            throw new IllegalArgumentException("modalità di calcolo nulla");
+        this.hashes = new Digest[Math.max(0, length)];
+        this.leftMask = new long[(hashes.length + 63) >>> 6];
         this.rootHash = rootHash;
         this.length = length;
+        this.hashFunction = hashFunction;
+        this.hashMode = hashMode;
     }
 
     /**
@@ -62,6 +153,35 @@ public class MerkleProof {
         return length;
     }
 
+    /**
+     * Restituisce il digest della radice dell'albero di Merkle per il quale la
+     * prova è stata costruita.
+     *
+     * @return il digest della radice.
+     */
+    public Digest getRootHash() {
+        return rootHash;
+    }
+
+    /**
+     * Restituisce la funzione di hash con cui la prova deve essere verificata.
+     *
+     * @return la funzione di hash della prova.
+     */
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    /**
+     * Restituisce la modalità di calcolo dei nodi intermedi con cui la prova
+     * deve essere verificata.
+     *
+     * @return la modalità di calcolo dei nodi intermedi.
+     */
+    public TreeHashMode getHashMode() {
+        return hashMode;
+    }
+
     /**
      * Aggiunge un hash alla prova di Merkle, specificando se esso dovrebbe
      * essere concatenato a sinistra o a destra durante la verifica della prova.
@@ -78,12 +198,70 @@ public class MerkleProof {
      */
     public boolean addHash(String hash, boolean isLeft) {
         // TODO implementare
-        if(this.length <= proof.getSize()) return false;        //spazio insufficiente
-        MerkleProofHash proofHash = new MerkleProofHash(hash, isLeft);
-        proof.addAtTail(proofHash);
+        if(this.length <= size) return false;        //spazio insufficiente
+        return addHash(Digest.fromHex(hash), isLeft);
+    }
+
+    /**
+     * Aggiunge un digest alla prova di Merkle, specificando se esso dovrebbe
+     * essere concatenato a sinistra o a destra durante la verifica della
+     * prova. Se la prova è già completa il digest non viene aggiunto e la
+     * funzione restituisce false.
+     *
+     * @param hash
+     *                   il digest da aggiungere alla prova.
+     * @param isLeft
+     *                   true se il digest dovrebbe essere concatenato a
+     *                   sinistra, false altrimenti.
+     * @return true se il digest è stato aggiunto con successo, false
+     *         altrimenti.
+     */
+    public boolean addHash(Digest hash, boolean isLeft) {
+        if(this.length <= size) return false;        //spazio insufficiente
+        if (hash == null)
+            throw new IllegalArgumentException("hash nullo");
+        hashes[size] = hash;
+        if (isLeft) leftMask[size >>> 6] |= 1L << size;
+        maxHashLength = Math.max(maxHashLength, hash.length());
+        size++;
         return true;
     }
 
+    /**
+     * Restituisce gli hash aggiunti alla prova, nell'ordine in cui vanno
+     * combinati durante la verifica.
+     *
+     * @return una lista non modificabile degli hash della prova.
+     */
+    public List<MerkleProofHash> getHashes() {
+        List<MerkleProofHash> steps = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            steps.add(new MerkleProofHash(hashes[i], isLeft(i)));
+        return Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * Restituisce il numero di hash aggiunti alla prova.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Restituisce l'i-esimo hash della prova, con 0 <= i < size().
+     */
+    Digest hashAt(int i) {
+        return hashes[i];
+    }
+
+    /**
+     * Restituisce true se l'i-esimo hash della prova va concatenato a
+     * sinistra, con 0 <= i < size().
+     */
+    boolean isLeft(int i) {
+        return (leftMask[i >>> 6] & (1L << i)) != 0;
+    }
+
     /**
      * Rappresenta un singolo step di una prova di Merkle per la validazione di
      * un dato elemento.
@@ -92,7 +270,7 @@ public class MerkleProof {
         /**
          * L'hash dell'oggetto.
          */
-        private final String hash;
+        private final Digest hash;
 
         /**
          * Indica se l'hash dell'oggetto dovrebbe essere concatenato a sinistra
@@ -101,6 +279,10 @@ public class MerkleProof {
         private final boolean isLeft;
 
         public MerkleProofHash(String hash, boolean isLeft) {
+            this(hash == null ? null : Digest.fromHex(hash), isLeft);
+        }
+
+        public MerkleProofHash(Digest hash, boolean isLeft) {
             if (hash == null)
                 throw new IllegalArgumentException("hash nullo");
 
@@ -114,6 +296,15 @@ public class MerkleProof {
          * @return l'hash dell'oggetto MerkleProofHash.
          */
         public String getHash() {
+            return hash.toHex();
+        }
+
+        /**
+         * Restituisce il digest dell'oggetto MerkleProofHash.
+         *
+         * @return il digest dell'oggetto MerkleProofHash.
+         */
+        public Digest getDigest() {
             return hash;
         }
 
@@ -135,7 +326,8 @@ public class MerkleProof {
             if (this == obj) return true; // Stesso riferimento
             if (obj == null || this.getClass() != obj.getClass()) return false; // Controllo tipo
 
-            return this.hash.equals(((MerkleProofHash) obj).hash) && this.isLeft == isLeft();
+            MerkleProofHash other = (MerkleProofHash) obj;
+            return this.isLeft == other.isLeft && this.hash.equals(other.hash);
             /*
              * Due MerkleProofHash sono uguali se hanno lo stesso hash e lo
              * stesso flag isLeft
@@ -149,7 +341,7 @@ public class MerkleProof {
 
         @Override
         public int hashCode() {
-            return this.toString().hashCode();
+            return 31 * hash.hashCode() + Boolean.hashCode(isLeft);
         }
     }
 
@@ -169,7 +361,51 @@ public class MerkleProof {
     public boolean proveValidityOfData(Object data) {
         // TODO implementare
         if(data == null) throw new IllegalArgumentException();
-        return proveValidityOfBranch(new MerkleNode(HashUtil.dataToHash(data)));
+        return verify(HashUtil.dataToDigest(data, hashFunction));
+    }
+
+    /**
+     * Valida un dato elemento per questa prova di Merkle, calcolandone l'hash
+     * sul contenuto codificato dall'encoder fornito, che deve coincidere con
+     * quello usato dall'albero di Merkle da cui la prova è stata generata.
+     *
+     * @param <T>
+     *                    il tipo del dato.
+     * @param data
+     *                    l'elemento da validare.
+     * @param encoder
+     *                    l'encoder del contenuto del dato.
+     * @return true se il dato è valido secondo la prova; false altrimenti.
+     * @throws IllegalArgumentException
+     *                                      se il dato o l'encoder sono null.
+     */
+    public <T> boolean proveValidityOfData(T data, DataEncoder<? super T> encoder) {
+        if (data == null || encoder == null) throw new IllegalArgumentException();
+        return verify(HashUtil.dataToDigest(data, encoder, hashFunction));
+    }
+
+    /**
+     * Valida un dato elemento per questa prova di Merkle, ottenendone l'hash
+     * dalla cache fornita, che deve usare la stessa funzione di hash della
+     * prova e lo stesso encoder dell'albero di Merkle da cui la prova è stata
+     * generata.
+     *
+     * @param <T>
+     *                  il tipo del dato.
+     * @param data
+     *                  l'elemento da validare.
+     * @param cache
+     *                  la cache dei digest dei dati.
+     * @return true se il dato è valido secondo la prova; false altrimenti.
+     * @throws IllegalArgumentException
+     *                                      se il dato o la cache sono null o
+     *                                      se la cache usa un'altra funzione
+     *                                      di hash.
+     */
+    public <T> boolean proveValidityOfData(T data, DigestCache<? super T> cache) {
+        if (data == null || cache == null || !hashFunction.equals(cache.getHashFunction()))
+            throw new IllegalArgumentException();
+        return verify(cache.digest(data));
     }
 
     /**
@@ -187,17 +423,64 @@ public class MerkleProof {
      */
     public boolean proveValidityOfBranch(MerkleNode branch) {
         if (branch == null) throw new IllegalArgumentException();
-        String hash = branch.getHash();
-        for (MerkleProofHash p : proof) {                           //concatena gli hash contenuti nel ramo
-            String combinedHash;
-            if (p.isLeft) {
-                combinedHash = p.hash + hash;
+        return verify(branch.getDigest());
+    }
+
+    /*
+     * Combina il digest dato con quelli della prova e lo confronta con la
+     * radice. Il digest corrente resta in byte nel buffer di appoggio del
+     * thread, dopo la concatenazione da combinare, e la funzione di hash vi
+     * scrive direttamente il risultato, per cui la verifica non alloca alcun
+     * oggetto né converte i digest in stringhe.
+     */
+    boolean verify(Digest digest) {
+        int width = Math.max(Math.max(maxHashLength, digest.length()), hashFunction.digestLength());
+        int current = 4 * width;                                    //posizione del digest corrente
+        byte[] buffer = scratch(5 * width);
+        int length = digest.writeTo(buffer, current);
+        boolean hex = hashMode == TreeHashMode.HEX_CONCAT;
+        for (int i = 0; i < size; i++) {                            //concatena gli hash contenuti nel ramo
+            Digest hash = hashes[i];
+            if (length == 0 && hash.isEmpty()) continue;            //due figli vuoti danno un padre vuoto
+            int n;
+            if (isLeft(i)) {
+                n = write(hash, buffer, 0, hex);
+                n += write(buffer, current, length, n, hex);
             } else {
-                combinedHash = hash + p.hash;
+                n = write(buffer, current, length, 0, hex);
+                n += write(hash, buffer, n, hex);
             }
-            hash = HashUtil.computeMD5(combinedHash.getBytes());    //calcola l'hash della stringa concatenata
+            long start = HashMetrics.start();
+            length = hashFunction.hash(buffer, 0, n, buffer, current);
+            HashMetrics.record(HashMetrics.Operation.NODE, n, start);
+        }
+        return rootHash.matches(buffer, current, length);          //verifica l'integrità del ramo confrontandone l'hash con quello atteso
+    }
+
+    private static int write(Digest hash, byte[] buffer, int offset, boolean hex) {
+        return hex ? hash.writeHex(buffer, offset) : hash.writeTo(buffer, offset);
+    }
+
+    /*
+     * Scrive una porzione del buffer di appoggio, in esadecimale o in byte, in
+     * un'altra posizione dello stesso buffer.
+     */
+    static int write(byte[] buffer, int from, int length, int offset, boolean hex) {
+        if (hex) return HashUtil.writeHex(buffer, from, length, buffer, offset);
+        System.arraycopy(buffer, from, buffer, offset, length);
+        return length;
+    }
+
+    /*
+     * Restituisce il buffer di appoggio del thread, di almeno size byte.
+     */
+    static byte[] scratch(int size) {
+        byte[] buffer = SCRATCH.get();
+        if (buffer.length < size) {
+            buffer = new byte[size];
+            SCRATCH.set(buffer);
         }
-        return hash.equals(this.rootHash);                          //verifica l'integrità del ramo confrontandone l'hash con quello atteso
+        return buffer;
     }
 
     // TODO inserire eventuali metodi privati per fini di implementazione
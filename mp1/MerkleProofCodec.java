@@ -0,0 +1,416 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Codifica binaria compatta e versionata di una {@link MerkleProof}. Una prova
+ * codificata è composta da:
+ *
+ * <ul>
+ * <li>un'intestazione di {@value #HEADER_LENGTH} byte: la versione del
+ * formato, l'identificativo della funzione di hash, l'identificativo della
+ * modalità di calcolo dei nodi intermedi (0 per
+ * {@link TreeHashMode#HEX_CONCAT} e 1 per {@link TreeHashMode#RAW_BYTES},
+ * indipendenti dall'ordine delle costanti; il bit più alto indica una radice
+ * vuota) e la lunghezza della prova come intero senza segno di 16 bit
+ * big-endian;</li>
+ * <li>il digest della radice, se non vuoto;</li>
+ * <li>la mappa dei digest vuoti e quella dei flag di concatenazione a
+ * sinistra, di un bit per passo ciascuna (il bit i è il bit i % 8 del byte
+ * i / 8);</li>
+ * <li>i byte dei digest non vuoti della prova, nell'ordine di verifica.</li>
+ * </ul>
+ *
+ * <p>
+ * Una prova MD5 di 20 passi occupa quindi 5 + 16 + 3 + 3 + 20 · 16 = 347
+ * byte. Con {@link #verify(ByteBuffer, Digest)} una prova può essere
+ * verificata direttamente dal buffer, senza costruire l'oggetto MerkleProof.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+public final class MerkleProofCodec {
+
+    /**
+     * La versione del formato prodotta e accettata dal codec.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * La lunghezza in byte dell'intestazione.
+     */
+    public static final int HEADER_LENGTH = 5;
+
+    /**
+     * La lunghezza massima di una prova codificabile.
+     */
+    public static final int MAX_LENGTH = 0xFFFF;
+
+    private static final int EMPTY_ROOT = 0x80; // Bit della radice vuota nel byte della modalità.
+
+    private static final HashFunction[] FUNCTIONS = { HashFunction.MD5, HashFunction.SHA_256,
+            HashFunction.MURMUR3_128 }; // Funzioni di hash per identificativo, a partire da 1.
+
+    private static final TreeHashMode[] MODES = { TreeHashMode.HEX_CONCAT,
+            TreeHashMode.RAW_BYTES }; // Modalità per identificativo, a partire da 0.
+
+    private MerkleProofCodec() {
+    }
+
+    /**
+     * Restituisce il numero di byte necessari a codificare la prova data.
+     *
+     * @param proof
+     *                  la prova da codificare.
+     * @return la lunghezza della prova codificata.
+     * @throws IllegalArgumentException
+     *                                      se la prova è null, incompleta o
+     *                                      non codificabile, o se contiene
+     *                                      digest non vuoti di lunghezza
+     *                                      diversa da quella della funzione
+     *                                      di hash.
+     */
+    public static int encodedLength(MerkleProof proof) {
+        int n = checkEncodable(proof);
+        int length = HEADER_LENGTH + proof.getRootHash().length() + 2 * bitmapLength(n);
+        for (int i = 0; i < n; i++)
+            length += proof.hashAt(i).length();
+        return length;
+    }
+
+    /**
+     * Codifica la prova data in un nuovo buffer, pronto per la lettura.
+     *
+     * @param proof
+     *                  la prova da codificare.
+     * @return il buffer contenente la prova codificata.
+     * @throws IllegalArgumentException
+     *                                      se la prova è null, incompleta o
+     *                                      non codificabile, o se contiene
+     *                                      digest non vuoti di lunghezza
+     *                                      diversa da quella della funzione
+     *                                      di hash.
+     */
+    public static ByteBuffer encode(MerkleProof proof) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedLength(proof));
+        encode(proof, buffer);
+        return buffer.flip();
+    }
+
+    /**
+     * Codifica la prova data nel buffer fornito, a partire dalla sua posizione
+     * corrente, avanzandola.
+     *
+     * @param proof
+     *                  la prova da codificare.
+     * @param dst
+     *                  il buffer di destinazione.
+     * @return il numero di byte scritti.
+     * @throws IllegalArgumentException
+     *                                      se la prova è null, incompleta o
+     *                                      non codificabile, se contiene
+     *                                      digest non vuoti di lunghezza
+     *                                      diversa da quella della funzione
+     *                                      di hash o se il buffer è null.
+     * @throws BufferOverflowException
+     *                                      se lo spazio nel buffer non è
+     *                                      sufficiente; in tal caso il buffer
+     *                                      non viene modificato.
+     */
+    public static int encode(MerkleProof proof, ByteBuffer dst) {
+        if (dst == null) throw new IllegalArgumentException("buffer nullo");
+        int total = encodedLength(proof);
+        if (dst.remaining() < total) throw new BufferOverflowException();
+        int n = proof.size();
+        Digest root = proof.getRootHash();
+        dst.put((byte) VERSION);
+        dst.put((byte) functionId(proof.getHashFunction()));
+        dst.put((byte) (modeId(proof.getHashMode()) | (root.isEmpty() ? EMPTY_ROOT : 0)));
+        dst.put((byte) (n >>> 8)).put((byte) n);
+        root.writeTo(dst);
+        for (int b = 0; b < bitmapLength(n); b++) {                 //mappa dei digest vuoti
+            int bits = 0;
+            for (int i = b * 8; i < Math.min(n, b * 8 + 8); i++)
+                if (proof.hashAt(i).isEmpty()) bits |= 1 << (i & 7);
+            dst.put((byte) bits);
+        }
+        for (int b = 0; b < bitmapLength(n); b++) {                 //mappa dei flag di concatenazione
+            int bits = 0;
+            for (int i = b * 8; i < Math.min(n, b * 8 + 8); i++)
+                if (proof.isLeft(i)) bits |= 1 << (i & 7);
+            dst.put((byte) bits);
+        }
+        for (int i = 0; i < n; i++)
+            proof.hashAt(i).writeTo(dst);
+        return total;
+    }
+
+    /**
+     * Decodifica una prova a partire dalla posizione corrente del buffer,
+     * avanzandola fino alla fine della prova.
+     *
+     * @param src
+     *                il buffer contenente la prova codificata.
+     * @return la prova decodificata.
+     * @throws IllegalArgumentException
+     *                                      se il buffer è null o se la
+     *                                      versione, la funzione di hash o la
+     *                                      modalità non sono valide; in tal
+     *                                      caso la posizione del buffer non
+     *                                      viene modificata.
+     * @throws BufferUnderflowException
+     *                                      se il buffer non contiene l'intera
+     *                                      prova; in tal caso la posizione del
+     *                                      buffer non viene modificata.
+     */
+    public static MerkleProof decode(ByteBuffer src) {
+        Header header = new Header(src);
+        MerkleProof proof = new MerkleProof(header.root(src), header.length, header.function, header.mode);
+        int next = header.digests;
+        for (int i = 0; i < header.length; i++) {
+            Digest hash = header.hashAt(src, i, next);
+            next += hash.length();
+            proof.addHash(hash, header.isLeft(src, i));
+        }
+        src.position(next);
+        return proof;
+    }
+
+    /**
+     * Verifica il digest di una foglia o di un branch con la prova codificata
+     * a partire dalla posizione corrente del buffer, senza costruire l'oggetto
+     * MerkleProof. Come in {@link MerkleProof#proveValidityOfBranch(MerkleNode)},
+     * i byte dei digest della prova sono letti dal buffer nel buffer di
+     * appoggio del thread, in cui la funzione di hash scrive direttamente il
+     * digest di ciascun passo, per cui la verifica non alloca alcun digest. La
+     * posizione del buffer viene avanzata fino alla fine della prova.
+     *
+     * @param src
+     *                   il buffer contenente la prova codificata.
+     * @param digest
+     *                   il digest da verificare.
+     * @return true se il digest è valido secondo la prova; false altrimenti.
+     * @throws IllegalArgumentException
+     *                                      se il buffer o il digest sono null
+     *                                      o se l'intestazione non è valida.
+     * @throws BufferUnderflowException
+     *                                      se il buffer non contiene l'intera
+     *                                      prova.
+     */
+    public static boolean verify(ByteBuffer src, Digest digest) {
+        if (digest == null) throw new IllegalArgumentException("digest nullo");
+        Header header = new Header(src);
+        int width = Math.max(digest.length(), header.function.digestLength());
+        int current = 4 * width;                                    //posizione del digest corrente
+        int sibling = 5 * width;                                    //posizione del fratello letto dal buffer
+        byte[] buffer = MerkleProof.scratch(6 * width);
+        int length = digest.writeTo(buffer, current);
+        boolean hex = header.mode == TreeHashMode.HEX_CONCAT;
+        int next = header.digests;
+        for (int i = 0; i < header.length; i++) {                   //concatena gli hash letti dal buffer
+            int size = header.isEmpty(src, i) ? 0 : header.function.digestLength();
+            src.get(next, buffer, sibling, size);
+            next += size;
+            if (length == 0 && size == 0) continue;                 //due figli vuoti danno un padre vuoto
+            int n;
+            if (header.isLeft(src, i)) {
+                n = MerkleProof.write(buffer, sibling, size, 0, hex);
+                n += MerkleProof.write(buffer, current, length, n, hex);
+            } else {
+                n = MerkleProof.write(buffer, current, length, 0, hex);
+                n += MerkleProof.write(buffer, sibling, size, n, hex);
+            }
+            long start = HashMetrics.start();
+            length = header.function.hash(buffer, 0, n, buffer, current);
+            HashMetrics.record(HashMetrics.Operation.NODE, n, start);
+        }
+        src.position(next);
+        return header.rootMatches(src, buffer, current, length);
+    }
+
+    /**
+     * Verifica un dato con la prova codificata a partire dalla posizione
+     * corrente del buffer, come {@link #verify(ByteBuffer, Digest)}, calcolando
+     * l'hash del dato con la funzione di hash della prova.
+     *
+     * @param src
+     *                 il buffer contenente la prova codificata.
+     * @param data
+     *                 il dato da verificare.
+     * @return true se il dato è valido secondo la prova; false altrimenti.
+     * @throws IllegalArgumentException
+     *                                      se il buffer o il dato sono null o
+     *                                      se l'intestazione non è valida.
+     * @throws BufferUnderflowException
+     *                                      se il buffer non contiene l'intera
+     *                                      prova.
+     */
+    public static boolean verifyData(ByteBuffer src, Object data) {
+        return verifyData(src, data, DataEncoder.HASH_CODE);
+    }
+
+    /**
+     * Verifica un dato con la prova codificata a partire dalla posizione
+     * corrente del buffer, come {@link #verify(ByteBuffer, Digest)}, calcolando
+     * l'hash del contenuto del dato codificato dall'encoder fornito con la
+     * funzione di hash della prova. L'encoder deve coincidere con quello usato
+     * dall'albero di Merkle da cui la prova è stata generata.
+     *
+     * @param <T>
+     *                    il tipo del dato.
+     * @param src
+     *                    il buffer contenente la prova codificata.
+     * @param data
+     *                    il dato da verificare.
+     * @param encoder
+     *                    l'encoder del contenuto del dato.
+     * @return true se il dato è valido secondo la prova; false altrimenti.
+     * @throws IllegalArgumentException
+     *                                      se il buffer, il dato o l'encoder
+     *                                      sono null o se l'intestazione non è
+     *                                      valida.
+     * @throws BufferUnderflowException
+     *                                      se il buffer non contiene l'intera
+     *                                      prova.
+     */
+    public static <T> boolean verifyData(ByteBuffer src, T data, DataEncoder<? super T> encoder) {
+        if (src == null || data == null || encoder == null) throw new IllegalArgumentException();
+        if (src.remaining() < HEADER_LENGTH) throw new BufferUnderflowException();
+        HashFunction function = function(src.get(src.position() + 1));
+        return verify(src, HashUtil.dataToDigest(data, encoder, function));
+    }
+
+    /*
+     * Controlla che la prova sia codificabile e ne restituisce la lunghezza.
+     */
+    private static int checkEncodable(MerkleProof proof) {
+        if (proof == null) throw new IllegalArgumentException("prova nulla");
+        if (proof.size() != proof.getLength())
+            throw new IllegalArgumentException("Prova incompleta: " + proof.size() + " di " + proof.getLength());
+        if (proof.size() > MAX_LENGTH)
+            throw new IllegalArgumentException("Prova troppo lunga: " + proof.size());
+        functionId(proof.getHashFunction());
+        modeId(proof.getHashMode());
+        int length = proof.getHashFunction().digestLength();
+        checkDigest(proof.getRootHash(), length);
+        for (int i = 0; i < proof.size(); i++)
+            checkDigest(proof.hashAt(i), length);
+        return proof.size();
+    }
+
+    /*
+     * Controlla che il digest sia vuoto o della lunghezza dei digest della
+     * funzione di hash, l'unica che la decodifica sa leggere.
+     */
+    private static void checkDigest(Digest digest, int length) {
+        if (!digest.isEmpty() && digest.length() != length)
+            throw new IllegalArgumentException("Digest di " + digest.length() + " byte invece di " + length);
+    }
+
+    private static int bitmapLength(int n) {
+        return (n + 7) >>> 3;
+    }
+
+    private static int functionId(HashFunction function) {
+        for (int i = 0; i < FUNCTIONS.length; i++)
+            if (FUNCTIONS[i] == function) return i + 1;
+        throw new IllegalArgumentException("Funzione di hash non codificabile: " + function.name());
+    }
+
+    private static HashFunction function(byte id) {
+        int i = (id & 0xFF) - 1;
+        if (i < 0 || i >= FUNCTIONS.length)
+            throw new IllegalArgumentException("Funzione di hash sconosciuta: " + (id & 0xFF));
+        return FUNCTIONS[i];
+    }
+
+    private static int modeId(TreeHashMode mode) {
+        for (int i = 0; i < MODES.length; i++)
+            if (MODES[i] == mode) return i;
+        throw new IllegalArgumentException("Modalità non codificabile: " + mode);
+    }
+
+    private static TreeHashMode mode(int id) {
+        if (id >= MODES.length)
+            throw new IllegalArgumentException("Modalità sconosciuta: " + id);
+        return MODES[id];
+    }
+
+    /**
+     * L'intestazione di una prova codificata, letta con posizioni assolute a
+     * partire dalla posizione corrente del buffer, che non viene modificata.
+     */
+    private static final class Header {
+
+        private final HashFunction function;
+
+        private final TreeHashMode mode;
+
+        private final int length; // Numero di passi della prova.
+
+        private final int rootIndex; // Posizione assoluta del digest della radice.
+
+        private final int rootLength; // Lunghezza del digest della radice, 0 se vuoto.
+
+        private final int emptyMap; // Posizione assoluta della mappa dei digest vuoti.
+
+        private final int leftMap; // Posizione assoluta della mappa dei flag di concatenazione.
+
+        private final int digests; // Posizione assoluta del primo digest della prova.
+
+        Header(ByteBuffer src) {
+            if (src == null) throw new IllegalArgumentException("buffer nullo");
+            int start = src.position();
+            if (src.remaining() < HEADER_LENGTH) throw new BufferUnderflowException();
+            int version = src.get(start) & 0xFF;
+            if (version != VERSION)
+                throw new IllegalArgumentException("Versione non supportata: " + version);
+            function = function(src.get(start + 1));
+            int flags = src.get(start + 2) & 0xFF;
+            mode = mode(flags & ~EMPTY_ROOT);
+            length = ((src.get(start + 3) & 0xFF) << 8) | (src.get(start + 4) & 0xFF);
+            rootIndex = start + HEADER_LENGTH;
+            rootLength = (flags & EMPTY_ROOT) != 0 ? 0 : function.digestLength();
+            emptyMap = rootIndex + rootLength;
+            leftMap = emptyMap + bitmapLength(length);
+            digests = leftMap + bitmapLength(length);
+            if (digests > src.limit()) throw new BufferUnderflowException();
+            int end = digests;
+            for (int i = 0; i < length; i++)
+                if (!isEmpty(src, i)) end += function.digestLength();
+            if (end > src.limit()) throw new BufferUnderflowException();
+        }
+
+        Digest root(ByteBuffer src) {
+            return Digest.of(src, rootIndex, rootLength);
+        }
+
+        /*
+         * Confronta il digest della radice con una porzione di un array di
+         * byte.
+         */
+        boolean rootMatches(ByteBuffer src, byte[] bytes, int offset, int length) {
+            if (length != rootLength) return false;
+            for (int i = 0; i < length; i++)
+                if (src.get(rootIndex + i) != bytes[offset + i]) return false;
+            return true;
+        }
+
+        boolean isEmpty(ByteBuffer src, int i) {
+            return (src.get(emptyMap + (i >>> 3)) & (1 << (i & 7))) != 0;
+        }
+
+        boolean isLeft(ByteBuffer src, int i) {
+            return (src.get(leftMap + (i >>> 3)) & (1 << (i & 7))) != 0;
+        }
+
+        /*
+         * Legge l'i-esimo digest della prova, che inizia alla posizione
+         * assoluta data se non è vuoto.
+         */
+        Digest hashAt(ByteBuffer src, int i, int index) {
+            return Digest.of(src, index, isEmpty(src, i) ? 0 : function.digestLength());
+        }
+    }
+}
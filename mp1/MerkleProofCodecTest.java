@@ -0,0 +1,197 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per la classe {@link MerkleProofCodec}. Di seguito, l'elenco
+ * dei test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testRoundTrip()}: Verifica che la decodifica di una prova
+ * codificata restituisca una prova equivalente, anche con digest vuoti e con
+ * funzioni e modalità diverse.</li>
+ *
+ * <li>{@link #testEncodedLength()}: Verifica la lunghezza della codifica di
+ * una prova MD5 di 20 passi.</li>
+ *
+ * <li>{@link #testVerifyFromBuffer()}: Verifica che una prova possa essere
+ * verificata direttamente dal buffer, anche diretto o little-endian e con
+ * ciascuna modalità, e che la
+ * posizione del buffer venga avanzata.</li>
+ *
+ * <li>{@link #testVerifyEncodedData()}: Verifica dal buffer dati il cui hash
+ * è calcolato sul contenuto codificato da un encoder.</li>
+ *
+ * <li>{@link #testModeIds()}: Verifica gli identificativi stabili delle
+ * modalità nell'intestazione.</li>
+ *
+ * <li>{@link #testInvalidInput()}: Verifica che vengano lanciate eccezioni per
+ * prove non codificabili, anche per digest di lunghezza diversa da quella
+ * della funzione di hash, e per buffer non validi o troncati, anche con una
+ * modalità sconosciuta.</li>
+ * </ul>
+ */
+class MerkleProofCodecTest {
+
+    private static <T> MerkleTree<T> tree(HashLinkedList<T> list, int size, HashFunction function, TreeHashMode mode,
+            IntFunction<T> data) {
+        for (int i = 0; i < size; i++)
+            list.addAtTail(data.apply(i));
+        return new MerkleTree<>(list, function, mode);
+    }
+
+    private static void assertSameProof(MerkleProof expected, MerkleProof actual) {
+        assertEquals(expected.getRootHash(), actual.getRootHash(), "La radice della prova non è corretta.");
+        assertEquals(expected.getLength(), actual.getLength(), "La lunghezza della prova non è corretta.");
+        assertSame(expected.getHashFunction(), actual.getHashFunction(), "La funzione di hash non è corretta.");
+        assertEquals(expected.getHashMode(), actual.getHashMode(), "La modalità non è corretta.");
+        assertEquals(expected.getHashes(), actual.getHashes(), "Gli hash della prova non sono corretti.");
+    }
+
+    @Test
+    void testRoundTrip() {
+        MerkleTree<Integer> tree = tree(new HashLinkedList<>(), 11, HashFunction.MD5, TreeHashMode.HEX_CONCAT, i -> i);
+        for (int i = 0; i < 11; i++) {
+            MerkleProof proof = tree.getMerkleProof(i);
+            ByteBuffer buffer = MerkleProofCodec.encode(proof);
+            MerkleProof decoded = MerkleProofCodec.decode(buffer);
+            assertSameProof(proof, decoded);
+            assertFalse(buffer.hasRemaining(), "La decodifica dovrebbe consumare l'intera prova.");
+            assertTrue(decoded.proveValidityOfData(i), "La prova decodificata dovrebbe essere valida.");
+        }
+        assertTrue(tree.getMerkleProof(10).getHashes().stream().anyMatch(h -> h.getDigest().isEmpty()),
+                "La prova dell'ultimo dato dovrebbe contenere digest vuoti.");
+
+        HashLinkedList<String> strings = new HashLinkedList<>(HashFunction.SHA_256);
+        MerkleTree<String> sha = tree(strings, 6, HashFunction.SHA_256, TreeHashMode.RAW_BYTES, i -> "dato" + i);
+        MerkleProof proof = sha.getMerkleProof("dato3");
+        assertSameProof(proof, MerkleProofCodec.decode(MerkleProofCodec.encode(proof)));
+
+        MerkleProof empty = new MerkleProof(Digest.EMPTY, 0, HashFunction.MURMUR3_128);
+        ByteBuffer buffer = MerkleProofCodec.encode(empty);
+        assertEquals(MerkleProofCodec.HEADER_LENGTH, buffer.remaining(), "Una prova vuota dovrebbe contenere solo l'intestazione.");
+        assertSameProof(empty, MerkleProofCodec.decode(buffer));
+    }
+
+    @Test
+    void testEncodedLength() {
+        MerkleProof proof = new MerkleProof(HashUtil.dataToDigest(0), 20);
+        for (int i = 0; i < 20; i++)
+            proof.addHash(HashUtil.dataToDigest(i + 1), i % 2 == 0);
+        assertEquals(347, MerkleProofCodec.encodedLength(proof), "La lunghezza della codifica non è corretta.");
+        assertEquals(347, MerkleProofCodec.encode(proof).remaining(), "La lunghezza della codifica non è corretta.");
+    }
+
+    @Test
+    void testVerifyFromBuffer() {
+        MerkleTree<Integer> tree = tree(new HashLinkedList<>(), 13, HashFunction.MD5, TreeHashMode.HEX_CONCAT, i -> i);
+        MerkleProof first = tree.getMerkleProof(2);
+        MerkleProof second = tree.getMerkleProof(12);
+        int length = MerkleProofCodec.encodedLength(first) + MerkleProofCodec.encodedLength(second);
+        for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(length + 3),
+                ByteBuffer.allocateDirect(length + 3).order(ByteOrder.LITTLE_ENDIAN) }) {
+            buffer.position(3);
+            MerkleProofCodec.encode(first, buffer);
+            MerkleProofCodec.encode(second, buffer);
+            buffer.flip().position(3);
+
+            ByteBuffer copy = buffer.duplicate();
+            assertTrue(MerkleProofCodec.verifyData(buffer, 2), "Il dato dovrebbe essere valido.");
+            assertTrue(MerkleProofCodec.verify(buffer, HashUtil.dataToDigest(12)), "Il dato dovrebbe essere valido.");
+            assertFalse(buffer.hasRemaining(), "La verifica dovrebbe consumare le prove.");
+            assertFalse(MerkleProofCodec.verifyData(copy, 3), "Un dato diverso non dovrebbe essere valido.");
+            assertEquals(3 + MerkleProofCodec.encodedLength(first), copy.position(),
+                    "La verifica dovrebbe avanzare la posizione fino alla fine della prova.");
+        }
+
+        HashLinkedList<String> strings = new HashLinkedList<>(HashFunction.SHA_256);
+        MerkleTree<String> sha = tree(strings, 7, HashFunction.SHA_256, TreeHashMode.RAW_BYTES, i -> "dato" + i);
+        for (int i = 0; i < 7; i++) {
+            ByteBuffer encoded = MerkleProofCodec.encode(sha.getMerkleProof("dato" + i));
+            ByteBuffer direct = ByteBuffer.allocateDirect(encoded.remaining()).put(encoded.duplicate()).flip();
+            assertTrue(MerkleProofCodec.verifyData(direct, "dato" + i), "Il dato dovrebbe essere valido.");
+            assertFalse(MerkleProofCodec.verifyData(encoded, "dato" + (i + 1)), "Un dato diverso non dovrebbe essere valido.");
+        }
+    }
+
+    @Test
+    void testVerifyEncodedData() {
+        HashLinkedList<String> strings = new HashLinkedList<>(HashFunction.SHA_256, DataEncoder.STRING);
+        MerkleTree<String> tree = tree(strings, 5, HashFunction.SHA_256, TreeHashMode.RAW_BYTES,
+                i -> i == 0 ? "Aa" : "dato" + i);
+        ByteBuffer encoded = MerkleProofCodec.encode(tree.getMerkleProof("Aa"));
+        assertTrue(MerkleProofCodec.verifyData(encoded.duplicate(), "Aa", DataEncoder.STRING),
+                "Il dato dovrebbe essere valido.");
+        assertFalse(MerkleProofCodec.verifyData(encoded.duplicate(), "BB", DataEncoder.STRING),
+                "Un dato con lo stesso hashCode non dovrebbe essere valido.");
+        assertFalse(MerkleProofCodec.verifyData(encoded.duplicate(), "Aa"),
+                "Senza l'encoder dell'albero il dato non dovrebbe essere valido.");
+        assertThrows(IllegalArgumentException.class, () -> MerkleProofCodec.verifyData(encoded, "Aa", null),
+                "Dovrebbe essere lanciata un'eccezione per un encoder nullo.");
+    }
+
+    @Test
+    void testModeIds() {
+        MerkleProof hex = new MerkleProof(HashUtil.dataToDigest(0), 0, HashFunction.MD5, TreeHashMode.HEX_CONCAT);
+        MerkleProof raw = new MerkleProof(HashUtil.dataToDigest(0), 0, HashFunction.MD5, TreeHashMode.RAW_BYTES);
+        MerkleProof empty = new MerkleProof(Digest.EMPTY, 0, HashFunction.MD5, TreeHashMode.RAW_BYTES);
+        assertEquals(0, MerkleProofCodec.encode(hex).get(2), "L'identificativo della modalità non è corretto.");
+        assertEquals(1, MerkleProofCodec.encode(raw).get(2), "L'identificativo della modalità non è corretto.");
+        assertEquals((byte) 0x81, MerkleProofCodec.encode(empty).get(2),
+                "L'identificativo della modalità di una radice vuota non è corretto.");
+        assertEquals(TreeHashMode.RAW_BYTES, MerkleProofCodec.decode(MerkleProofCodec.encode(empty)).getHashMode(),
+                "La modalità decodificata non è corretta.");
+    }
+
+    @Test
+    void testInvalidInput() {
+        MerkleProof incomplete = new MerkleProof(Digest.EMPTY, 2);
+        incomplete.addHash(Digest.EMPTY, true);
+        assertThrows(IllegalArgumentException.class, () -> MerkleProofCodec.encode(incomplete),
+                "Dovrebbe essere lanciata un'eccezione per una prova incompleta.");
+        assertThrows(IllegalArgumentException.class, () -> MerkleProofCodec.encode(null),
+                "Dovrebbe essere lanciata un'eccezione per una prova nulla.");
+        Digest sha = HashUtil.dataToDigest(1, HashFunction.SHA_256);
+        MerkleProof wideRoot = new MerkleProof(sha, 0);
+        assertThrows(IllegalArgumentException.class, () -> MerkleProofCodec.encode(wideRoot),
+                "Dovrebbe essere lanciata un'eccezione per una radice di lunghezza diversa dalla funzione.");
+        MerkleProof wideHash = new MerkleProof(HashUtil.dataToDigest(1), 1);
+        wideHash.addHash(sha, false);
+        assertThrows(IllegalArgumentException.class, () -> MerkleProofCodec.encodedLength(wideHash),
+                "Dovrebbe essere lanciata un'eccezione per un digest di lunghezza diversa dalla funzione.");
+
+        MerkleTree<Integer> tree = tree(new HashLinkedList<>(), 8, HashFunction.MD5, TreeHashMode.HEX_CONCAT, i -> i);
+        MerkleProof proof = tree.getMerkleProof(5);
+        ByteBuffer small = ByteBuffer.allocate(MerkleProofCodec.encodedLength(proof) - 1);
+        assertThrows(BufferOverflowException.class, () -> MerkleProofCodec.encode(proof, small),
+                "Dovrebbe essere lanciata un'eccezione per un buffer troppo piccolo.");
+        assertEquals(0, small.position(), "Il buffer non dovrebbe essere modificato.");
+
+        ByteBuffer encoded = MerkleProofCodec.encode(proof);
+        ByteBuffer truncated = encoded.duplicate().limit(encoded.limit() - 1);
+        assertThrows(BufferUnderflowException.class, () -> MerkleProofCodec.decode(truncated),
+                "Dovrebbe essere lanciata un'eccezione per una prova troncata.");
+        assertEquals(0, truncated.position(), "La posizione del buffer non dovrebbe essere modificata.");
+
+        ByteBuffer version = MerkleProofCodec.encode(proof).put(0, (byte) 2);
+        assertThrows(IllegalArgumentException.class, () -> MerkleProofCodec.decode(version),
+                "Dovrebbe essere lanciata un'eccezione per una versione non supportata.");
+        for (byte flags : new byte[] { 2, (byte) 0x82, 0x7F }) {
+            ByteBuffer mode = MerkleProofCodec.encode(proof).put(2, flags);
+            assertThrows(IllegalArgumentException.class, () -> MerkleProofCodec.decode(mode),
+                    "Dovrebbe essere lanciata un'eccezione per una modalità sconosciuta.");
+            assertEquals(0, mode.position(), "La posizione del buffer non dovrebbe essere modificata.");
+        }
+        ByteBuffer function = MerkleProofCodec.encode(proof).put(1, (byte) 9);
+        assertThrows(IllegalArgumentException.class, () -> MerkleProofCodec.verify(function, Digest.EMPTY),
+                "Dovrebbe essere lanciata un'eccezione per una funzione di hash sconosciuta.");
+    }
+}
@@ -3,8 +3,8 @@ package it.unicam.cs.asdl2425.mp1;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.lang.reflect.Field;
 import java.util.Iterator;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -31,6 +31,13 @@ import static org.junit.jupiter.api.Assertions.*;
  * 
  * <li>{@link #testVerifyProofOnData3()}: Verifica che un dato non valido venga correttamente respinto
  * dalla prova di Merkle.</li>
+ * 
+ * <li>{@link #testGetHashes()}: Verifica che gli hash e i flag restituiti corrispondano a quelli
+ * aggiunti, anche oltre i primi 64 passi.</li>
+ * 
+ * <li>{@link #testVerifyAllModes()}: Verifica che la verifica coincida con la
+ * combinazione dei digest per ogni funzione di hash e modalità, anche con
+ * digest vuoti e con digest più lunghi di quelli della funzione.</li>
  * </ul>
  */
 public class MerkleProofTest {
@@ -65,24 +72,14 @@ public class MerkleProofTest {
 
     @Test
     void testBuildProof3() {
-        try {
-            MerkleProof proof =  new MerkleProof(rootHash1, 2);
-            proof.addHash(HashUtil.dataToHash("Alice paga Bob"), true);
-            proof.addHash(HashUtil.computeMD5((HashUtil.dataToHash("Charlie paga Diana")+HashUtil.dataToHash("Diana paga Alice")).getBytes()), false);
-            Class<?> clazz = proof.getClass();
-            Field privateField = clazz.getDeclaredField("proof");
-            privateField.setAccessible(true);
-
-            HashLinkedList<MerkleProof.MerkleProofHash> list = (HashLinkedList<MerkleProof.MerkleProofHash>) privateField.get(proof);
-
-            Iterator<MerkleProof.MerkleProofHash> itr = list.iterator();
-            assertTrue(itr.hasNext());
-            MerkleProof.MerkleProofHash next = itr.next();
-            assertEquals(next.getHash(), HashUtil.dataToHash("Alice paga Bob"), "L'hash dovrebbe essere inserito correttamente");
-            assertTrue(next.isLeft(), "L'hash dovrebbe essere inserito a sinistra");
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        MerkleProof proof =  new MerkleProof(rootHash1, 2);
+        proof.addHash(HashUtil.dataToHash("Alice paga Bob"), true);
+        proof.addHash(HashUtil.computeMD5((HashUtil.dataToHash("Charlie paga Diana")+HashUtil.dataToHash("Diana paga Alice")).getBytes()), false);
+        Iterator<MerkleProof.MerkleProofHash> itr = proof.getHashes().iterator();
+        assertTrue(itr.hasNext());
+        MerkleProof.MerkleProofHash next = itr.next();
+        assertEquals(next.getHash(), HashUtil.dataToHash("Alice paga Bob"), "L'hash dovrebbe essere inserito correttamente");
+        assertTrue(next.isLeft(), "L'hash dovrebbe essere inserito a sinistra");
     }
 
     @Test
@@ -110,4 +107,44 @@ public class MerkleProofTest {
         assertFalse(proof.proveValidityOfData("Dato non valido"), "La prova di validità del dato non dovrebbe andare a buon fine");
     }
 
+    @Test
+    void testGetHashes() {
+        MerkleProof proof = new MerkleProof(Digest.EMPTY, 70);
+        for (int i = 0; i < 70; i++)
+            assertTrue(proof.addHash(HashUtil.dataToDigest(i), i % 3 == 0), "L'hash dovrebbe essere inserito correttamente");
+        assertFalse(proof.addHash(HashUtil.dataToDigest(70), true), "L'hash non dovrebbe essere inserito");
+        List<MerkleProof.MerkleProofHash> hashes = proof.getHashes();
+        assertEquals(70, hashes.size(), "Il numero di hash non è corretto.");
+        for (int i = 0; i < 70; i++)
+            assertEquals(new MerkleProof.MerkleProofHash(HashUtil.dataToDigest(i), i % 3 == 0), hashes.get(i),
+                    "L'hash in posizione " + i + " non è corretto.");
+        assertThrows(UnsupportedOperationException.class, () -> hashes.add(hashes.get(0)),
+                "La lista degli hash non dovrebbe essere modificabile.");
+    }
+
+    @Test
+    void testVerifyAllModes() {
+        for (HashFunction function : new HashFunction[] { HashFunction.MD5, HashFunction.SHA_256, HashFunction.MURMUR3_128 }) {
+            for (TreeHashMode mode : TreeHashMode.values()) {
+                HashLinkedList<Integer> list = new HashLinkedList<>(function);
+                for (int i = 0; i < 11; i++)
+                    list.addAtTail(i);
+                MerkleTree<Integer> tree = new MerkleTree<>(list, function, mode);
+                for (int i = 0; i < 11; i++) {
+                    MerkleProof proof = tree.getMerkleProof(i);
+                    assertTrue(proof.proveValidityOfData(i), "Il dato dovrebbe essere valido.");
+                    assertFalse(proof.proveValidityOfData(i + 1), "Un dato diverso non dovrebbe essere valido.");
+                }
+            }
+        }
+
+        Digest leaf = HashUtil.dataToDigest("A");
+        Digest wide = Digest.of(new byte[64]);
+        Digest root = HashUtil.combine(Digest.EMPTY, HashUtil.combine(leaf, wide));
+        MerkleProof proof = new MerkleProof(root, 2);
+        proof.addHash(wide, false);
+        proof.addHash(Digest.EMPTY, true);
+        assertTrue(proof.proveValidityOfData("A"), "Il dato dovrebbe essere valido anche con digest più lunghi.");
+        assertFalse(proof.proveValidityOfData("B"), "Un dato diverso non dovrebbe essere valido.");
+    }
 }
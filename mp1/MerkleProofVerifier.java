@@ -0,0 +1,433 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Verifica di lotti di prove di Merkle di uno stesso albero. A differenza
+ * della verifica indipendente di ciascuna prova, il verificatore memorizza,
+ * per la durata di un lotto, i digest dei nodi già verificati e dei loro
+ * fratelli, identificati dalla loro posizione nell'albero (profondità e
+ * offset, ricavati dai flag di concatenazione della prova). Quando una prova
+ * raggiunge un nodo già verificato, la verifica si riduce al confronto del
+ * digest calcolato e dei fratelli restanti con quelli memorizzati, senza
+ * ulteriori calcoli di hash: per prove di foglie vicine la parte alta del
+ * cammino viene così calcolata una sola volta.
+ *
+ * <p>
+ * L'esito di ciascuna prova coincide con quello di
+ * {@link MerkleProof#proveValidityOfData(Object, DataEncoder)}, con lo stesso
+ * encoder, rispetto alla radice del verificatore, assumendo la resistenza
+ * alle collisioni della funzione di hash. Le prove costruite per un'altra radice, funzione di hash o modalità
+ * non sono valide. Il verificatore non ha stato proprio ed è thread-safe.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+public class MerkleProofVerifier {
+
+    /**
+     * Numero minimo di prove verificate da un singolo task nella verifica in
+     * parallelo.
+     */
+    public static final int VERIFY_THRESHOLD = 256;
+
+    /**
+     * La lunghezza massima delle prove i cui nodi vengono memorizzati: le
+     * posizioni dei nodi sono codificate come indici di heap in un long.
+     * Prove più lunghe sono verificate in modo indipendente.
+     */
+    private static final int MAX_CACHED_LENGTH = 62;
+
+    /**
+     * La lunghezza massima della tabella dei nodi verificati di un lotto.
+     */
+    private static final int MAX_TABLE_LENGTH = 1 << 22;
+
+    /**
+     * Il numero massimo di posizioni esaminate per cercare o memorizzare un
+     * nodo verificato.
+     */
+    private static final int MAX_PROBES = 32;
+
+    /**
+     * Il digest della radice dell'albero di Merkle.
+     */
+    private final Digest rootHash;
+
+    /**
+     * La funzione di hash con cui è stato costruito l'albero di Merkle.
+     */
+    private final HashFunction hashFunction;
+
+    /**
+     * La modalità di calcolo dei nodi intermedi dell'albero di Merkle.
+     */
+    private final TreeHashMode hashMode;
+
+    /**
+     * Costruisce un verificatore per le prove di un albero di Merkle costruito
+     * con MD5 e la modalità {@link TreeHashMode#HEX_CONCAT}.
+     *
+     * @param rootHash
+     *                     il digest della radice dell'albero di Merkle.
+     * @throws IllegalArgumentException
+     *                                      se la radice è null.
+     */
+    public MerkleProofVerifier(Digest rootHash) {
+        this(rootHash, HashFunction.MD5, TreeHashMode.HEX_CONCAT);
+    }
+
+    /**
+     * Costruisce un verificatore per le prove di un albero di Merkle.
+     *
+     * @param rootHash
+     *                         il digest della radice dell'albero di Merkle.
+     * @param hashFunction
+     *                         la funzione di hash dell'albero di Merkle.
+     * @param hashMode
+     *                         la modalità di calcolo dei nodi intermedi.
+     * @throws IllegalArgumentException
+     *                                      se uno degli argomenti è null.
+     */
+    public MerkleProofVerifier(Digest rootHash, HashFunction hashFunction, TreeHashMode hashMode) {
+        if (rootHash == null)
+            throw new IllegalArgumentException("rootHash nullo");
+        if (hashFunction == null)
+            throw new IllegalArgumentException("funzione di hash nulla");
+        if (hashMode == null)
+            throw new IllegalArgumentException("modalità di calcolo nulla");
+        this.rootHash = rootHash;
+        this.hashFunction = hashFunction;
+        this.hashMode = hashMode;
+    }
+
+    /**
+     * Restituisce il digest della radice rispetto alla quale le prove vengono
+     * verificate.
+     *
+     * @return il digest della radice.
+     */
+    public Digest getRootHash() {
+        return rootHash;
+    }
+
+    /**
+     * Verifica un lotto di dati con le rispettive prove, in parallelo sul pool
+     * comune.
+     *
+     * @param data
+     *                   i dati da verificare.
+     * @param proofs
+     *                   le prove dei dati, nello stesso ordine.
+     * @return l'insieme delle posizioni dei dati validi secondo la propria
+     *         prova.
+     * @throws IllegalArgumentException
+     *                                      se una delle liste, uno dei dati o
+     *                                      una delle prove sono null o se le
+     *                                      liste hanno lunghezze diverse.
+     */
+    public BitSet verify(List<?> data, List<? extends MerkleProof> proofs) {
+        return verify(data, proofs, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Verifica un lotto di dati con le rispettive prove, in parallelo sul pool
+     * di ForkJoin fornito. Il lotto viene suddiviso in blocchi di almeno
+     * {@value #VERIFY_THRESHOLD} prove, ciascuno verificato da un task; i
+     * nodi verificati sono condivisi tra tutti i task del lotto. Lotti più
+     * piccoli sono verificati direttamente dal thread chiamante.
+     *
+     * @param data
+     *                   i dati da verificare.
+     * @param proofs
+     *                   le prove dei dati, nello stesso ordine.
+     * @param pool
+     *                   il pool su cui eseguire la verifica.
+     * @return l'insieme delle posizioni dei dati validi secondo la propria
+     *         prova.
+     * @throws IllegalArgumentException
+     *                                      se una delle liste, uno dei dati,
+     *                                      una delle prove o il pool sono null
+     *                                      o se le liste hanno lunghezze
+     *                                      diverse.
+     */
+    public BitSet verify(List<?> data, List<? extends MerkleProof> proofs, ForkJoinPool pool) {
+        return verify(data, DataEncoder.HASH_CODE, proofs, pool);
+    }
+
+    /**
+     * Verifica un lotto di dati con le rispettive prove, in parallelo sul pool
+     * comune, calcolando l'hash di ciascun dato sul contenuto codificato
+     * dall'encoder fornito, che deve coincidere con quello usato dall'albero
+     * di Merkle da cui le prove sono state generate.
+     *
+     * @param <T>
+     *                    il tipo dei dati.
+     * @param data
+     *                    i dati da verificare.
+     * @param encoder
+     *                    l'encoder del contenuto dei dati.
+     * @param proofs
+     *                    le prove dei dati, nello stesso ordine.
+     * @return l'insieme delle posizioni dei dati validi secondo la propria
+     *         prova.
+     * @throws IllegalArgumentException
+     *                                      se una delle liste, uno dei dati,
+     *                                      una delle prove o l'encoder sono
+     *                                      null o se le liste hanno lunghezze
+     *                                      diverse.
+     */
+    public <T> BitSet verify(List<? extends T> data, DataEncoder<? super T> encoder,
+            List<? extends MerkleProof> proofs) {
+        return verify(data, encoder, proofs, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Verifica un lotto di dati con le rispettive prove, in parallelo sul pool
+     * di ForkJoin fornito, come {@link #verify(List, List, ForkJoinPool)},
+     * calcolando l'hash di ciascun dato con l'encoder fornito.
+     *
+     * @param <T>
+     *                    il tipo dei dati.
+     * @param data
+     *                    i dati da verificare.
+     * @param encoder
+     *                    l'encoder del contenuto dei dati.
+     * @param proofs
+     *                    le prove dei dati, nello stesso ordine.
+     * @param pool
+     *                    il pool su cui eseguire la verifica.
+     * @return l'insieme delle posizioni dei dati validi secondo la propria
+     *         prova.
+     * @throws IllegalArgumentException
+     *                                      se una delle liste, uno dei dati,
+     *                                      una delle prove, l'encoder o il
+     *                                      pool sono null o se le liste hanno
+     *                                      lunghezze diverse.
+     */
+    public <T> BitSet verify(List<? extends T> data, DataEncoder<? super T> encoder,
+            List<? extends MerkleProof> proofs, ForkJoinPool pool) {
+        if (encoder == null) throw new IllegalArgumentException("encoder nullo");
+        return verifyBatch(data, encoder, proofs, pool);
+    }
+
+    /**
+     * Verifica un lotto di digest di foglie o di branch con le rispettive
+     * prove, come {@link #verify(List, List, ForkJoinPool)}.
+     *
+     * @param digests
+     *                    i digest da verificare.
+     * @param proofs
+     *                    le prove dei digest, nello stesso ordine.
+     * @param pool
+     *                    il pool su cui eseguire la verifica.
+     * @return l'insieme delle posizioni dei digest validi secondo la propria
+     *         prova.
+     * @throws IllegalArgumentException
+     *                                      se una delle liste, uno dei
+     *                                      digest, una delle prove o il pool
+     *                                      sono null o se le liste hanno
+     *                                      lunghezze diverse.
+     */
+    public BitSet verifyDigests(List<Digest> digests, List<? extends MerkleProof> proofs, ForkJoinPool pool) {
+        return verifyBatch(digests, null, proofs, pool);
+    }
+
+    /*
+     * Verifica un lotto di dati codificati dall'encoder dato, o di digest se
+     * l'encoder è null.
+     */
+    private <T> BitSet verifyBatch(List<? extends T> items, DataEncoder<? super T> encoder,
+            List<? extends MerkleProof> proofs, ForkJoinPool pool) {
+        if (items == null || proofs == null || pool == null) throw new IllegalArgumentException();
+        if (items.size() != proofs.size())
+            throw new IllegalArgumentException("Numero di dati e di prove diverso");
+        List<? extends T> data = items instanceof RandomAccess ? items : new ArrayList<>(items);
+        List<? extends MerkleProof> batch = proofs instanceof RandomAccess ? proofs : new ArrayList<>(proofs);
+        long entries = 0;                                           //nodi e fratelli memorizzabili
+        for (MerkleProof proof : batch)
+            if (proof != null && proof.size() <= MAX_CACHED_LENGTH) entries += 2L * proof.size();
+        boolean[] valid = new boolean[data.size()];
+        VerifyTask<T> task = new VerifyTask<>(data, encoder, batch, new VerifiedNodes(entries), valid, 0,
+                valid.length);
+        if (valid.length <= VERIFY_THRESHOLD || pool.getParallelism() == 1)
+            task.compute();
+        else
+            pool.invoke(task);
+        BitSet result = new BitSet(valid.length);
+        for (int i = 0; i < valid.length; i++)
+            if (valid[i]) result.set(i);
+        return result;
+    }
+
+    /*
+     * Verifica un digest con la prova data, usando e aggiornando i nodi
+     * verificati del lotto. La posizione di un nodo è il suo indice di heap:
+     * 1 per la radice, 2p e 2p + 1 per i figli del nodo in posizione p.
+     *
+     * Un passo in cui il nodo o il fratello hanno il digest vuoto dà lo
+     * stesso padre con entrambi i flag di concatenazione, per cui la prova
+     * può essere valida anche con quel flag invertito: le posizioni dei nodi
+     * fino al più alto di tali passi non sono affidabili e quei nodi non
+     * vengono né cercati né memorizzati.
+     */
+    private boolean verify(Digest digest, MerkleProof proof, VerifiedNodes verified) {
+        if (!rootHash.equals(proof.getRootHash()) || !hashFunction.equals(proof.getHashFunction())
+                || proof.getHashMode() != hashMode)
+            return false;
+        int n = proof.size();
+        if (n > MAX_CACHED_LENGTH) return proof.verify(digest);
+        long position = 1L << n;                                    //posizione del nodo di partenza
+        int ambiguous = -1;                                         //più alto passo con un digest vuoto
+        boolean empty = digest.isEmpty();
+        for (int i = 0; i < n; i++) {
+            if (proof.isLeft(i)) position |= 1L << i;
+            if (empty || proof.hashAt(i).isEmpty()) ambiguous = i;
+            empty = empty && proof.hashAt(i).isEmpty();
+        }
+        Digest[] path = new Digest[n];
+        Digest hash = digest;
+        for (int i = 0; i < n; i++) {
+            if (i > ambiguous) {
+                Digest known = verified.get(position >>> i);
+                if (known != null)                                  //il resto del cammino è già verificato
+                    return known.equals(hash) && matchesAbove(proof, i, position >>> i, verified);
+            }
+            path[i] = hash;
+            Digest sibling = proof.hashAt(i);
+            hash = proof.isLeft(i) ? hashMode.combine(hashFunction, sibling, hash)
+                    : hashMode.combine(hashFunction, hash, sibling);
+        }
+        if (!hash.equals(rootHash)) return false;
+        for (int i = n - 1; i > ambiguous; i--)                     //dall'alto, ogni fratello prima del nodo
+            if (!verified.put((position >>> i) ^ 1, proof.hashAt(i)) || !verified.put(position >>> i, path[i]))
+                break;                                              //tabella piena: i nodi sotto restano fuori
+        return true;
+    }
+
+    /*
+     * Confronta i fratelli della prova a partire dal passo dato con quelli
+     * memorizzati. I nodi sono memorizzati dall'alto e ogni fratello prima del
+     * nodo, per cui se il nodo in posizione p è presente lo sono anche tutti i
+     * fratelli del suo cammino verso la radice.
+     */
+    private static boolean matchesAbove(MerkleProof proof, int step, long position, VerifiedNodes verified) {
+        for (int i = step; i < proof.size(); i++, position >>>= 1)
+            if (!proof.hashAt(i).equals(verified.get(position ^ 1)))
+                return false;
+        return true;
+    }
+
+    /**
+     * Tabella a indirizzamento aperto dei nodi verificati di un lotto,
+     * indicizzata dalla posizione di heap dei nodi. Una posizione viene assegnata a una
+     * cella con un compare-and-set sulla chiave e il digest viene pubblicato
+     * dopo, per cui una cella con la chiave ma senza digest è trattata come
+     * assente. Chi memorizza un nodo già assegnato ne pubblica comunque il
+     * digest, uguale per la resistenza alle collisioni, così che al ritorno di
+     * {@link #put(long, Digest)} il nodo sia visibile. Se le celle esaminate
+     * sono tutte occupate il nodo non viene memorizzato.
+     */
+    private static final class VerifiedNodes {
+        private final AtomicLongArray positions;                    //0 per una cella libera
+        private final AtomicReferenceArray<Digest> digests;
+        private final int shift;
+
+        VerifiedNodes(long entries) {
+            int length = 16;
+            while (length < MAX_TABLE_LENGTH && length < 2 * entries)
+                length <<= 1;
+            this.positions = new AtomicLongArray(length);
+            this.digests = new AtomicReferenceArray<>(length);
+            this.shift = Long.numberOfLeadingZeros(length - 1);
+        }
+
+        /*
+         * Restituisce il digest del nodo nella posizione data, null se non
+         * memorizzato.
+         */
+        Digest get(long position) {
+            int mask = positions.length() - 1;
+            for (int i = 0, slot = slot(position); i < MAX_PROBES; i++, slot = (slot + 1) & mask) {
+                long key = positions.get(slot);
+                if (key == position) return digests.get(slot);
+                if (key == 0) return null;
+            }
+            return null;
+        }
+
+        /*
+         * Memorizza il digest del nodo nella posizione data; restituisce false
+         * se non c'è una cella disponibile.
+         */
+        boolean put(long position, Digest digest) {
+            int mask = positions.length() - 1;
+            for (int i = 0, slot = slot(position); i < MAX_PROBES; i++, slot = (slot + 1) & mask) {
+                long key = positions.get(slot);
+                if (key == 0 && positions.compareAndSet(slot, 0, position)) key = position;
+                else if (key == 0) key = positions.get(slot);       //assegnata nel frattempo
+                if (key == position) {
+                    digests.compareAndSet(slot, null, digest);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int slot(long position) {
+            return (int) ((position * 0x9E3779B97F4A7C15L) >>> shift);
+        }
+    }
+
+    /**
+     * Task che verifica un intervallo di un lotto, dividendosi a metà finché
+     * l'intervallo supera {@link #VERIFY_THRESHOLD}.
+     */
+    private class VerifyTask<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<? extends T> data;
+        private final DataEncoder<? super T> encoder;    //null per un lotto di digest
+        private final List<? extends MerkleProof> proofs;
+        private final VerifiedNodes verified;
+        private final boolean[] valid;
+        private final int from;
+        private final int to;
+
+        VerifyTask(List<? extends T> data, DataEncoder<? super T> encoder, List<? extends MerkleProof> proofs,
+                VerifiedNodes verified, boolean[] valid, int from, int to) {
+            this.data = data;
+            this.encoder = encoder;
+            this.proofs = proofs;
+            this.verified = verified;
+            this.valid = valid;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= VERIFY_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    T item = data.get(i);
+                    MerkleProof proof = proofs.get(i);
+                    if (item == null || proof == null)
+                        throw new IllegalArgumentException("dato o prova nulli in posizione " + i);
+                    Digest digest = encoder == null ? (Digest) item
+                            : HashUtil.dataToDigest(item, encoder, hashFunction);
+                    valid[i] = verify(digest, proof, verified);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new VerifyTask<>(data, encoder, proofs, verified, valid, from, mid),
+                    new VerifyTask<>(data, encoder, proofs, verified, valid, mid, to));
+        }
+    }
+}
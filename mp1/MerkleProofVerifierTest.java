@@ -0,0 +1,182 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per la classe {@link MerkleProofVerifier}. Di seguito,
+ * l'elenco dei test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testValidBatch()}: Verifica che tutte le prove valide di un
+ * lotto vengano accettate, in sequenza e in parallelo.</li>
+ *
+ * <li>{@link #testInvalidItems()}: Verifica che l'esito di dati errati, prove
+ * manomesse sopra un nodo già verificato e prove di un altro albero coincida
+ * con quello della verifica indipendente.</li>
+ *
+ * <li>{@link #testFlippedPadding()}: Verifica che una prova valida con il
+ * flag di un fratello vuoto invertito non alteri l'esito delle altre prove
+ * del lotto, in qualunque ordine.</li>
+ *
+ * <li>{@link #testBranchesAndDigests()}: Verifica un lotto di digest di foglie
+ * e di branch dello stesso albero.</li>
+ *
+ * <li>{@link #testEncodedData()}: Verifica un lotto di dati il cui hash è
+ * calcolato sul contenuto codificato da un encoder.</li>
+ *
+ * <li>{@link #testInvalidArguments()}: Verifica che vengano lanciate eccezioni
+ * per argomenti non validi.</li>
+ * </ul>
+ */
+class MerkleProofVerifierTest {
+
+    private static MerkleTree<Integer> tree(int size) {
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        for (int i = 0; i < size; i++)
+            list.addAtTail(i);
+        return new MerkleTree<>(list);
+    }
+
+    @Test
+    void testValidBatch() {
+        MerkleTree<Integer> tree = tree(1000);
+        List<Integer> data = new ArrayList<>();
+        List<MerkleProof> proofs = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            data.add(i % 1000);
+            proofs.add(tree.getMerkleProofAt(i % 1000));
+        }
+        MerkleProofVerifier verifier = new MerkleProofVerifier(tree.getRoot().getDigest());
+        BitSet expected = new BitSet();
+        expected.set(0, 3000);
+        assertEquals(expected, verifier.verify(data, proofs, new ForkJoinPool(1)),
+                "Tutte le prove dovrebbero essere valide.");
+        assertEquals(expected, verifier.verify(data, proofs), "Tutte le prove dovrebbero essere valide in parallelo.");
+    }
+
+    @Test
+    void testInvalidItems() {
+        MerkleTree<Integer> tree = tree(13);
+        List<Object> data = new ArrayList<>();
+        List<MerkleProof> proofs = new ArrayList<>();
+        for (int i = 0; i < 13; i++) {
+            data.add(i);
+            proofs.add(tree.getMerkleProofAt(i));
+        }
+        data.add(99);                                               //dato errato
+        proofs.add(tree.getMerkleProofAt(4));
+
+        MerkleProof genuine = tree.getMerkleProofAt(5);
+        MerkleProof forged = new MerkleProof(genuine.getRootHash(), genuine.getLength());
+        List<MerkleProof.MerkleProofHash> hashes = genuine.getHashes();
+        for (int i = 0; i < hashes.size(); i++)                     //ultimo fratello manomesso
+            forged.addHash(i == hashes.size() - 1 ? HashUtil.dataToDigest(7) : hashes.get(i).getDigest(),
+                    hashes.get(i).isLeft());
+        data.add(5);
+        proofs.add(forged);
+
+        MerkleTree<Integer> other = tree(12);
+        data.add(3);                                                //prova di un altro albero
+        proofs.add(other.getMerkleProofAt(3));
+
+        BitSet result = new MerkleProofVerifier(tree.getRoot().getDigest()).verify(data, proofs, new ForkJoinPool(1));
+        for (int i = 0; i < data.size(); i++) {
+            boolean expected = proofs.get(i).getRootHash().equals(tree.getRoot().getDigest())
+                    && proofs.get(i).proveValidityOfData(data.get(i));
+            assertEquals(expected, result.get(i), "L'esito della prova in posizione " + i + " non è corretto.");
+        }
+        assertEquals(13, result.cardinality(), "Soltanto le prove originali dovrebbero essere valide.");
+    }
+
+    @Test
+    void testFlippedPadding() {
+        MerkleTree<Integer> tree = tree(5);
+        MerkleProof honest = tree.getMerkleProofAt(4);
+        MerkleProof flipped = new MerkleProof(honest.getRootHash(), honest.getLength());
+        List<MerkleProof.MerkleProofHash> hashes = honest.getHashes();
+        assertTrue(hashes.get(0).getDigest().isEmpty(), "Il fratello della foglia dovrebbe essere vuoto.");
+        for (int i = 0; i < hashes.size(); i++)
+            flipped.addHash(hashes.get(i).getDigest(), i == 0 ? !hashes.get(i).isLeft() : hashes.get(i).isLeft());
+        assertTrue(flipped.proveValidityOfData(4), "La prova con il flag invertito dovrebbe essere valida.");
+
+        MerkleProofVerifier verifier = new MerkleProofVerifier(tree.getRoot().getDigest());
+        BitSet expected = new BitSet();
+        expected.set(0, 3);
+        assertEquals(expected, verifier.verify(List.of(4, 4, 3), List.of(flipped, honest, tree.getMerkleProofAt(3)),
+                new ForkJoinPool(1)), "Tutte le prove dovrebbero essere valide.");
+        assertEquals(expected, verifier.verify(List.of(4, 4, 3), List.of(honest, flipped, tree.getMerkleProofAt(3)),
+                new ForkJoinPool(1)), "Tutte le prove dovrebbero essere valide.");
+    }
+
+    @Test
+    void testBranchesAndDigests() {
+        HashLinkedList<String> list = new HashLinkedList<>(HashFunction.SHA_256);
+        for (int i = 0; i < 9; i++)
+            list.addAtTail("dato" + i);
+        MerkleTree<String> tree = new MerkleTree<>(list, HashFunction.SHA_256, TreeHashMode.RAW_BYTES);
+        MerkleProofVerifier verifier = new MerkleProofVerifier(tree.getRoot().getDigest(), HashFunction.SHA_256,
+                TreeHashMode.RAW_BYTES);
+        MerkleNode branch = tree.getRoot().getLeft().getRight();
+        List<Digest> digests = List.of(branch.getDigest(), HashUtil.dataToDigest("dato2", HashFunction.SHA_256),
+                HashUtil.dataToDigest("dato8", HashFunction.SHA_256), branch.getDigest());
+        List<MerkleProof> proofs = List.of(tree.getMerkleProof(branch), tree.getMerkleProof("dato2"),
+                tree.getMerkleProof("dato8"), tree.getMerkleProof(tree.getRoot().getLeft().getLeft()));
+        BitSet result = verifier.verifyDigests(digests, proofs, ForkJoinPool.commonPool());
+        assertTrue(result.get(0) && result.get(1) && result.get(2), "Le prove dovrebbero essere valide.");
+        assertFalse(result.get(3), "Un branch in un'altra posizione non dovrebbe essere valido.");
+
+        assertTrue(new MerkleProofVerifier(tree.getRoot().getDigest()).verifyDigests(digests, proofs,
+                ForkJoinPool.commonPool()).isEmpty(), "Prove con un'altra funzione di hash non dovrebbero essere valide.");
+    }
+
+    @Test
+    void testEncodedData() {
+        HashLinkedList<String> list = new HashLinkedList<>(HashFunction.MD5, DataEncoder.STRING);
+        List<String> data = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            list.addAtTail(i == 0 ? "Aa" : "dato" + i);
+            data.add(i == 0 ? "Aa" : "dato" + i);
+        }
+        MerkleTree<String> tree = new MerkleTree<>(list);
+        List<MerkleProof> proofs = new ArrayList<>();
+        for (int i = 0; i < 600; i++)
+            proofs.add(tree.getMerkleProofAt(i));
+        data.add("BB");                                             //stesso hashCode di "Aa"
+        proofs.add(tree.getMerkleProofAt(0));
+
+        MerkleProofVerifier verifier = new MerkleProofVerifier(tree.getRoot().getDigest());
+        BitSet expected = new BitSet();
+        expected.set(0, 600);
+        assertEquals(expected, verifier.verify(data, DataEncoder.STRING, proofs),
+                "Soltanto i dati dell'albero dovrebbero essere validi.");
+        assertEquals(expected, verifier.verify(data, DataEncoder.STRING, proofs, new ForkJoinPool(1)),
+                "Soltanto i dati dell'albero dovrebbero essere validi.");
+        assertTrue(verifier.verify(data, proofs).isEmpty(),
+                "Senza l'encoder dell'albero nessun dato dovrebbe essere valido.");
+        assertThrows(IllegalArgumentException.class, () -> verifier.verify(data, null, proofs),
+                "Dovrebbe essere lanciata un'eccezione per un encoder nullo.");
+    }
+
+    @Test
+    void testInvalidArguments() {
+        MerkleTree<Integer> tree = tree(4);
+        MerkleProofVerifier verifier = new MerkleProofVerifier(tree.getRoot().getDigest());
+        assertThrows(IllegalArgumentException.class, () -> new MerkleProofVerifier(null),
+                "Dovrebbe essere lanciata un'eccezione per una radice nulla.");
+        assertThrows(IllegalArgumentException.class, () -> verifier.verify(List.of(1, 2), List.of(tree.getMerkleProofAt(1))),
+                "Dovrebbe essere lanciata un'eccezione per liste di lunghezze diverse.");
+        List<MerkleProof> proofs = new ArrayList<>();
+        proofs.add(null);
+        assertThrows(IllegalArgumentException.class, () -> verifier.verify(List.of(1), proofs),
+                "Dovrebbe essere lanciata un'eccezione per una prova nulla.");
+        assertThrows(IllegalArgumentException.class, () -> verifier.verify(null, proofs),
+                "Dovrebbe essere lanciata un'eccezione per una lista nulla.");
+    }
+}
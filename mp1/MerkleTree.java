@@ -2,6 +2,12 @@ package it.unicam.cs.asdl2425.mp1;
 
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 // TODO inserire solo gli import della Java SE che si ritengono necessari
 
@@ -11,12 +17,37 @@ import java.util.*;
  * all'interno di un set di dati più ampio. Viene costruito eseguendo l'hashing
  * ricorsivo di coppie di dati (valori hash crittografici) fino a ottenere un
  * singolo hash root. In questa implementazione la verifica di dati avviene
- * utilizzando hash MD5.
+ * utilizzando hash MD5, salvo che non venga fornita una diversa
+ * {@link HashFunction} alla costruzione. Se il {@link DigestPool} è
+ * abilitato, i digest dei nodi sono condivisi con gli altri alberi e liste.
+ * Un indice dai digest delle foglie al loro indice, costruito insieme
+ * all'albero, permette di cercare e validare i dati in tempo costante; se un
+ * dato compare più volte, vale la sua prima occorrenza.
+ * L'albero è immutabile: {@link #withLeaf(int, Object)} e
+ * {@link #append(Object)} restituiscono una nuova versione che condivide con
+ * questa tutti i nodi non modificati, compresi i sottoalberi di riempimento.
  *
  * @param <T> il tipo di dati su cui l'albero è costruito.
  * @author Luca Tesei, Marco Caputo (template), Lorenzo Pane, lorenzo.pane@studenti.unicam.it (implementazione)
  */
 public class MerkleTree<T> {
+    /**
+     * Soglia predefinita, in foglie, sotto la quale un sottoalbero viene
+     * costruito sequenzialmente nella costruzione parallela.
+     */
+    public static final int BUILD_THRESHOLD = 4096;
+
+    /**
+     * Sottoalberi di riempimento canonici, indicizzati per altezza.
+     */
+    private static final MerkleNode[] PADDING = new MerkleNode[32];
+
+    static {
+        PADDING[0] = new MerkleNode(Digest.EMPTY);
+        for (int h = 1; h < PADDING.length; h++)
+            PADDING[h] = new MerkleNode(Digest.EMPTY, PADDING[h - 1], PADDING[h - 1]);
+    }
+
     /**
      * Nodo radice dell'albero.
      */
@@ -27,6 +58,54 @@ public class MerkleTree<T> {
      */
     private final int width;
 
+    /**
+     * Funzione di hash usata per le foglie e per i nodi intermedi.
+     */
+    private final HashFunction hashFunction;
+
+    /**
+     * Modalità di calcolo degli hash dei nodi intermedi.
+     */
+    private final TreeHashMode hashMode;
+
+    /**
+     * Encoder del contenuto dei dati, usato per calcolare gli hash delle
+     * foglie.
+     */
+    private final DataEncoder<? super T> encoder;
+
+    /**
+     * Cache dei digest dei dati ereditata dalla lista, usata per validare e
+     * cercare i dati; null se assente o non compatibile con l'albero.
+     */
+    private final DigestCache<? super T> cache;
+
+    /**
+     * Indice dai digest delle foglie al loro indice, per la ricerca dei dati
+     * in tempo costante. Le versioni ottenute con
+     * {@link #withLeaf(int, Object)} lo derivano da quello dell'albero di
+     * partenza, se presente; altrimenti è costruito alla prima ricerca.
+     */
+    private volatile DigestIndex.Overlay leafIndex;
+
+    /**
+     * Indice opzionale dai digest dei nodi intermedi alla loro posizione
+     * nell'heap implicito dell'albero (radice 1, figli di i in 2i e 2i+1);
+     * null se l'albero è costruito senza o se non è ancora stato costruito.
+     */
+    private volatile DigestIndex.Overlay branchIndex;
+
+    /**
+     * Numero minimo di posizioni sostituite che l'indice di una versione può
+     * accumulare rispetto all'indice di base prima di essere ricostruito.
+     */
+    private static final int MIN_OVERLAY_LIMIT = 64;
+
+    /**
+     * true se l'albero usa l'indice dei nodi intermedi.
+     */
+    private final boolean indexBranches;
+
     /**
      * Costruisce un albero di Merkle a partire da un oggetto HashLinkedList,
      * utilizzando direttamente gli hash presenti nella lista per costruire le
@@ -40,39 +119,177 @@ public class MerkleTree<T> {
      * @throws IllegalArgumentException se la lista è null o vuota.
      */
     public MerkleTree(HashLinkedList<T> hashList) {
+        this(hashList, hashList == null ? HashFunction.MD5 : hashList.getHashFunction());
+    }
+
+    /**
+     * Costruisce un albero di Merkle a partire da un oggetto HashLinkedList,
+     * utilizzando la funzione di hash fornita sia per le foglie sia per i nodi
+     * intermedi. Se la funzione coincide con quella della lista, gli hash
+     * presenti nella lista vengono riutilizzati; altrimenti gli hash dei dati
+     * vengono ricalcolati.
+     *
+     * @param hashList     un oggetto HashLinkedList contenente i dati e i
+     *                     relativi hash.
+     * @param hashFunction la funzione di hash da utilizzare.
+     * @throws IllegalArgumentException se la lista è null o vuota o se la
+     *                                  funzione di hash è null.
+     */
+    public MerkleTree(HashLinkedList<T> hashList, HashFunction hashFunction) {
+        this(hashList, hashFunction, TreeHashMode.HEX_CONCAT);
+    }
+
+    /**
+     * Costruisce un albero di Merkle a partire da un oggetto HashLinkedList,
+     * utilizzando la funzione di hash fornita e calcolando gli hash dei nodi
+     * intermedi secondo la modalità data. Le prove generate dall'albero
+     * registrano la modalità, così che la verifica usi la stessa.
+     *
+     * @param hashList     un oggetto HashLinkedList contenente i dati e i
+     *                     relativi hash.
+     * @param hashFunction la funzione di hash da utilizzare.
+     * @param hashMode     la modalità di calcolo dei nodi intermedi.
+     * @throws IllegalArgumentException se la lista è null o vuota o se la
+     *                                  funzione di hash o la modalità sono
+     *                                  null.
+     */
+    public MerkleTree(HashLinkedList<T> hashList, HashFunction hashFunction, TreeHashMode hashMode) {
+        this(hashList, hashFunction, hashMode, encoderOf(hashList));
+    }
+
+    /**
+     * Costruisce un albero di Merkle a partire da un oggetto HashLinkedList,
+     * utilizzando la funzione di hash e la modalità fornite e calcolando gli
+     * hash delle foglie sul contenuto dei dati codificato dall'encoder dato.
+     * Se funzione ed encoder coincidono con quelli della lista, gli hash
+     * presenti nella lista vengono riutilizzati; altrimenti vengono
+     * ricalcolati in parallelo. L'encoder è usato anche per validare e cercare i dati.
+     * Se la lista usa una {@link DigestCache} con la stessa funzione e lo
+     * stesso encoder, l'albero la usa a sua volta per i dati da validare e
+     * cercare.
+     *
+     * @param hashList     un oggetto HashLinkedList contenente i dati e i
+     *                     relativi hash.
+     * @param hashFunction la funzione di hash da utilizzare.
+     * @param hashMode     la modalità di calcolo dei nodi intermedi.
+     * @param encoder      l'encoder del contenuto dei dati.
+     * @throws IllegalArgumentException se la lista è null o vuota o se la
+     *                                  funzione di hash, la modalità o
+     *                                  l'encoder sono null.
+     */
+    public MerkleTree(HashLinkedList<T> hashList, HashFunction hashFunction, TreeHashMode hashMode,
+                      DataEncoder<? super T> encoder) {
+        this(hashList, hashFunction, hashMode, encoder, false);
+    }
+
+    /**
+     * Costruisce un albero di Merkle come
+     * {@link #MerkleTree(HashLinkedList, HashFunction, TreeHashMode, DataEncoder)},
+     * costruendo su richiesta anche un indice dai digest dei nodi intermedi
+     * alla loro posizione. Con l'indice, {@link #validateBranch(MerkleNode)}
+     * richiede tempo costante e {@link #getMerkleProof(MerkleNode)} tempo
+     * logaritmico, al costo di una parola per ogni 8 byte di digest dei nodi
+     * intermedi.
+     *
+     * @param hashList      un oggetto HashLinkedList contenente i dati e i
+     *                      relativi hash.
+     * @param hashFunction  la funzione di hash da utilizzare.
+     * @param hashMode      la modalità di calcolo dei nodi intermedi.
+     * @param encoder       l'encoder del contenuto dei dati.
+     * @param indexBranches true per costruire l'indice dei nodi intermedi.
+     * @throws IllegalArgumentException se la lista è null o vuota o se la
+     *                                  funzione di hash, la modalità o
+     *                                  l'encoder sono null.
+     */
+    public MerkleTree(HashLinkedList<T> hashList, HashFunction hashFunction, TreeHashMode hashMode,
+                      DataEncoder<? super T> encoder, boolean indexBranches) {
+        this(hashList, hashFunction, hashMode, encoder, indexBranches, null, 0);
+    }
+
+    /**
+     * Costruisce un albero di Merkle come
+     * {@link #MerkleTree(HashLinkedList, HashFunction, TreeHashMode, DataEncoder, boolean)},
+     * calcolando i nodi intermedi in parallelo sul pool di ForkJoin fornito.
+     * Le foglie vengono suddivise in sottoalberi di al più {@code threshold}
+     * foglie, costruiti ciascuno da un task; le radici dei sottoalberi sono
+     * poi combinate risalendo verso la radice. L'albero ottenuto è identico
+     * a quello costruito sequenzialmente, comprese le foglie di riempimento.
+     *
+     * @param hashList      un oggetto HashLinkedList contenente i dati e i
+     *                      relativi hash.
+     * @param hashFunction  la funzione di hash da utilizzare.
+     * @param hashMode      la modalità di calcolo dei nodi intermedi.
+     * @param encoder       l'encoder del contenuto dei dati.
+     * @param indexBranches true per costruire l'indice dei nodi intermedi.
+     * @param pool          il pool su cui costruire l'albero; null per
+     *                      costruirlo nel thread chiamante.
+     * @param threshold     il numero massimo di foglie di un sottoalbero
+     *                      costruito sequenzialmente, ad esempio
+     *                      {@link #BUILD_THRESHOLD}.
+     * @throws IllegalArgumentException se la lista è null o vuota, se la
+     *                                  funzione di hash, la modalità o
+     *                                  l'encoder sono null o se la soglia non
+     *                                  è positiva per un pool non null.
+     */
+    public MerkleTree(HashLinkedList<T> hashList, HashFunction hashFunction, TreeHashMode hashMode,
+                      DataEncoder<? super T> encoder, boolean indexBranches, ForkJoinPool pool, int threshold) {
         // TODO implementare
-        if (hashList == null || hashList.getSize() == 0)
+        if (hashList == null || hashList.getSize() == 0 || hashFunction == null || hashMode == null || encoder == null)
             throw new IllegalArgumentException(); //controllo che la lista di hash non sia vuota o nulla
+        if (pool != null && threshold <= 0)
+            throw new IllegalArgumentException("Soglia non valida: " + threshold);
         this.width = hashList.getSize();
+        this.hashFunction = hashFunction;
+        this.hashMode = hashMode;
+        this.encoder = encoder;
+        this.cache = compatibleCache(hashList, hashFunction, encoder);
+        this.indexBranches = indexBranches;
         int leaves = closestPowOfTwo(width);
 
-        List<MerkleNode> nodes = new ArrayList<>();
-        List<String> hashes = hashList.getAllHashes();
+        List<Digest> hashes = leafDigests(hashList, hashFunction, encoder);
+        int words = hashFunction.digestLength() / 8;
+        leafIndex = new DigestIndex.Overlay(leafIndexOf(hashes, words));
 
-        for (String h : hashes) {
-            nodes.add(new MerkleNode(h));                    // aggiungo nodi con hash esistenti all'albero
-        }
+        long[] branchWords = indexBranches ? new long[leaves * words] : null;
+        BuildTask task = new BuildTask(hashes, leaves, branchWords, 1, leaves, pool == null ? leaves : threshold);
+        root = pool == null || leaves <= threshold ? task.compute() : pool.invoke(task);
+        if (branchWords != null)
+            branchIndex = new DigestIndex.Overlay(branchIndexOf(branchWords, words, leaves, width));
+    }
 
-        for (int i = hashes.size(); i < leaves; i++) {
-            nodes.add(new MerkleNode(""));              //aggiungo nodi "vuoti" nelle posizioni rimanenti
-        }
+    /**
+     * Costruisce un albero di Merkle a partire dalla sua radice, già
+     * costruita con la funzione di hash e la modalità date, e dai digest
+     * delle sue foglie con dati.
+     */
+    private MerkleTree(MerkleNode root, List<Digest> hashes, HashFunction hashFunction, TreeHashMode hashMode,
+                       DataEncoder<? super T> encoder, boolean indexBranches) {
+        this.root = root;
+        this.width = hashes.size();
+        this.hashFunction = hashFunction;
+        this.hashMode = hashMode;
+        this.encoder = encoder;
+        this.cache = null;
+        this.indexBranches = indexBranches;
+        this.leafIndex = new DigestIndex.Overlay(leafIndexOf(hashes, hashFunction.digestLength() / 8));
+    }
 
-        while (nodes.size() > 1) {
-            List<MerkleNode> nodeList = new ArrayList<>();
-            MerkleNode left = null;
-            for (MerkleNode n : nodes) {
-                if (left == null) left = n;
-                else {
-                    if (n.getHash().equals("") && left.getHash().equals(""))
-                        nodeList.add(new MerkleNode("", left, n));
-                    else
-                        nodeList.add(new MerkleNode(HashUtil.computeMD5((left.getHash() + n.getHash()).getBytes()), left, n));
-                    left = null;
-                }
-            }
-            nodes = nodeList;
-        }
-        root = nodes.get(0);
+    /**
+     * Costruisce una nuova versione dell'albero dato con la radice, la
+     * larghezza e gli indici forniti. Gli indici null sono costruiti alla
+     * prima ricerca.
+     */
+    private MerkleTree(MerkleTree<T> base, MerkleNode root, int width, DigestIndex.Overlay leafIndex,
+                       DigestIndex.Overlay branchIndex) {
+        this.root = root;
+        this.width = width;
+        this.hashFunction = base.hashFunction;
+        this.hashMode = base.hashMode;
+        this.encoder = base.encoder;
+        this.cache = base.cache;
+        this.indexBranches = base.indexBranches;
+        this.leafIndex = leafIndex;
+        this.branchIndex = branchIndex;
     }
 
     /**
@@ -93,6 +310,42 @@ public class MerkleTree<T> {
         return width;
     }
 
+    /**
+     * Restituisce la funzione di hash utilizzata dall'albero.
+     *
+     * @return la funzione di hash dell'albero.
+     */
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    /**
+     * Restituisce la modalità di calcolo degli hash dei nodi intermedi.
+     *
+     * @return la modalità di calcolo dei nodi intermedi.
+     */
+    public TreeHashMode getHashMode() {
+        return hashMode;
+    }
+
+    /**
+     * Restituisce l'encoder del contenuto dei dati utilizzato dall'albero.
+     *
+     * @return l'encoder dei dati dell'albero.
+     */
+    public DataEncoder<? super T> getDataEncoder() {
+        return encoder;
+    }
+
+    /**
+     * Restituisce la cache dei digest dei dati utilizzata dall'albero.
+     *
+     * @return la cache dei digest; null se l'albero non ne usa una.
+     */
+    public DigestCache<? super T> getDigestCache() {
+        return cache;
+    }
+
     /**
      * Restituisce l'altezza dell'albero.
      *
@@ -147,7 +400,8 @@ public class MerkleTree<T> {
      */
     public int getIndexOfData(T data) {
         // TODO implementare
-        return findNode(this.root, data);
+        if (data == null) throw new IllegalArgumentException();
+        return leafPosition(digestOf(data));
     }
 
     /**
@@ -160,7 +414,7 @@ public class MerkleTree<T> {
      * altrimenti.
      */
     public boolean validateData(T data) {
-        return findHashInLeaves(this.root, HashUtil.dataToHash(data));
+        return leafPosition(digestOf(data)) >= 0;
     }
 
     /**
@@ -175,7 +429,19 @@ public class MerkleTree<T> {
      */
     public boolean validateBranch(MerkleNode branch) {
         // TODO implementare
-        return isBranchInTree(this.root, branch);
+        if (!indexBranches || branch == null || branch.getDigest().isEmpty())
+            return isBranchInTree(this.root, branch);
+        return findBranch(branch.getDigest()) > 0;
+    }
+
+    /**
+     * Restituisce true se l'albero è stato costruito con l'indice dei nodi
+     * intermedi.
+     *
+     * @return true se l'albero ha l'indice dei nodi intermedi.
+     */
+    public boolean hasBranchIndex() {
+        return indexBranches;
     }
 
     /**
@@ -191,7 +457,7 @@ public class MerkleTree<T> {
     public boolean validateTree(MerkleTree<T> otherTree) {
         // TODO implementare
         if (otherTree == null) throw new IllegalArgumentException();
-        if (this.width != otherTree.width) return false;
+        if (this.width != otherTree.width || !hasSameHashing(otherTree)) return false;
         else
             return findInvalidDataIndices(otherTree).isEmpty();        //banalmente, se l'albero non contiene indici invalidi,è valido
     }
@@ -211,37 +477,100 @@ public class MerkleTree<T> {
      *
      * @param otherTree l'altro Merkle Tree.
      * @return l'insieme di indici degli elementi di dati non validi.
-     * @throws IllegalArgumentException se l'altro albero è null o ha una
-     *                                  struttura diversa.
+     * @throws IllegalArgumentException se l'altro albero è null, ha una
+     *                                  struttura diversa o usa una diversa
+     *                                  funzione di hash o modalità di calcolo.
      */
     public Set<Integer> findInvalidDataIndices(MerkleTree<T> otherTree) {
-        if (otherTree == null) {
+        BitSet invalid = findInvalidDataBitSet(otherTree);
+        Set<Integer> invalidIndices = new LinkedHashSet<>(invalid.cardinality() * 4 / 3 + 1);
+        for (int i = invalid.nextSetBit(0); i >= 0; i = invalid.nextSetBit(i + 1))
+            invalidIndices.add(i);                      //in ordine crescente
+        return invalidIndices;
+    }
+
+    /**
+     * Trova gli indici degli elementi di dati non validi in un dato Merkle
+     * Tree, come {@link #findInvalidDataIndices(MerkleTree)}, restituendoli
+     * come insieme di bit. La discesa porta con sé l'indice della prima foglia
+     * di ciascun sottoalbero, per cui ogni differenza costa O(log n) e gli
+     * indici sono corretti anche se l'albero contiene foglie uguali.
+     *
+     * @param otherTree l'altro Merkle Tree.
+     * @return l'insieme di bit degli indici dei dati non validi.
+     * @throws IllegalArgumentException se l'altro albero è null, ha una
+     *                                  struttura diversa o usa una diversa
+     *                                  funzione di hash o modalità di calcolo.
+     */
+    public BitSet findInvalidDataBitSet(MerkleTree<T> otherTree) {
+        if (otherTree == null || !hasSameHashing(otherTree)) {
             throw new IllegalArgumentException("");
         }
+        BitSet invalid = new BitSet();
+        diff(this.root, otherTree.getRoot(), 0, getHeight(), invalid);
+        return invalid;
+    }
 
-        Set<Integer> invalidIndices = new HashSet<>();
-        Queue<MerkleNode> queue1 = new LinkedList<>(List.of(this.root));
-        Queue<MerkleNode> queue2 = new LinkedList<>(List.of(otherTree.getRoot()));
-
-        while (!queue1.isEmpty() && !queue2.isEmpty()) {
-            MerkleNode node1 = queue1.poll();
-            MerkleNode node2 = queue2.poll();
+    /**
+     * Trova gli indici degli elementi di dati non validi in un dato Merkle
+     * Tree come {@link #findInvalidDataBitSet(MerkleTree)}, confrontando in
+     * parallelo sul pool fornito i sottoalberi dei nodi intermedi diversi
+     * fino alla profondità data; più in basso il confronto prosegue nel
+     * thread del task.
+     *
+     * @param otherTree l'altro Merkle Tree.
+     * @param pool      il pool su cui eseguire il confronto.
+     * @param forkDepth la profondità massima dei nodi i cui sottoalberi sono
+     *                  confrontati in parallelo.
+     * @return l'insieme di bit degli indici dei dati non validi.
+     * @throws IllegalArgumentException se l'altro albero o il pool sono null,
+     *                                  se la profondità è negativa o se
+     *                                  l'altro albero ha una struttura
+     *                                  diversa o usa una diversa funzione di
+     *                                  hash o modalità di calcolo.
+     */
+    public BitSet findInvalidDataBitSet(MerkleTree<T> otherTree, ForkJoinPool pool, int forkDepth) {
+        return findInvalidDataBitSet(otherTree, pool, forkDepth, Integer.MAX_VALUE, null);
+    }
 
-            if (node1.isLeaf() && node2.isLeaf()) {
-                if (!node1.equals(node2)) {
-                    invalidIndices.add(findNode(root, node1.getHash()));
-                }
-            } else if (node1.isLeaf() || node2.isLeaf()) {
-                throw new IllegalArgumentException("");
-            } else if (!node1.equals(node2)) {
-                queue1.addAll(List.of(node1.getLeft(), node1.getRight()));
-                queue2.addAll(List.of(node2.getLeft(), node2.getRight()));
-            }
+    /**
+     * Trova al più {@code limit} indici di elementi di dati non validi in un
+     * dato Merkle Tree, in parallelo come
+     * {@link #findInvalidDataBitSet(MerkleTree, ForkJoinPool, int)}. Il
+     * confronto termina non appena i task hanno trovato {@code limit} indici,
+     * che non sono necessariamente i più piccoli; con {@code limit} pari a 1
+     * basta a stabilire se gli alberi differiscono e dove. Il confronto può
+     * essere annullato da un altro thread impostando il flag fornito.
+     *
+     * @param otherTree l'altro Merkle Tree.
+     * @param pool      il pool su cui eseguire il confronto.
+     * @param forkDepth la profondità massima dei nodi i cui sottoalberi sono
+     *                  confrontati in parallelo.
+     * @param limit     il numero massimo di indici da restituire.
+     * @param cancelled il flag di annullamento; null se il confronto non può
+     *                  essere annullato.
+     * @return l'insieme di bit degli indici dei dati non validi trovati.
+     * @throws IllegalArgumentException se l'altro albero o il pool sono null,
+     *                                  se la profondità è negativa, se il
+     *                                  limite non è positivo o se l'altro
+     *                                  albero ha una struttura diversa o usa
+     *                                  una diversa funzione di hash o
+     *                                  modalità di calcolo.
+     * @throws CancellationException    se il confronto è stato annullato.
+     */
+    public BitSet findInvalidDataBitSet(MerkleTree<T> otherTree, ForkJoinPool pool, int forkDepth, int limit,
+                                        AtomicBoolean cancelled) {
+        if (otherTree == null || !hasSameHashing(otherTree) || pool == null || forkDepth < 0 || limit <= 0) {
+            throw new IllegalArgumentException("");
         }
-        return invalidIndices;
+        DiffTask task = new DiffTask(this.root, otherTree.getRoot(), 0, getHeight(), 0, forkDepth,
+                new DiffControl(limit, cancelled));
+        int[] indices = pool.invoke(task);
+        BitSet invalid = new BitSet();
+        for (int i : indices) invalid.set(i);
+        return invalid;
     }
 
-
     /**
      * Restituisce la prova di Merkle per un dato elemento, ovvero la lista di
      * hash dei nodi fratelli di ciascun nodo nel cammino dalla radice a una
@@ -262,13 +591,50 @@ public class MerkleTree<T> {
         if (data == null) {
             throw new IllegalArgumentException("");
         }
-        String hash = HashUtil.dataToHash(data);
-        List<MerkleNode> path = getPathToNode(this.root, hash);
-        if (path == null) {
+        int index = leafPosition(digestOf(data));
+        if (index < 0) {
             throw new IllegalArgumentException("");
         }
 
-        return getMerkleProof(path);
+        return proofOf(getHeight(), index);
+    }
+
+    /**
+     * Restituisce la prova di Merkle per la foglia di indice dato, scendendo
+     * dalla radice secondo i bit dell'indice senza cercare alcun hash
+     * nell'albero.
+     *
+     * @param leafIndex l'indice della foglia.
+     * @return la prova di Merkle per la foglia.
+     * @throws IndexOutOfBoundsException se l'indice non è compreso tra 0 e la
+     *                                   larghezza dell'albero esclusa.
+     */
+    public MerkleProof getMerkleProofAt(int leafIndex) {
+        if (leafIndex < 0 || leafIndex >= width)
+            throw new IndexOutOfBoundsException("Indice non valido: " + leafIndex);
+        return proofOf(getHeight(), leafIndex);
+    }
+
+    /**
+     * Restituisce la prova di Merkle per il nodo in una data posizione,
+     * scendendo dalla radice come {@link #getMerkleProofAt(int)}. Il livello 0
+     * contiene soltanto la radice e il livello pari all'altezza contiene le
+     * foglie; la posizione nel livello parte da 0 a sinistra.
+     *
+     * @param level  il livello del nodo.
+     * @param offset la posizione del nodo nel livello.
+     * @return la prova di Merkle per il nodo.
+     * @throws IndexOutOfBoundsException se il livello non è compreso tra 0 e
+     *                                   l'altezza dell'albero o se la
+     *                                   posizione non è compresa tra 0 e il
+     *                                   numero di nodi del livello escluso.
+     */
+    public MerkleProof getMerkleProofAt(int level, int offset) {
+        if (level < 0 || level > getHeight())
+            throw new IndexOutOfBoundsException("Livello non valido: " + level);
+        if (offset < 0 || offset >= 1 << level)
+            throw new IndexOutOfBoundsException("Posizione non valida: " + offset);
+        return proofOf(level, offset);
     }
 
     /**
@@ -291,16 +657,366 @@ public class MerkleTree<T> {
     public MerkleProof getMerkleProof(MerkleNode branch) {
         // TODO implementare
         if (branch == null) throw new IllegalArgumentException();
-        List<MerkleNode> path = getPathToNode(this.root, branch.getHash());
+        if (indexBranches && !branch.getDigest().isEmpty()) {
+            int node = findBranch(branch.getDigest());
+            if (node < 0) throw new IllegalArgumentException();
+            int level = 31 - Integer.numberOfLeadingZeros(node);
+            return proofOf(level, node - (1 << level));
+        }
+        List<MerkleNode> path = getPathToNode(this.root, branch.getDigest());
         //if(path == null) throw new IllegalArgumentException();
 
         return getMerkleProof(path);
     }
 
 
+    /**
+     * Restituisce la prova di Merkle per un insieme di foglie, dati i loro
+     * indici. La prova contiene soltanto i digest che la verifica non può
+     * ricalcolare dalle foglie stesse.
+     *
+     * @param indices gli indici delle foglie, in qualsiasi ordine e anche
+     *                ripetuti.
+     * @return la prova di Merkle per le foglie.
+     * @throws IllegalArgumentException  se l'array è null o vuoto.
+     * @throws IndexOutOfBoundsException se uno degli indici non è compreso
+     *                                   tra 0 e la larghezza dell'albero
+     *                                   esclusa.
+     */
+    public MerkleMultiProof getMerkleMultiProof(int[] indices) {
+        if (indices == null || indices.length == 0) throw new IllegalArgumentException();
+        int[] sorted = Arrays.stream(indices).sorted().distinct().toArray();
+        if (sorted[0] < 0) throw new IndexOutOfBoundsException("Indice non valido: " + sorted[0]);
+        if (sorted[sorted.length - 1] >= width)
+            throw new IndexOutOfBoundsException("Indice non valido: " + sorted[sorted.length - 1]);
+        int height = getHeight();
+        List<Digest> siblings = new ArrayList<>();
+        collectSiblings(root, height, 0, sorted, 0, sorted.length, siblings);
+        return new MerkleMultiProof(root.getDigest(), height, sorted, siblings.toArray(new Digest[0]),
+                hashFunction, hashMode);
+    }
+
+    /**
+     * Restituisce la prova di Merkle per un insieme di dati, come
+     * {@link #getMerkleMultiProof(int[])} per gli indici dei dati. Se un dato
+     * compare più volte nell'albero, la prova riguarda la sua prima
+     * occorrenza.
+     *
+     * @param data i dati per cui generare la prova.
+     * @return la prova di Merkle per i dati.
+     * @throws IllegalArgumentException se la collezione è null o vuota o se
+     *                                  uno dei dati è null o non è parte
+     *                                  dell'albero.
+     */
+    public MerkleMultiProof getMerkleMultiProof(Collection<? extends T> data) {
+        if (data == null || data.isEmpty()) throw new IllegalArgumentException();
+        int[] indices = new int[data.size()];
+        int i = 0;
+        for (T d : data) {
+            if (d == null) throw new IllegalArgumentException();
+            indices[i] = leafPosition(digestOf(d));
+            if (indices[i++] < 0) throw new IllegalArgumentException();
+        }
+        return getMerkleMultiProof(indices);
+    }
+
+    /**
+     * Restituisce una nuova versione dell'albero in cui la foglia di indice
+     * dato ha l'hash del dato fornito. Sono ricalcolati soltanto gli hash
+     * degli antenati della foglia, mentre tutti gli altri nodi sono condivisi
+     * con questo albero, che resta invariato. Gli indici della nuova versione
+     * sono derivati da quelli di questo albero, registrando soltanto le
+     * posizioni sostituite; dopo molte versioni successive sono ricostruiti
+     * alla prima ricerca.
+     *
+     * @param index l'indice della foglia da sostituire.
+     * @param data  il nuovo dato della foglia.
+     * @return la nuova versione dell'albero; questo albero se la foglia ha
+     * già l'hash del dato.
+     * @throws IllegalArgumentException  se il dato è null.
+     * @throws IndexOutOfBoundsException se l'indice non è compreso tra 0 e la
+     *                                   larghezza dell'albero esclusa.
+     */
+    public MerkleTree<T> withLeaf(int index, T data) {
+        if (data == null) throw new IllegalArgumentException();
+        if (index < 0 || index >= width) throw new IndexOutOfBoundsException("Indice non valido: " + index);
+        Digest digest = digestOf(data);
+        int height = getHeight();
+        MerkleNode leaf = root;
+        for (int level = height - 1; level >= 0; level--)
+            leaf = ((index >>> level) & 1) == 0 ? leaf.getLeft() : leaf.getRight();
+        if (leaf.getDigest().equals(digest)) return this;
+        int[] indices = { index };
+        Digest[] digests = { digest };
+        return version(replaceLeaves(root, height, 0, indices, digests, 0, 1), width, indices, digests, false);
+    }
+
+    /**
+     * Restituisce una nuova versione dell'albero in cui le foglie di indici
+     * dati hanno gli hash dei dati corrispondenti, come
+     * {@link #withLeaf(int, Object)}. Ogni antenato delle foglie sostituite è
+     * ricalcolato una sola volta; gli hash dei dati sono calcolati in
+     * parallelo.
+     *
+     * @param updates i nuovi dati, associati all'indice della foglia.
+     * @return la nuova versione dell'albero.
+     * @throws IllegalArgumentException  se la mappa, uno degli indici o uno
+     *                                   dei dati sono null.
+     * @throws IndexOutOfBoundsException se uno degli indici non è compreso
+     *                                   tra 0 e la larghezza dell'albero
+     *                                   esclusa.
+     */
+    public MerkleTree<T> withLeaves(Map<Integer, ? extends T> updates) {
+        if (updates == null) throw new IllegalArgumentException();
+        if (updates.isEmpty()) return this;
+        List<Map.Entry<Integer, ? extends T>> entries = new ArrayList<>(updates.entrySet());
+        for (Map.Entry<Integer, ? extends T> update : entries)
+            if (update.getKey() == null || update.getValue() == null) throw new IllegalArgumentException();
+        entries.sort((a, b) -> Integer.compare(a.getKey(), b.getKey()));
+        int[] indices = new int[entries.size()];
+        List<T> data = new ArrayList<>(entries.size());
+        int i = 0;
+        for (Map.Entry<Integer, ? extends T> update : entries) {
+            indices[i++] = update.getKey();
+            data.add(update.getValue());
+        }
+        if (indices[0] < 0) throw new IndexOutOfBoundsException("Indice non valido: " + indices[0]);
+        if (indices[i - 1] >= width) throw new IndexOutOfBoundsException("Indice non valido: " + indices[i - 1]);
+        Digest[] digests = HashUtil.dataToDigests(data, encoder, hashFunction);
+        return version(replaceLeaves(root, getHeight(), 0, indices, digests, 0, indices.length), width, indices,
+                digests, false);
+    }
+
+    /**
+     * Restituisce una nuova versione dell'albero con una foglia in più, con
+     * l'hash del dato fornito, in coda alle foglie esistenti. Se l'albero ha
+     * ancora foglie di riempimento, la nuova foglia prende il posto della
+     * prima; altrimenti l'albero raddoppia e la radice attuale diventa il
+     * figlio sinistro della nuova, con un sottoalbero di riempimento a
+     * destra. In entrambi i casi sono creati soltanto O(log n) nodi e tutti
+     * gli altri sono condivisi con questo albero, che resta invariato. Gli
+     * indici della nuova versione estendono quelli di questo albero, come in
+     * {@link #withLeaf(int, Object)}.
+     *
+     * @param data il dato da aggiungere.
+     * @return la nuova versione dell'albero.
+     * @throws IllegalArgumentException se il dato è null.
+     * @throws IllegalStateException    se l'albero ha raggiunto il numero
+     *                                  massimo di foglie.
+     */
+    public MerkleTree<T> append(T data) {
+        if (data == null) throw new IllegalArgumentException();
+        if (width == 1 << 30) throw new IllegalStateException("Troppe foglie per un albero");
+        Digest[] digest = { digestOf(data) };
+        int[] index = { width };
+        int height = getHeight();
+        if (width < 1 << height)        //c'è ancora spazio tra le foglie di riempimento
+            return version(replaceLeaves(root, height, 0, index, digest, 0, 1), width + 1, index, digest, false);
+        MerkleNode right = replaceLeaves(paddingSubtree(height), height, width, index, digest, 0, 1);
+        Digest parent = hashMode.combine(hashFunction, root.getDigest(), right.getDigest());
+        return version(new MerkleNode(DigestPool.intern(parent), root, right), width + 1, index, digest, true);
+    }
+
     // TODO inserire eventuali metodi privati per fini di implementazione
 
-    private int closestPowOfTwo(int n) {
+    static <T> DataEncoder<? super T> encoderOf(HashLinkedList<T> hashList) {
+        return hashList == null ? DataEncoder.HASH_CODE : hashList.getDataEncoder();
+    }
+
+    /**
+     * Restituisce i digest delle foglie per i dati della lista: quelli della
+     * lista se funzione ed encoder coincidono, altrimenti ricalcolati in
+     * parallelo.
+     */
+    static <T> List<Digest> leafDigests(HashLinkedList<T> hashList, HashFunction hashFunction,
+                                        DataEncoder<? super T> encoder) {
+        if (hashFunction.equals(hashList.getHashFunction()) && encoder == hashList.getDataEncoder())
+            return hashList.getAllDigests();
+        List<T> data = new ArrayList<>(hashList.getSize());  //la lista usa un'altra funzione: ricalcolo gli hash in parallelo
+        for (T d : hashList) data.add(d);
+        return Arrays.asList(HashUtil.dataToDigests(data, encoder, hashFunction));
+    }
+
+    /**
+     * Restituisce la cache della lista se usa la funzione e l'encoder dati,
+     * null altrimenti.
+     */
+    static <T> DigestCache<? super T> compatibleCache(HashLinkedList<T> hashList, HashFunction hashFunction,
+                                                      DataEncoder<? super T> encoder) {
+        DigestCache<? super T> listCache = hashList.getDigestCache();
+        return listCache != null && hashFunction.equals(listCache.getHashFunction())
+                && encoder == listCache.getDataEncoder() ? listCache : null;
+    }
+
+    private boolean hasSameHashing(MerkleTree<T> otherTree) {
+        return this.hashFunction.equals(otherTree.hashFunction) && this.hashMode == otherTree.hashMode;
+    }
+
+    /**
+     * Stato condiviso dai task di un confronto parallelo: il numero di
+     * indici trovati, il limite e il flag di annullamento.
+     */
+    private static final class DiffControl {
+        private final AtomicInteger found = new AtomicInteger();
+        private final int limit;
+        private final AtomicBoolean cancelled;
+
+        DiffControl(int limit, AtomicBoolean cancelled) {
+            this.limit = limit;
+            this.cancelled = cancelled;
+        }
+
+        /**
+         * Restituisce true se il confronto deve terminare perché è stato
+         * raggiunto il limite; lancia un'eccezione se è stato annullato.
+         */
+        boolean done() {
+            if (cancelled != null && cancelled.get()) throw new CancellationException();
+            return found.get() >= limit;
+        }
+
+        /**
+         * Riserva un indice, restituendo false se il limite è già stato
+         * raggiunto.
+         */
+        boolean claim() {
+            return found.getAndIncrement() < limit;
+        }
+    }
+
+    /**
+     * Task che confronta due sottoalberi corrispondenti, restituendo gli
+     * indici delle foglie diverse in ordine crescente. Se i sottoalberi
+     * differiscono e la radice è sopra la profondità di fork, i due figli
+     * sono confrontati in parallelo e i loro risultati concatenati.
+     */
+    private static final class DiffTask extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final MerkleNode node1;
+        private final MerkleNode node2;
+        private final int first;
+        private final int height;
+        private final int depth;
+        private final int forkDepth;
+        private final DiffControl control;
+        private int[] indices = new int[0];    // Indici trovati dal confronto sequenziale
+        private int size;
+
+        DiffTask(MerkleNode node1, MerkleNode node2, int first, int height, int depth, int forkDepth,
+                 DiffControl control) {
+            this.node1 = node1;
+            this.node2 = node2;
+            this.first = first;
+            this.height = height;
+            this.depth = depth;
+            this.forkDepth = forkDepth;
+            this.control = control;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (depth >= forkDepth || node1.isLeaf() || node2.isLeaf()) {
+                diff(node1, node2, first, height);
+                return Arrays.copyOf(indices, size);
+            }
+            if (node1 == node2 || node1.equals(node2) || control.done()) return new int[0];
+            int half = 1 << (height - 1);
+            DiffTask left = new DiffTask(node1.getLeft(), node2.getLeft(), first, height - 1, depth + 1,
+                    forkDepth, control);
+            left.fork();
+            int[] right = new DiffTask(node1.getRight(), node2.getRight(), first + half, height - 1, depth + 1,
+                    forkDepth, control).compute();
+            int[] leftIndices = left.join();
+            int[] merged = Arrays.copyOf(leftIndices, leftIndices.length + right.length);
+            System.arraycopy(right, 0, merged, leftIndices.length, right.length);
+            return merged;
+        }
+
+        private void diff(MerkleNode node1, MerkleNode node2, int first, int height) {
+            if (node1 == node2 || node1.equals(node2) || control.done()) return;
+            if (node1.isLeaf() && node2.isLeaf()) {
+                if (!control.claim()) return;
+                if (size == indices.length) indices = Arrays.copyOf(indices, Math.max(8, size * 2));
+                indices[size++] = first;
+            } else if (node1.isLeaf() || node2.isLeaf()) {
+                throw new IllegalArgumentException("");
+            } else {
+                diff(node1.getLeft(), node2.getLeft(), first, height - 1);
+                diff(node1.getRight(), node2.getRight(), first + (1 << (height - 1)), height - 1);
+            }
+        }
+    }
+
+    /**
+     * Task che costruisce il sottoalbero di radice {@code node} (posizione
+     * nell'heap implicito), che copre {@code span} foglie. Sopra la soglia
+     * costruisce i due sottoalberi figli in parallelo e ne combina le radici;
+     * altrimenti li costruisce ricorsivamente nel thread corrente.
+     */
+    private final class BuildTask extends RecursiveTask<MerkleNode> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Digest> hashes;
+        private final int leaves;
+        private final long[] branchWords;
+        private final int node;
+        private final int span;
+        private final int threshold;
+
+        BuildTask(List<Digest> hashes, int leaves, long[] branchWords, int node, int span, int threshold) {
+            this.hashes = hashes;
+            this.leaves = leaves;
+            this.branchWords = branchWords;
+            this.node = node;
+            this.span = span;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected MerkleNode compute() {
+            if (span <= threshold || isPadding(node, leaves, width)) return build(node, span);
+            BuildTask left = new BuildTask(hashes, leaves, branchWords, 2 * node, span / 2, threshold);
+            left.fork();
+            MerkleNode right = new BuildTask(hashes, leaves, branchWords, 2 * node + 1, span / 2, threshold).compute();
+            return parent(node, left.join(), right);
+        }
+
+        private MerkleNode build(int node, int span) {
+            if (isPadding(node, leaves, width)) return paddingSubtree(Integer.numberOfTrailingZeros(span));
+            if (span == 1) return new MerkleNode(DigestPool.intern(hashes.get(node - leaves)));
+            return parent(node, build(2 * node, span / 2), build(2 * node + 1, span / 2));
+        }
+
+        private MerkleNode parent(int node, MerkleNode left, MerkleNode right) {
+            Digest digest = hashMode.combine(hashFunction, left.getDigest(), right.getDigest());
+            if (branchWords != null) digest.writeWords(branchWords, node * (hashFunction.digestLength() / 8));
+            return new MerkleNode(DigestPool.intern(digest), left, right);
+        }
+    }
+
+    /**
+     * Scrive le parole dei digest dei nodi intermedi del sottoalbero di
+     * radice {@code node}, che occupa la posizione data nell'heap implicito.
+     */
+    private static void writeBranchWords(MerkleNode node, int position, int leaves, long[] branchWords, int words) {
+        if (position >= leaves) return;
+        node.getDigest().writeWords(branchWords, position * words);
+        writeBranchWords(node.getLeft(), 2 * position, leaves, branchWords, words);
+        writeBranchWords(node.getRight(), 2 * position + 1, leaves, branchWords, words);
+    }
+
+    /**
+     * Restituisce il sottoalbero di riempimento canonico dell'altezza data,
+     * i cui nodi hanno tutti il digest vuoto. Essendo i nodi immutabili, i
+     * sottoalberi di riempimento sono condivisi tra tutti gli alberi e i due
+     * figli di ogni nodo sono la stessa istanza.
+     */
+    static MerkleNode paddingSubtree(int height) {
+        return PADDING[height];
+    }
+
+    static int closestPowOfTwo(int n) {
         int result = 1;
         while (result < n) {
             result <<= 1;
@@ -308,14 +1024,31 @@ public class MerkleTree<T> {
         return result;
     }
 
-    private int findNode(MerkleNode node, String hash) {
+    /**
+     * Aggiunge all'insieme gli indici delle foglie diverse tra due
+     * sottoalberi corrispondenti dell'altezza data, la cui prima foglia ha
+     * l'indice {@code first}.
+     */
+    private static void diff(MerkleNode node1, MerkleNode node2, int first, int height, BitSet invalid) {
+        if (node1 == node2 || node1.equals(node2)) return;      //i nodi condivisi tra versioni sono uguali
+        if (node1.isLeaf() && node2.isLeaf()) {
+            invalid.set(first);
+        } else if (node1.isLeaf() || node2.isLeaf()) {
+            throw new IllegalArgumentException("");
+        } else {
+            diff(node1.getLeft(), node2.getLeft(), first, height - 1, invalid);
+            diff(node1.getRight(), node2.getRight(), first + (1 << (height - 1)), height - 1, invalid);
+        }
+    }
+
+    private int findNode(MerkleNode node, Digest hash) {
         Deque<MerkleNode> stack = new LinkedList<>();
         stack.push(node);
         int index = 0;
         while (!stack.isEmpty()) {                          //itera finché trova elementi
             MerkleNode currentNode = stack.pop();
             if (currentNode.isLeaf()) {
-                if (currentNode.getHash().equals(hash)) {   //trovato nodo
+                if (currentNode.getDigest().equals(hash)) { //trovato nodo
                     return index;
                 }
                 index++;
@@ -328,20 +1061,23 @@ public class MerkleTree<T> {
     }
 
 
-    private boolean findHashInLeaves(MerkleNode tree, String hash) {
-        if (tree.isLeaf()) return tree.getHash().equals(hash);
-        return findHashInLeaves(tree.getLeft(), hash) || findHashInLeaves(tree.getRight(), hash);
+    private int findNode(MerkleNode node, T data) {
+        return findNode(node, digestOf(data));
     }
 
-    private int findNode(MerkleNode node, T data) {
-        return findNode(node, HashUtil.dataToHash(data));
+    private Digest digestOf(T data) {
+        return cache != null ? cache.digest(data) : HashUtil.dataToDigest(data, encoder, hashFunction);
     }
 
     public List<MerkleNode> getPathToNode(MerkleNode current, String hash) {
+        return getPathToNode(current, Digest.fromHex(hash));
+    }
+
+    private List<MerkleNode> getPathToNode(MerkleNode current, Digest hash) {
         if (current == null) {
             return new ArrayList<>();  // ramo vuoto corrisponde a path vuoto
         }
-        if (current.getHash().equals(hash)) {
+        if (current.getDigest().equals(hash)) {
             return new ArrayList<>(List.of(current));  // il nodo target è il primo trovato
         }
 
@@ -369,21 +1105,478 @@ public class MerkleTree<T> {
         return isBranchInTree(tree.getLeft(), branch) || isBranchInTree(tree.getRight(), branch);
     }
 
+    /**
+     * Restituisce la prova di Merkle del nodo in una data posizione,
+     * scendendo dalla radice secondo i bit della posizione nel livello.
+     */
+    private MerkleProof proofOf(int level, int offset) {
+        Digest[] siblings = new Digest[level];
+        boolean[] left = new boolean[level];
+        MerkleNode node = root;
+        for (int depth = 0; depth < level; depth++) {
+            boolean right = ((offset >>> (level - 1 - depth)) & 1) != 0;
+            siblings[depth] = (right ? node.getLeft() : node.getRight()).getDigest();
+            left[depth] = right;
+            node = right ? node.getRight() : node.getLeft();
+        }
+        MerkleProof proof = new MerkleProof(root.getDigest(), level, hashFunction, hashMode);
+        for (int depth = level - 1; depth >= 0; depth--)
+            proof.addHash(siblings[depth], left[depth]);
+        return proof;
+    }
+
+    /**
+     * Restituisce l'indice delle foglie, costruendolo dai nodi dell'albero
+     * se non è ancora stato costruito o se richiesto.
+     */
+    private DigestIndex.Overlay leafIndex(boolean rebuild) {
+        DigestIndex.Overlay index = leafIndex;
+        if (index == null || rebuild) {
+            int words = hashFunction.digestLength() / 8;
+            long[] leafWords = new long[width * words];
+            writeLeafWords(root, getHeight(), 0, leafWords, words);
+            leafIndex = index = new DigestIndex.Overlay(new DigestIndex(leafWords, words, 0, width));
+        }
+        return index;
+    }
+
+    /**
+     * Restituisce l'indice dei nodi intermedi, costruendolo dai nodi
+     * dell'albero se non è ancora stato costruito o se richiesto. Richiede
+     * che l'albero usi l'indice dei nodi intermedi.
+     */
+    private DigestIndex.Overlay branchIndex(boolean rebuild) {
+        DigestIndex.Overlay index = branchIndex;
+        if (index == null || rebuild) {
+            int leaves = closestPowOfTwo(width);
+            int words = hashFunction.digestLength() / 8;
+            long[] branchWords = new long[leaves * words];
+            writeBranchWords(root, 1, leaves, branchWords, words);
+            branchIndex = index = new DigestIndex.Overlay(branchIndexOf(branchWords, words, leaves, width));
+        }
+        return index;
+    }
+
+    /**
+     * Restituisce l'indice della prima foglia con il digest dato, -1 se non
+     * presente, ricostruendo l'indice se quello derivato non basta.
+     */
+    private int leafPosition(Digest digest) {
+        int index = leafIndex(false).get(digest);
+        return index != DigestIndex.Overlay.UNKNOWN ? index : leafIndex(true).get(digest);
+    }
+
+    /**
+     * Restituisce la posizione nell'heap del primo nodo intermedio con il
+     * digest dato, -1 se non presente, come {@link #leafPosition(Digest)}.
+     */
+    private int branchPosition(Digest digest) {
+        int node = branchIndex(false).get(digest);
+        return node != DigestIndex.Overlay.UNKNOWN ? node : branchIndex(true).get(digest);
+    }
+
+    /**
+     * Restituisce la nuova versione dell'albero con la radice e la larghezza
+     * date, in cui le foglie di indici {@code indices} (crescenti) sono
+     * sostituite o aggiunte con i digest corrispondenti e che, se
+     * {@code doubled} è true, ha la radice di questo albero come figlio
+     * sinistro. Gli indici presenti in questo albero sono derivati
+     * registrando le foglie sostituite e i loro antenati, finché le posizioni
+     * sostituite accumulate non superano un limite proporzionale alla radice
+     * quadrata della larghezza: oltre, la nuova versione li ricostruisce alla
+     * prima ricerca.
+     */
+    private MerkleTree<T> version(MerkleNode root, int width, int[] indices, Digest[] digests, boolean doubled) {
+        int limit = Math.max(MIN_OVERLAY_LIMIT, 4 * (int) Math.sqrt(width));
+        DigestIndex.Overlay leaves = leafIndex;
+        if (leaves != null) leaves = leaves.with(indices, digests, indices.length, limit);
+        DigestIndex.Overlay branches = branchIndex;
+        if (branches != null && indices.length <= limit) {
+            if (doubled) branches = branches.doubled();
+            int height = Integer.numberOfTrailingZeros(closestPowOfTwo(width));
+            int[] positions = new int[indices.length * height];
+            Digest[] nodes = new Digest[positions.length];
+            int count = collectAncestors(root, 1, height, 0, indices, 0, indices.length, positions, nodes, 0);
+            branches = branches.with(positions, nodes, count, limit * height);
+        } else {
+            branches = null;
+        }
+        return new MerkleTree<>(this, root, width, leaves, branches);
+    }
+
+    /**
+     * Scrive posizioni e digest dei nodi intermedi del sottoalbero
+     * dell'altezza data, in posizione {@code position} nell'heap e con prima
+     * foglia di indice {@code first}, che sono antenati delle foglie di
+     * indici {@code indices[from..to)}; restituisce il numero di nodi scritti
+     * in tutto.
+     */
+    private static int collectAncestors(MerkleNode node, int position, int height, int first, int[] indices,
+                                        int from, int to, int[] positions, Digest[] digests, int count) {
+        if (from == to || height == 0) return count;
+        positions[count] = position;
+        digests[count++] = node.getDigest();
+        int mid = first + (1 << (height - 1));
+        int split = from;
+        while (split < to && indices[split] < mid) split++;
+        count = collectAncestors(node.getLeft(), 2 * position, height - 1, first, indices, from, split, positions,
+                digests, count);
+        return collectAncestors(node.getRight(), 2 * position + 1, height - 1, mid, indices, split, to, positions,
+                digests, count);
+    }
+
+    /**
+     * Costruisce l'indice delle foglie a partire dai loro digest.
+     */
+    private static DigestIndex leafIndexOf(List<Digest> hashes, int words) {
+        long[] leafWords = new long[hashes.size() * words];
+        int offset = 0;
+        for (Digest h : hashes)
+            offset += h.writeWords(leafWords, offset);
+        return new DigestIndex(leafWords, words, 0, hashes.size());
+    }
+
+    /**
+     * Costruisce l'indice dei nodi intermedi che non coprono soltanto foglie
+     * di riempimento, le cui parole sono memorizzate per posizione nell'heap.
+     */
+    private static DigestIndex branchIndexOf(long[] branchWords, int words, int leaves, int width) {
+        DigestIndex index = new DigestIndex(branchWords, words, leaves);
+        for (int node = 1; node < leaves; node++)   //in ordine di livello: a parità di digest vince il nodo più in alto
+            if (!isPadding(node, leaves, width)) index.add(node);
+        return index;
+    }
+
+    /**
+     * Scrive le parole dei digest delle foglie con dati del sottoalbero
+     * dell'altezza data, la cui prima foglia ha l'indice {@code first}.
+     */
+    private void writeLeafWords(MerkleNode node, int height, int first, long[] leafWords, int words) {
+        if (first >= width) return;
+        if (height == 0) {
+            node.getDigest().writeWords(leafWords, first * words);
+            return;
+        }
+        writeLeafWords(node.getLeft(), height - 1, first, leafWords, words);
+        writeLeafWords(node.getRight(), height - 1, first + (1 << (height - 1)), leafWords, words);
+    }
+
+    /**
+     * Aggiunge, nell'ordine di visita, i digest dei sottoalberi senza foglie
+     * da provare il cui padre ne contiene almeno una, nel sottoalbero
+     * dell'altezza data la cui prima foglia ha l'indice {@code first} e che
+     * contiene le foglie di indici {@code indices[from..to)}.
+     */
+    private static void collectSiblings(MerkleNode node, int height, int first, int[] indices, int from, int to,
+                                        List<Digest> siblings) {
+        if (from == to) {
+            siblings.add(node.getDigest());
+            return;
+        }
+        if (height == 0) return;
+        int mid = first + (1 << (height - 1));
+        int split = from;
+        while (split < to && indices[split] < mid) split++;
+        collectSiblings(node.getLeft(), height - 1, first, indices, from, split, siblings);
+        collectSiblings(node.getRight(), height - 1, mid, indices, split, to, siblings);
+    }
+
+    /**
+     * Restituisce il sottoalbero dell'altezza data, la cui prima foglia ha
+     * l'indice {@code first}, con le foglie di indici {@code indices[from..to)}
+     * (crescenti) sostituite da foglie con i digest corrispondenti. I
+     * sottoalberi senza foglie sostituite sono condivisi con quello dato.
+     */
+    private MerkleNode replaceLeaves(MerkleNode node, int height, int first, int[] indices, Digest[] digests,
+                                     int from, int to) {
+        if (from == to) return node;
+        if (height == 0) return new MerkleNode(DigestPool.intern(digests[from]));
+        int mid = first + (1 << (height - 1));
+        int split = from;
+        while (split < to && indices[split] < mid) split++;
+        MerkleNode left = replaceLeaves(node.getLeft(), height - 1, first, indices, digests, from, split);
+        MerkleNode right = replaceLeaves(node.getRight(), height - 1, mid, indices, digests, split, to);
+        Digest digest = hashMode.combine(hashFunction, left.getDigest(), right.getDigest());
+        return new MerkleNode(DigestPool.intern(digest), left, right);
+    }
+
+    /**
+     * Restituisce la posizione nell'heap del nodo con il digest dato, tra i
+     * nodi intermedi e poi tra le foglie; -1 se non presente. Richiede
+     * l'indice dei nodi intermedi.
+     */
+    private int findBranch(Digest digest) {
+        int node = branchPosition(digest);
+        if (node > 0) return node;
+        int index = leafPosition(digest);
+        return index < 0 ? -1 : closestPowOfTwo(width) + index;
+    }
+
+    /**
+     * Restituisce true se il nodo nella posizione data dell'heap copre
+     * soltanto foglie di riempimento.
+     */
+    static boolean isPadding(int node, int leaves, int width) {
+        int shift = Integer.numberOfTrailingZeros(leaves) - (31 - Integer.numberOfLeadingZeros(node));
+        return (node << shift) - leaves >= width;
+    }
+
     private MerkleProof getMerkleProof(List<MerkleNode> path) {
-        MerkleProof proof = new MerkleProof(root.getHash(), path.size() - 1);
+        MerkleProof proof = new MerkleProof(root.getDigest(), path.size() - 1, hashFunction, hashMode);
 
         for (int i = path.size() - 2; i >= 0; i--) {
             MerkleNode parent = path.get(i);
             MerkleNode child = path.get(i + 1);
 
             // Verifica se il figlio è il sinistro
-            boolean isLeftChild = parent.getLeft().getHash().equals(child.getHash());
+            boolean isLeftChild = parent.getLeft().getDigest().equals(child.getDigest());
 
             // Aggiunge l'hash nodo figlio giusto
-            proof.addHash(isLeftChild ? parent.getRight().getHash() : parent.getLeft().getHash(), !isLeftChild);
+            proof.addHash(isLeftChild ? parent.getRight().getDigest() : parent.getLeft().getDigest(), !isLeftChild);
         }
 
         return proof;
     }
 
+    /**
+     * Costruttore incrementale di alberi di Merkle, che riceve le foglie una
+     * alla volta nell'ordine dei dati. Il builder conserva soltanto le radici
+     * dei sottoalberi completi lungo il bordo destro dell'albero, una per
+     * livello, per cui il digest della radice si calcola con memoria
+     * O(log n) anche su sequenze di dati che non entrano in memoria. Le
+     * foglie di riempimento sono trattate come in {@link MerkleTree}, per cui
+     * la radice coincide con quella dell'albero costruito da una
+     * {@link HashLinkedList} con gli stessi dati.
+     *
+     * <p>
+     * Se richiesto con {@link #retainTree(boolean)} prima di aggiungere
+     * foglie, il builder conserva anche tutti i nodi e {@link #build()}
+     * restituisce l'albero completo.
+     *
+     * @param <T> il tipo di dati su cui l'albero è costruito.
+     */
+    public static final class Builder<T> {
+        private static final int BLOCK_SIZE = 8 * HashUtil.BATCH_THRESHOLD; // Dati letti per blocco da addAll
+
+        private final HashFunction hashFunction;
+
+        private final TreeHashMode hashMode;
+
+        private final DataEncoder<? super T> encoder;
+
+        private final Digest[] frontier = new Digest[64]; // Radice del sottoalbero completo in attesa a ogni livello, null se assente
+
+        private MerkleNode[] nodes; // Nodi corrispondenti a frontier, solo se l'albero è conservato
+
+        private List<Digest> leaves; // Digest di tutte le foglie, solo se l'albero è conservato
+
+        private boolean indexBranches;
+
+        private long width;
+
+        /**
+         * Crea un builder che usa MD5, la modalità
+         * {@link TreeHashMode#HEX_CONCAT} e l'encoder
+         * {@link DataEncoder#HASH_CODE}, come una {@link HashLinkedList}
+         * creata con il costruttore predefinito.
+         */
+        public Builder() {
+            this(HashFunction.MD5, TreeHashMode.HEX_CONCAT, DataEncoder.HASH_CODE);
+        }
+
+        /**
+         * Crea un builder con la funzione di hash, la modalità e l'encoder
+         * dati.
+         *
+         * @param hashFunction la funzione di hash da utilizzare.
+         * @param hashMode     la modalità di calcolo dei nodi intermedi.
+         * @param encoder      l'encoder del contenuto dei dati.
+         * @throws IllegalArgumentException se uno degli argomenti è null.
+         */
+        public Builder(HashFunction hashFunction, TreeHashMode hashMode, DataEncoder<? super T> encoder) {
+            if (hashFunction == null || hashMode == null || encoder == null) throw new IllegalArgumentException();
+            this.hashFunction = hashFunction;
+            this.hashMode = hashMode;
+            this.encoder = encoder;
+        }
+
+        /**
+         * Stabilisce se conservare tutti i nodi per restituire l'albero
+         * completo con {@link #build()}.
+         *
+         * @param retain true per conservare l'albero completo.
+         * @return questo builder.
+         * @throws IllegalStateException se sono già state aggiunte foglie.
+         */
+        public Builder<T> retainTree(boolean retain) {
+            if (width > 0) throw new IllegalStateException("Foglie già aggiunte");
+            nodes = retain ? new MerkleNode[frontier.length] : null;
+            leaves = retain ? new ArrayList<>() : null;
+            return this;
+        }
+
+        /**
+         * Stabilisce se l'albero restituito da {@link #build()} abbia
+         * l'indice dei nodi intermedi, come
+         * {@link MerkleTree#MerkleTree(HashLinkedList, HashFunction, TreeHashMode, DataEncoder, boolean)}.
+         *
+         * @param index true per costruire l'indice dei nodi intermedi.
+         * @return questo builder.
+         */
+        public Builder<T> indexBranches(boolean index) {
+            this.indexBranches = index;
+            return this;
+        }
+
+        /**
+         * Aggiunge una foglia con l'hash del dato fornito.
+         *
+         * @param data il dato da aggiungere.
+         * @return questo builder.
+         * @throws IllegalArgumentException se il dato è null.
+         */
+        public Builder<T> add(T data) {
+            if (data == null) throw new IllegalArgumentException("dato nullo");
+            return addDigest(HashUtil.dataToDigest(data, encoder, hashFunction));
+        }
+
+        /**
+         * Aggiunge una foglia per ogni dato restituito dall'iteratore,
+         * nell'ordine dell'iteratore. I dati sono letti a blocchi e gli hash
+         * di ciascun blocco sono calcolati in parallelo sul pool comune di
+         * ForkJoin, per cui la memoria usata resta limitata dalla dimensione
+         * del blocco.
+         *
+         * @param data l'iteratore dei dati da aggiungere.
+         * @return questo builder.
+         * @throws IllegalArgumentException se l'iteratore o uno dei dati è
+         *                                  null; le foglie dei blocchi
+         *                                  precedenti restano aggiunte.
+         */
+        public Builder<T> addAll(Iterator<? extends T> data) {
+            if (data == null) throw new IllegalArgumentException("iteratore nullo");
+            List<T> block = new ArrayList<>(BLOCK_SIZE);
+            while (data.hasNext()) {
+                block.clear();
+                while (block.size() < BLOCK_SIZE && data.hasNext()) {
+                    T item = data.next();
+                    if (item == null) throw new IllegalArgumentException("dato nullo");
+                    block.add(item);
+                }
+                for (Digest digest : HashUtil.dataToDigests(block, encoder, hashFunction))
+                    addDigest(digest);
+            }
+            return this;
+        }
+
+        /**
+         * Aggiunge una foglia per ogni dato dello stream, nell'ordine
+         * dello stream, come {@link #addAll(Iterator)}.
+         *
+         * @param data lo stream dei dati da aggiungere.
+         * @return questo builder.
+         * @throws IllegalArgumentException se lo stream o uno dei dati è
+         *                                  null.
+         */
+        public Builder<T> addAll(Stream<? extends T> data) {
+            if (data == null) throw new IllegalArgumentException("stream nullo");
+            return addAll(data.iterator());
+        }
+
+        /**
+         * Aggiunge una foglia con il digest fornito, che deve essere stato
+         * calcolato con la funzione di hash e l'encoder del builder.
+         *
+         * @param digest il digest della foglia.
+         * @return questo builder.
+         * @throws IllegalArgumentException se il digest è null o non ha la
+         *                                  lunghezza della funzione di hash.
+         * @throws IllegalStateException    se il builder conserva l'albero e
+         *                                  ha raggiunto il numero massimo di
+         *                                  foglie.
+         */
+        public Builder<T> addDigest(Digest digest) {
+            if (digest == null || digest.length() != hashFunction.digestLength())
+                throw new IllegalArgumentException();
+            if (leaves != null) {
+                if (width == 1 << 30) throw new IllegalStateException("Troppe foglie per un albero");
+                leaves.add(digest);
+            }
+            Digest carry = nodes == null ? digest : DigestPool.intern(digest);
+            MerkleNode node = nodes == null ? null : new MerkleNode(carry);
+            int level = 0;
+            for (; frontier[level] != null; level++) {   //come il riporto di un contatore binario
+                carry = hashMode.combine(hashFunction, frontier[level], carry);
+                if (nodes != null) {
+                    carry = DigestPool.intern(carry);
+                    node = new MerkleNode(carry, nodes[level], node);
+                    nodes[level] = null;
+                }
+                frontier[level] = null;
+            }
+            frontier[level] = carry;
+            if (nodes != null) nodes[level] = node;
+            width++;
+            return this;
+        }
+
+        /**
+         * Restituisce il numero di foglie aggiunte.
+         *
+         * @return il numero di foglie aggiunte.
+         */
+        public long getWidth() {
+            return width;
+        }
+
+        /**
+         * Restituisce il digest della radice dell'albero con le foglie
+         * aggiunte finora. Il builder resta utilizzabile.
+         *
+         * @return il digest della radice.
+         * @throws IllegalStateException se non è stata aggiunta alcuna foglia.
+         */
+        public Digest getRootDigest() {
+            if (width == 0) throw new IllegalStateException("Nessuna foglia aggiunta");
+            int height = 64 - Long.numberOfLeadingZeros(width - 1);
+            Digest right = null;            //radice del sottoalbero parziale a destra, null se vuoto
+            for (int level = 0; level < height; level++) {
+                if (frontier[level] != null)
+                    right = hashMode.combine(hashFunction, frontier[level], right == null ? Digest.EMPTY : right);
+                else if (right != null)
+                    right = hashMode.combine(hashFunction, right, Digest.EMPTY);
+            }
+            return right == null ? frontier[height] : right;
+        }
+
+        /**
+         * Restituisce l'albero di Merkle con le foglie aggiunte finora. Il
+         * builder resta utilizzabile.
+         *
+         * @return l'albero di Merkle.
+         * @throws IllegalStateException se il builder non conserva l'albero o
+         *                               se non è stata aggiunta alcuna
+         *                               foglia.
+         */
+        public MerkleTree<T> build() {
+            if (nodes == null) throw new IllegalStateException("Il builder non conserva l'albero");
+            if (width == 0) throw new IllegalStateException("Nessuna foglia aggiunta");
+            int height = 64 - Long.numberOfLeadingZeros(width - 1);
+            MerkleNode right = null;
+            for (int level = 0; level < height; level++) {
+                if (nodes[level] != null) {
+                    MerkleNode sibling = right == null ? paddingSubtree(level) : right;
+                    right = new MerkleNode(DigestPool.intern(
+                            hashMode.combine(hashFunction, nodes[level].getDigest(), sibling.getDigest())),
+                            nodes[level], sibling);
+                } else if (right != null) {
+                    right = new MerkleNode(DigestPool.intern(
+                            hashMode.combine(hashFunction, right.getDigest(), Digest.EMPTY)),
+                            right, paddingSubtree(level));
+                }
+            }
+            return new MerkleTree<>(right == null ? nodes[height] : right, leaves, hashFunction, hashMode,
+                    encoder, indexBranches);
+        }
+    }
 }
@@ -3,11 +3,19 @@ package it.unicam.cs.asdl2425.mp1;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.lang.reflect.Field;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -77,6 +85,50 @@ import static org.junit.jupiter.api.Assertions.*;
  * 
  * <li>{@link #testSingleLeafTree()}: Verifica il comportamento del MerkleTree per un singolo elemento,
  * controllando larghezza, altezza e validità dei dati.</li>
+ * 
+ * <li>{@link #testTreeWithHashFunction()}: Verifica la costruzione di un MerkleTree con una funzione
+ * di hash diversa da MD5 e che le prove generate registrino e usino tale funzione.</li>
+ * 
+ * <li>{@link #testTreeWithRawBytesMode()}: Verifica che un MerkleTree costruito sui byte dei digest
+ * abbia la radice attesa e generi prove verificabili nella stessa modalità.</li>
+ * 
+ * <li>{@link #testDuplicateData()}: Verifica che per dati ripetuti ricerca e prove si riferiscano
+ * alla prima occorrenza.</li>
+ * 
+ * <li>{@link #testBranchIndex()}: Verifica che un MerkleTree con l'indice dei nodi intermedi validi
+ * gli stessi branch e generi le stesse prove di uno senza indice.</li>
+ * 
+ * <li>{@link #testParallelConstruction()}: Verifica che la costruzione parallela, per diverse larghezze
+ * e soglie, produca lo stesso albero di quella sequenziale.</li>
+ * 
+ * <li>{@link #testBuilder()}: Verifica che il builder incrementale calcoli la stessa radice di un
+ * MerkleTree costruito dalla lista e, se conserva l'albero, restituisca un albero equivalente.</li>
+ * 
+ * <li>{@link #testBuilderInvalidUse()}: Verifica che il builder lanci eccezioni per argomenti e
+ * stati non validi.</li>
+ * 
+ * <li>{@link #testWithLeaf()}: Verifica che la sostituzione di una foglia produca lo stesso albero
+ * ricostruito dalla lista modificata, condividendo i nodi non modificati.</li>
+ * 
+ * <li>{@link #testWithLeaves()}: Verifica la sostituzione di più foglie e le eccezioni per indici e
+ * dati non validi.</li>
+ * 
+ * <li>{@link #testDerivedIndices()}: Verifica che gli indici derivati da una serie di sostituzioni
+ * e di aggiunte in coda, anche con dati ripetuti, raddoppi dell'albero e oltre il limite delle
+ * posizioni sostituite, diano gli stessi risultati di quelli dell'albero ricostruito.</li>
+ * 
+ * <li>{@link #testAppend()}: Verifica che l'aggiunta di foglie in coda produca lo stesso albero
+ * ricostruito dalla lista, riutilizzando i nodi esistenti anche quando l'albero raddoppia.</li>
+ * 
+ * <li>{@link #testFindInvalidDataBitSet()}: Verifica che gli indici non validi siano corretti anche
+ * con foglie ripetute e con foglie aggiuntive nell'altro albero.</li>
+ * 
+ * <li>{@link #testParallelFindInvalidData()}: Verifica che il confronto parallelo trovi gli stessi
+ * indici di quello sequenziale, rispetti il limite e possa essere annullato.</li>
+ * 
+ * <li>{@link #testGetMerkleProofAt()}: Verifica che le prove per indice e per posizione
+ * coincidano con quelle per dato e per branch e che un argomento int selezioni la prova per
+ * dato.</li>
  * </ul>
  */
 class MerkleTreeTest {
@@ -274,7 +326,7 @@ class MerkleTreeTest {
 
     @Test
     void testValidateBranch2() {
-        MerkleNode invalidNode = new MerkleNode("HashNonValido");
+        MerkleNode invalidNode = new MerkleNode(HashUtil.dataToHash("HashNonValido"));
         assertFalse(merkleTree1.validateBranch(invalidNode),
                 "Un nodo con hash non valido non dovrebbe essere valido.");
     }
@@ -490,41 +542,21 @@ class MerkleTreeTest {
 
     @Test
     void testVerifyProofData4(){
-        try {
-            MerkleProof proof =  merkleTree1.getMerkleProof("Alice paga Bob");
-            Class<?> clazz = proof.getClass();
-            Field privateField = clazz.getDeclaredField("proof");
-            privateField.setAccessible(true);
-
-            HashLinkedList<MerkleProof.MerkleProofHash> list = (HashLinkedList<MerkleProof.MerkleProofHash>) privateField.get(proof);
-
-            Iterator<MerkleProof.MerkleProofHash> itr = list.iterator();
-            assertTrue(itr.hasNext());
-            MerkleProof.MerkleProofHash hash = itr.next();
-            assertEquals(HashUtil.dataToHash("Bob paga Charlie"), hash.getHash(), "L'hash dovrebbe essere uguale a quello di 'Bob paga Charlie'");
-            assertFalse(hash.isLeft(), "L'hash dovrebbe essere concatenato a destra");
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        MerkleProof proof =  merkleTree1.getMerkleProof("Alice paga Bob");
+        Iterator<MerkleProof.MerkleProofHash> itr = proof.getHashes().iterator();
+        assertTrue(itr.hasNext());
+        MerkleProof.MerkleProofHash hash = itr.next();
+        assertEquals(HashUtil.dataToHash("Bob paga Charlie"), hash.getHash(), "L'hash dovrebbe essere uguale a quello di 'Bob paga Charlie'");
+        assertFalse(hash.isLeft(), "L'hash dovrebbe essere concatenato a destra");
     }
 
     @Test
     void testVerifyProofData5(){
-        try {
-            MerkleProof proof =  merkleTree2.getMerkleProof(1443L);
-            Class<?> clazz = proof.getClass();
-            Field privateField = clazz.getDeclaredField("proof");
-            privateField.setAccessible(true);
-
-            HashLinkedList<MerkleProof.MerkleProofHash> list = (HashLinkedList<MerkleProof.MerkleProofHash>) privateField.get(proof);
-
-            Iterator<MerkleProof.MerkleProofHash> itr = list.iterator();
-            assertTrue(itr.hasNext() && itr.next().getHash().equals(""));
-            assertTrue(itr.hasNext() && itr.next().getHash().equals(""));
-            assertTrue(itr.hasNext() && !itr.next().getHash().equals(""));
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        MerkleProof proof =  merkleTree2.getMerkleProof(1443L);
+        Iterator<MerkleProof.MerkleProofHash> itr = proof.getHashes().iterator();
+        assertTrue(itr.hasNext() && itr.next().getHash().equals(""));
+        assertTrue(itr.hasNext() && itr.next().getHash().equals(""));
+        assertTrue(itr.hasNext() && !itr.next().getHash().equals(""));
     }
 
     @Test
@@ -576,4 +608,422 @@ class MerkleTreeTest {
         assertTrue(singleTree.validateData("Alice paga Bob"),
                 "Il dato dovrebbe essere valido.");
     }
+
+    @Test
+    void testTreeWithHashFunction() {
+        MerkleTree<String> shaTree = new MerkleTree<>(hashList1, HashFunction.SHA_256);
+        assertEquals(Digest.SHA256_LENGTH, shaTree.getRoot().getDigest().length(),
+                "La radice dovrebbe avere un digest SHA-256.");
+        assertNotEquals(merkleTree1.getRoot(), shaTree.getRoot(),
+                "Alberi con funzioni di hash diverse dovrebbero avere radici diverse.");
+        assertEquals(2, shaTree.getIndexOfData("Charlie paga Diana"),
+                "L'indice del dato dovrebbe essere indipendente dalla funzione di hash.");
+
+        HashLinkedList<String> shaList = new HashLinkedList<>(HashFunction.SHA_256);
+        for (String data : hashList1) shaList.addAtTail(data);
+        assertEquals(shaTree.getRoot(), new MerkleTree<>(shaList).getRoot(),
+                "L'albero dovrebbe riutilizzare la funzione di hash della lista.");
+
+        MerkleProof proof = shaTree.getMerkleProof("Bob paga Charlie");
+        assertSame(HashFunction.SHA_256, proof.getHashFunction(),
+                "La prova dovrebbe registrare la funzione di hash dell'albero.");
+        assertTrue(proof.proveValidityOfData("Bob paga Charlie"),
+                "La prova di Merkle dovrebbe essere valida.");
+        assertFalse(merkleTree1.validateTree(shaTree),
+                "Alberi con funzioni di hash diverse non dovrebbero essere validi.");
+    }
+
+    @Test
+    void testTreeWithRawBytesMode() {
+        MerkleTree<Long> rawTree = new MerkleTree<>(hashList2, HashFunction.MD5, TreeHashMode.RAW_BYTES);
+        assertEquals(merkleTree2.getWidth(), rawTree.getWidth(), "La larghezza non dovrebbe dipendere dalla modalità.");
+        assertNotEquals(merkleTree2.getRoot(), rawTree.getRoot(),
+                "Alberi con modalità diverse dovrebbero avere radici diverse.");
+
+        MerkleTree<String> rawTree1 = new MerkleTree<>(hashList1, HashFunction.MD5, TreeHashMode.RAW_BYTES);
+        Digest left = HashUtil.computeDigest(concat(HashUtil.dataToDigest("Alice paga Bob"), HashUtil.dataToDigest("Bob paga Charlie")));
+        Digest right = HashUtil.computeDigest(concat(HashUtil.dataToDigest("Charlie paga Diana"), HashUtil.dataToDigest("Diana paga Alice")));
+        assertEquals(HashUtil.computeDigest(concat(left, right)), rawTree1.getRoot().getDigest(),
+                "La radice dovrebbe essere calcolata sui byte dei digest dei figli.");
+
+        MerkleProof proof = rawTree.getMerkleProof(1443L);
+        assertEquals(TreeHashMode.RAW_BYTES, proof.getHashMode(), "La prova dovrebbe registrare la modalità dell'albero.");
+        assertTrue(proof.proveValidityOfData(1443L), "La prova di Merkle dovrebbe essere valida.");
+        assertFalse(merkleTree2.validateTree(rawTree), "Alberi con modalità diverse non dovrebbero essere validi.");
+        assertThrows(IllegalArgumentException.class, () -> merkleTree2.findInvalidDataIndices(rawTree),
+                "Dovrebbe lanciare IllegalArgumentException per alberi con modalità diverse.");
+    }
+
+    @Test
+    void testDuplicateData() {
+        HashLinkedList<String> list = new HashLinkedList<>();
+        for (String data : new String[] { "A", "B", "A", "C", "B" }) list.addAtTail(data);
+        MerkleTree<String> tree = new MerkleTree<>(list);
+
+        assertEquals(0, tree.getIndexOfData("A"), "Dovrebbe essere restituita la prima occorrenza.");
+        assertEquals(1, tree.getIndexOfData("B"), "Dovrebbe essere restituita la prima occorrenza.");
+        assertEquals(3, tree.getIndexOfData("C"), "L'indice del dato non è corretto.");
+        assertEquals(-1, tree.getIndexOfData("D"), "Un dato non presente dovrebbe avere indice -1.");
+        MerkleProof proof = tree.getMerkleProof("B");
+        assertEquals(3, proof.getLength(), "La lunghezza della prova non è corretta.");
+        assertTrue(proof.proveValidityOfData("B"), "La prova di Merkle dovrebbe essere valida.");
+    }
+
+    @Test
+    void testBranchIndex() {
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        for (int i = 0; i < 11; i++) list.addAtTail(i);
+        MerkleTree<Integer> plain = new MerkleTree<>(list);
+        MerkleTree<Integer> indexed = new MerkleTree<>(list, HashFunction.MD5, TreeHashMode.HEX_CONCAT,
+                DataEncoder.HASH_CODE, true);
+        assertFalse(plain.hasBranchIndex(), "L'albero non dovrebbe avere l'indice dei nodi intermedi.");
+        assertTrue(indexed.hasBranchIndex(), "L'albero dovrebbe avere l'indice dei nodi intermedi.");
+        assertEquals(plain.getRoot(), indexed.getRoot(), "L'indice non dovrebbe cambiare la radice.");
+
+        MerkleNode[] branches = { plain.getRoot(), plain.getRoot().getLeft(), plain.getRoot().getRight().getLeft(),
+                plain.getRoot().getRight().getLeft().getRight().getRight(), plain.getRoot().getRight().getRight() };
+        for (MerkleNode branch : branches) {
+            assertTrue(indexed.validateBranch(branch), "Il branch dovrebbe essere valido.");
+            MerkleProof proof = indexed.getMerkleProof(branch);
+            assertEquals(plain.getMerkleProof(branch).getLength(), proof.getLength(),
+                    "La lunghezza della prova non è corretta.");
+            assertTrue(proof.proveValidityOfBranch(branch), "La prova del branch dovrebbe essere valida.");
+        }
+        MerkleNode foreign = new MerkleNode(HashUtil.dataToDigest(42));
+        assertFalse(indexed.validateBranch(foreign), "Un branch non presente non dovrebbe essere valido.");
+        assertFalse(indexed.validateBranch(null), "Un branch nullo non dovrebbe essere valido.");
+        assertThrows(IllegalArgumentException.class, () -> indexed.getMerkleProof(foreign),
+                "Dovrebbe lanciare IllegalArgumentException per un branch non presente.");
+    }
+
+    @Test
+    void testParallelConstruction() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int size : new int[] { 2, 5, 8, 13, 100 }) {
+                HashLinkedList<Integer> list = new HashLinkedList<>();
+                for (int i = 0; i < size; i++) list.addAtTail(i);
+                MerkleTree<Integer> sequential = new MerkleTree<>(list);
+                for (int threshold : new int[] { 1, 2, 16 }) {
+                    MerkleTree<Integer> parallel = new MerkleTree<>(list, HashFunction.MD5, TreeHashMode.HEX_CONCAT,
+                            DataEncoder.HASH_CODE, true, pool, threshold);
+                    assertEquals(sequential.getRoot(), parallel.getRoot(), "La radice non è corretta.");
+                    assertEquals(sequential.getRoot().getLeft(), parallel.getRoot().getLeft(),
+                            "Il nodo intermedio non è corretto.");
+                    assertEquals(sequential.getHeight(), parallel.getHeight(), "L'altezza non è corretta.");
+                    assertTrue(parallel.validateBranch(sequential.getRoot().getRight()),
+                            "Il branch dovrebbe essere valido.");
+                    assertTrue(parallel.getMerkleProof(size - 1).proveValidityOfData(size - 1),
+                            "La prova di Merkle dovrebbe essere valida.");
+                }
+            }
+            HashLinkedList<Integer> list = new HashLinkedList<>();
+            list.addAtTail(1);
+            assertThrows(IllegalArgumentException.class, () -> new MerkleTree<>(list, HashFunction.MD5,
+                            TreeHashMode.HEX_CONCAT, DataEncoder.HASH_CODE, false, pool, 0),
+                    "Dovrebbe lanciare IllegalArgumentException per una soglia non positiva.");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testBuilder() {
+        for (TreeHashMode mode : TreeHashMode.values()) {
+            MerkleTree.Builder<Integer> streaming = new MerkleTree.Builder<>(HashFunction.MD5, mode, DataEncoder.HASH_CODE);
+            MerkleTree.Builder<Integer> retaining = new MerkleTree.Builder<Integer>(HashFunction.MD5, mode, DataEncoder.HASH_CODE)
+                    .retainTree(true).indexBranches(true);
+            HashLinkedList<Integer> list = new HashLinkedList<>();
+            for (int size = 1; size <= 17; size++) {
+                list.addAtTail(size);
+                streaming.add(size);
+                retaining.add(size);
+                MerkleTree<Integer> expected = new MerkleTree<>(list, HashFunction.MD5, mode);
+                assertEquals(size, streaming.getWidth(), "Il numero di foglie non è corretto.");
+                assertEquals(expected.getRoot().getDigest(), streaming.getRootDigest(), "La radice non è corretta.");
+
+                MerkleTree<Integer> tree = retaining.build();
+                assertEquals(expected.getRoot(), tree.getRoot(), "La radice dell'albero non è corretta.");
+                assertEquals(expected.getHeight(), tree.getHeight(), "L'altezza non è corretta.");
+                assertEquals(size, tree.getWidth(), "La larghezza non è corretta.");
+                assertEquals(size - 1, tree.getIndexOfData(size), "L'indice del dato non è corretto.");
+                assertTrue(tree.getMerkleProof(size).proveValidityOfData(size),
+                        "La prova di Merkle dovrebbe essere valida.");
+                assertTrue(tree.validateTree(expected), "L'albero dovrebbe essere valido.");
+                if (size > 1)
+                    assertTrue(tree.validateBranch(expected.getRoot().getRight()), "Il branch dovrebbe essere valido.");
+            }
+        }
+        MerkleTree.Builder<Integer> fromStream = new MerkleTree.Builder<Integer>().addAll(IntStream.range(0, 5000).boxed());
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        for (int i = 0; i < 5000; i++) list.addAtTail(i);
+        assertEquals(new MerkleTree<>(list).getRoot().getDigest(), fromStream.getRootDigest(),
+                "La radice costruita dallo stream non è corretta.");
+    }
+
+    @Test
+    void testBuilderInvalidUse() {
+        MerkleTree.Builder<Integer> builder = new MerkleTree.Builder<>();
+        assertThrows(IllegalStateException.class, builder::getRootDigest,
+                "Dovrebbe lanciare IllegalStateException per un builder senza foglie.");
+        assertThrows(IllegalArgumentException.class, () -> builder.add(null),
+                "Dovrebbe lanciare IllegalArgumentException per un dato nullo.");
+        assertThrows(IllegalArgumentException.class, () -> builder.addAll(Arrays.asList(1, null).iterator()),
+                "Dovrebbe lanciare IllegalArgumentException per un dato nullo.");
+        assertThrows(IllegalArgumentException.class, () -> builder.addAll((Stream<Integer>) null),
+                "Dovrebbe lanciare IllegalArgumentException per uno stream nullo.");
+        assertThrows(IllegalArgumentException.class, () -> builder.addDigest(HashFunction.SHA_256.hash(new byte[1])),
+                "Dovrebbe lanciare IllegalArgumentException per un digest di lunghezza diversa.");
+        builder.add(1);
+        assertThrows(IllegalStateException.class, builder::build,
+                "Dovrebbe lanciare IllegalStateException per un builder che non conserva l'albero.");
+        assertThrows(IllegalStateException.class, () -> builder.retainTree(true),
+                "Dovrebbe lanciare IllegalStateException dopo l'aggiunta di foglie.");
+        assertThrows(IllegalArgumentException.class, () -> new MerkleTree.Builder<Integer>(null, TreeHashMode.HEX_CONCAT,
+                DataEncoder.HASH_CODE), "Dovrebbe lanciare IllegalArgumentException per una funzione nulla.");
+    }
+
+    private static HashLinkedList<Integer> listOf(int size, int index, int value) {
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        for (int i = 0; i < size; i++) list.addAtTail(i == index ? value : i);
+        return list;
+    }
+
+    @Test
+    void testWithLeaf() {
+        MerkleTree<Integer> tree = new MerkleTree<>(listOf(11, -1, 0), HashFunction.MD5, TreeHashMode.HEX_CONCAT,
+                DataEncoder.HASH_CODE, true);
+        MerkleTree<Integer> updated = tree.withLeaf(3, 42);
+
+        assertEquals(new MerkleTree<>(listOf(11, 3, 42)).getRoot(), updated.getRoot(), "La radice non è corretta.");
+        assertEquals(new MerkleTree<>(listOf(11, -1, 0)).getRoot(), tree.getRoot(), "L'albero originale non dovrebbe cambiare.");
+        assertSame(tree.getRoot().getRight(), updated.getRoot().getRight(), "Il sottoalbero non modificato dovrebbe essere condiviso.");
+        assertSame(tree.getRoot().getLeft().getLeft().getLeft(), updated.getRoot().getLeft().getLeft().getLeft(),
+                "Il sottoalbero non modificato dovrebbe essere condiviso.");
+        assertEquals(11, updated.getWidth(), "La larghezza non è corretta.");
+        assertEquals(3, updated.getIndexOfData(42), "L'indice del dato non è corretto.");
+        assertFalse(updated.validateData(3), "Il dato sostituito non dovrebbe essere valido.");
+        assertTrue(updated.validateData(3 + 1), "Il dato dovrebbe essere valido.");
+        assertTrue(updated.validateBranch(updated.getRoot().getLeft()), "Il branch dovrebbe essere valido.");
+        assertFalse(updated.validateBranch(tree.getRoot().getLeft()), "Il branch sostituito non dovrebbe essere valido.");
+        assertTrue(updated.getMerkleProof(42).proveValidityOfData(42), "La prova di Merkle dovrebbe essere valida.");
+        assertSame(tree, tree.withLeaf(5, 5), "Un dato invariato non dovrebbe creare una nuova versione.");
+
+        MerkleTree<Integer> single = new MerkleTree<>(listOf(1, -1, 0)).withLeaf(0, 7);
+        assertEquals(new MerkleTree<>(listOf(1, 0, 7)).getRoot(), single.getRoot(), "La radice non è corretta.");
+    }
+
+    @Test
+    void testWithLeaves() {
+        MerkleTree<Integer> tree = new MerkleTree<>(listOf(13, -1, 0));
+        Map<Integer, Integer> updates = new HashMap<>();
+        updates.put(12, 112);
+        updates.put(0, 100);
+        updates.put(5, 105);
+        HashLinkedList<Integer> expected = new HashLinkedList<>();
+        for (int i = 0; i < 13; i++) expected.addAtTail(updates.getOrDefault(i, i));
+
+        MerkleTree<Integer> updated = tree.withLeaves(updates);
+        assertEquals(new MerkleTree<>(expected).getRoot(), updated.getRoot(), "La radice non è corretta.");
+        assertEquals(tree.withLeaf(0, 100).withLeaf(5, 105).withLeaf(12, 112).getRoot(), updated.getRoot(),
+                "Le sostituzioni multiple dovrebbero equivalere a quelle singole.");
+        assertEquals(12, updated.getIndexOfData(112), "L'indice del dato non è corretto.");
+        assertSame(tree, tree.withLeaves(new HashMap<>()), "Nessuna sostituzione non dovrebbe creare una nuova versione.");
+
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.withLeaf(13, 1),
+                "Dovrebbe lanciare IndexOutOfBoundsException per un indice fuori dall'albero.");
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.withLeaves(Map.of(-1, 1)),
+                "Dovrebbe lanciare IndexOutOfBoundsException per un indice negativo.");
+        assertThrows(IllegalArgumentException.class, () -> tree.withLeaf(0, null),
+                "Dovrebbe lanciare IllegalArgumentException per un dato nullo.");
+        assertThrows(IllegalArgumentException.class, () -> tree.withLeaves(null),
+                "Dovrebbe lanciare IllegalArgumentException per una mappa nulla.");
+    }
+
+    @Test
+    void testDerivedIndices() {
+        Random random = new Random(42);
+        for (int size : new int[] { 37, 3000 }) {
+            int[] data = new int[size];
+            HashLinkedList<Integer> list = new HashLinkedList<>();
+            for (int i = 0; i < size; i++) list.addAtTail(data[i] = i % 16);
+            MerkleTree<Integer> tree = new MerkleTree<>(list, HashFunction.MD5, TreeHashMode.HEX_CONCAT,
+                    DataEncoder.HASH_CODE, true);
+            for (int step = 0; step < 400; step++) {
+                if (step % 10 == 9) {
+                    Map<Integer, Integer> updates = new HashMap<>();
+                    for (int j = 0; j < 5; j++) updates.put(random.nextInt(size), random.nextInt(20));
+                    updates.forEach((index, value) -> data[index] = value);
+                    tree = tree.withLeaves(updates);
+                } else {
+                    int index = random.nextInt(size);
+                    data[index] = random.nextInt(20);
+                    tree = tree.withLeaf(index, data[index]);
+                }
+                if (step % 200 != 199 && size > 100) continue;
+                HashLinkedList<Integer> current = new HashLinkedList<>();
+                for (int value : data) current.addAtTail(value);
+                MerkleTree<Integer> expected = new MerkleTree<>(current, HashFunction.MD5, TreeHashMode.HEX_CONCAT,
+                        DataEncoder.HASH_CODE, true);
+                for (int value = 0; value < 21; value++)
+                    assertEquals(expected.getIndexOfData(value), tree.getIndexOfData(value),
+                            "L'indice del dato non è corretto.");
+                MerkleNode[] branches = { expected.getRoot().getLeft(), expected.getRoot().getRight().getLeft(),
+                        expected.getRoot().getLeft().getRight().getLeft() };
+                for (MerkleNode branch : branches)
+                    assertEquals(expected.getMerkleProof(branch).getHashes(), tree.getMerkleProof(branch).getHashes(),
+                            "La prova del branch non è corretta.");
+            }
+        }
+
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        list.addAtTail(0);
+        MerkleTree<Integer> tree = new MerkleTree<>(list, HashFunction.MD5, TreeHashMode.HEX_CONCAT,
+                DataEncoder.HASH_CODE, true);
+        for (int i = 1; i <= 300; i++) {
+            tree = tree.append(i % 7);
+            list.addAtTail(i % 7);
+            if (i > 40 && i % 50 != 0) continue;
+            MerkleTree<Integer> expected = new MerkleTree<>(list, HashFunction.MD5, TreeHashMode.HEX_CONCAT,
+                    DataEncoder.HASH_CODE, true);
+            for (int value = 0; value < 8; value++)
+                assertEquals(expected.getIndexOfData(value), tree.getIndexOfData(value),
+                        "L'indice del dato non è corretto.");
+            for (MerkleNode branch : new MerkleNode[] { expected.getRoot(), expected.getRoot().getLeft(),
+                    expected.getRoot().getRight() })
+                assertEquals(expected.getMerkleProof(branch).getHashes(), tree.getMerkleProof(branch).getHashes(),
+                        "La prova del branch non è corretta.");
+        }
+    }
+
+    @Test
+    void testAppend() {
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        list.addAtTail(0);
+        MerkleTree<Integer> tree = new MerkleTree<>(list);
+        for (int i = 1; i <= 20; i++) {
+            MerkleTree<Integer> previous = tree;
+            tree = tree.append(i);
+            list.addAtTail(i);
+            MerkleTree<Integer> expected = new MerkleTree<>(list);
+            assertEquals(expected.getRoot(), tree.getRoot(), "La radice non è corretta.");
+            assertEquals(expected.getHeight(), tree.getHeight(), "L'altezza non è corretta.");
+            assertEquals(i + 1, tree.getWidth(), "La larghezza non è corretta.");
+            assertEquals(i, previous.getWidth(), "L'albero precedente non dovrebbe cambiare.");
+            assertEquals(i, tree.getIndexOfData(i), "L'indice del dato non è corretto.");
+            assertTrue(tree.getMerkleProof(i).proveValidityOfData(i), "La prova di Merkle dovrebbe essere valida.");
+            if (Integer.bitCount(i) == 1)
+                assertSame(previous.getRoot(), tree.getRoot().getLeft(), "La radice precedente dovrebbe diventare il figlio sinistro.");
+            else
+                assertSame(previous.getRoot().getLeft(), tree.getRoot().getLeft(), "Il sottoalbero sinistro dovrebbe essere condiviso.");
+        }
+        assertThrows(IllegalArgumentException.class, () -> new MerkleTree<>(list).append(null),
+                "Dovrebbe lanciare IllegalArgumentException per un dato nullo.");
+    }
+
+    @Test
+    void testFindInvalidDataBitSet() {
+        HashLinkedList<String> list = new HashLinkedList<>();
+        HashLinkedList<String> other = new HashLinkedList<>();
+        String[] data = { "A", "B", "A", "C", "A", "B" };
+        for (int i = 0; i < data.length; i++) {
+            list.addAtTail(data[i]);
+            other.addAtTail(i == 2 || i == 5 ? "X" : data[i]);
+        }
+        MerkleTree<String> tree = new MerkleTree<>(list);
+        BitSet expected = new BitSet();
+        expected.set(2);
+        expected.set(5);
+        assertEquals(expected, tree.findInvalidDataBitSet(new MerkleTree<>(other)),
+                "Gli indici delle foglie ripetute non sono corretti.");
+        assertEquals(Set.of(2, 5), tree.findInvalidDataIndices(new MerkleTree<>(other)),
+                "Gli indici delle foglie ripetute non sono corretti.");
+        assertTrue(tree.findInvalidDataBitSet(tree.withLeaf(0, "A")).isEmpty(),
+                "Alberi uguali non dovrebbero avere indici non validi.");
+
+        other.addAtTail("D");
+        other.addAtTail("E");
+        assertEquals(Set.of(2, 5, 6, 7), tree.findInvalidDataIndices(new MerkleTree<>(other)),
+                "Le foglie aggiuntive dovrebbero essere non valide.");
+    }
+
+    @Test
+    void testParallelFindInvalidData() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            HashLinkedList<Integer> list = new HashLinkedList<>();
+            HashLinkedList<Integer> other = new HashLinkedList<>();
+            for (int i = 0; i < 1000; i++) {
+                list.addAtTail(i);
+                other.addAtTail(i % 7 == 3 ? -i : i);
+            }
+            MerkleTree<Integer> tree = new MerkleTree<>(list);
+            MerkleTree<Integer> otherTree = new MerkleTree<>(other);
+            BitSet expected = tree.findInvalidDataBitSet(otherTree);
+            for (int forkDepth : new int[] { 0, 1, 4, 20 })
+                assertEquals(expected, tree.findInvalidDataBitSet(otherTree, pool, forkDepth),
+                        "Gli indici non validi non sono corretti.");
+
+            BitSet limited = tree.findInvalidDataBitSet(otherTree, pool, 4, 10, new AtomicBoolean());
+            assertEquals(10, limited.cardinality(), "Dovrebbero essere trovati esattamente 10 indici.");
+            limited.andNot(expected);
+            assertTrue(limited.isEmpty(), "Gli indici trovati dovrebbero essere non validi.");
+            assertTrue(tree.findInvalidDataBitSet(tree, pool, 4, 1, null).isEmpty(),
+                    "Alberi uguali non dovrebbero avere indici non validi.");
+
+            assertThrows(CancellationException.class,
+                    () -> tree.findInvalidDataBitSet(otherTree, pool, 4, 10, new AtomicBoolean(true)),
+                    "Dovrebbe lanciare CancellationException per un confronto annullato.");
+            assertThrows(IllegalArgumentException.class,
+                    () -> tree.findInvalidDataBitSet(new MerkleTree<>(listOf(3000, -1, 0)), pool, 4),
+                    "Dovrebbe lanciare IllegalArgumentException per alberi con struttura diversa.");
+            assertThrows(IllegalArgumentException.class, () -> tree.findInvalidDataBitSet(otherTree, pool, 4, 0, null),
+                    "Dovrebbe lanciare IllegalArgumentException per un limite non positivo.");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testGetMerkleProofAt() {
+        for (int i = 0; i < 13; i++) {
+            MerkleProof proof = merkleTree2.getMerkleProofAt(i);
+            assertEquals(merkleTree2.getHeight(), proof.getLength(), "La lunghezza della prova non è corretta.");
+            assertTrue(proof.proveValidityOfData(111L * (i + 1)), "La prova di Merkle dovrebbe essere valida.");
+        }
+        MerkleNode branch = merkleTree2.getRoot().getRight().getLeft();
+        MerkleProof proof = merkleTree2.getMerkleProofAt(2, 2);
+        assertEquals(2, proof.getLength(), "La lunghezza della prova non è corretta.");
+        assertTrue(proof.proveValidityOfBranch(branch), "La prova del branch dovrebbe essere valida.");
+        assertFalse(proof.proveValidityOfBranch(merkleTree2.getRoot().getLeft().getLeft()),
+                "La prova non dovrebbe validare un altro branch.");
+        assertEquals(0, merkleTree2.getMerkleProofAt(0, 0).getLength(), "La prova della radice dovrebbe essere vuota.");
+        assertTrue(merkleTree2.getMerkleProofAt(0, 0).proveValidityOfBranch(merkleTree2.getRoot()),
+                "La prova della radice dovrebbe essere valida.");
+
+        HashLinkedList<Integer> integers = new HashLinkedList<>();
+        for (int i = 0; i < 5; i++)
+            integers.addAtTail(10 * i);
+        MerkleTree<Integer> integerTree = new MerkleTree<>(integers);
+        assertTrue(integerTree.getMerkleProof(30).proveValidityOfData(30),
+                "Un argomento int dovrebbe selezionare la prova per dato.");
+        assertEquals(integerTree.getMerkleProofAt(3).getHashes(), integerTree.getMerkleProof(30).getHashes(),
+                "La prova per indice dovrebbe coincidere con quella per dato.");
+
+        assertThrows(IndexOutOfBoundsException.class, () -> merkleTree2.getMerkleProofAt(13),
+                "Dovrebbe lanciare IndexOutOfBoundsException per un indice fuori dall'albero.");
+        assertThrows(IndexOutOfBoundsException.class, () -> merkleTree2.getMerkleProofAt(-1),
+                "Dovrebbe lanciare IndexOutOfBoundsException per un indice negativo.");
+        assertThrows(IndexOutOfBoundsException.class, () -> merkleTree2.getMerkleProofAt(5, 0),
+                "Dovrebbe lanciare IndexOutOfBoundsException per un livello non presente.");
+        assertThrows(IndexOutOfBoundsException.class, () -> merkleTree2.getMerkleProofAt(2, 4),
+                "Dovrebbe lanciare IndexOutOfBoundsException per una posizione non presente.");
+    }
+
+    private static byte[] concat(Digest left, Digest right) {
+        byte[] bytes = new byte[left.length() + right.length()];
+        left.writeTo(bytes, 0);
+        right.writeTo(bytes, left.length());
+        return bytes;
+    }
 }
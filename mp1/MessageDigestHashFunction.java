@@ -0,0 +1,139 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Funzione di hash basata su un algoritmo di {@link MessageDigest} fornito
+ * dalla piattaforma. I metodi {@code hash} usano un'istanza di MessageDigest
+ * e un buffer di output riutilizzati per thread, evitando la ricerca del
+ * provider e l'allocazione del risultato a ogni invocazione.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+class MessageDigestHashFunction implements HashFunction {
+
+    private final String algorithm; // Nome dell'algoritmo per MessageDigest.
+
+    private final int digestLength; // Lunghezza in byte del digest.
+
+    private final ThreadLocal<MessageDigest> pooled; // Istanza riutilizzata da ciascun thread.
+
+    private final ThreadLocal<byte[]> output; // Buffer di output riutilizzato da ciascun thread.
+
+    MessageDigestHashFunction(String algorithm, int digestLength) {
+        this.algorithm = algorithm;
+        this.digestLength = digestLength;
+        this.pooled = ThreadLocal.withInitial(this::newMessageDigest);
+        this.output = ThreadLocal.withInitial(() -> new byte[digestLength]);
+    }
+
+    @Override
+    public String name() {
+        return algorithm;
+    }
+
+    @Override
+    public int digestLength() {
+        return digestLength;
+    }
+
+    @Override
+    public Hasher newHasher() {
+        return new MessageDigestHasher(newMessageDigest());
+    }
+
+    @Override
+    public Digest hash(byte[] input, int offset, int length) {
+        byte[] out = output.get();
+        hash(input, offset, length, out, 0);
+        return Digest.of(out);
+    }
+
+    @Override
+    public int hash(byte[] input, int offset, int length, byte[] out,
+            int outputOffset) {
+        MessageDigest md = pooled.get();
+        md.reset();                      //un'eccezione precedente potrebbe aver lasciato input pendente
+        md.update(input, offset, length);
+        return digestInto(md, out, outputOffset);
+    }
+
+    @Override
+    public int hash(ByteBuffer input, ByteBuffer out) {
+        if (out.remaining() < digestLength)
+            throw new BufferOverflowException();
+        MessageDigest md = pooled.get();
+        md.reset();
+        md.update(input);
+        if (out.hasArray()) {
+            digestInto(md, out.array(), out.arrayOffset() + out.position());
+            out.position(out.position() + digestLength);
+        } else {
+            byte[] buffer = output.get();
+            digestInto(md, buffer, 0);
+            out.put(buffer);
+        }
+        return digestLength;
+    }
+
+    /**
+     * Crea una nuova istanza di MessageDigest per l'algoritmo.
+     *
+     * @return una nuova istanza di MessageDigest.
+     * @throws RuntimeException
+     *                              se l'algoritmo di hashing non è disponibile.
+     */
+    MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(algorithm + " algorithm not found", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return algorithm;
+    }
+
+    private int digestInto(MessageDigest md, byte[] out, int offset) {
+        try {
+            return md.digest(out, offset, out.length - offset);
+        } catch (DigestException e) {
+            md.reset();
+            throw new IllegalArgumentException("Spazio insufficiente per il digest", e);
+        }
+    }
+
+    private static class MessageDigestHasher implements Hasher {
+        private final MessageDigest md;
+
+        MessageDigestHasher(MessageDigest md) {
+            this.md = md;
+        }
+
+        @Override
+        public void update(byte b) {
+            md.update(b);
+        }
+
+        @Override
+        public void update(byte[] input, int offset, int length) {
+            md.update(input, offset, length);
+        }
+
+        @Override
+        public void update(ByteBuffer input) {
+            md.update(input);
+        }
+
+        @Override
+        public Digest digest() {
+            return Digest.of(md.digest());
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package it.unicam.cs.asdl2425.mp1;
+
+/**
+ * Implementazione in Java puro di MurmurHash3, variante x64 a 128 bit con seme
+ * 0. Il digest è composto dalle due metà h1 e h2 in ordine little-endian,
+ * compatibile con le implementazioni di riferimento. Non è una funzione di
+ * hash crittografica: va usata solo quando l'integrità non deve resistere a un
+ * avversario. I metodi {@code hash} riutilizzano uno stato di calcolo per
+ * thread e non allocano altro che il digest risultante.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+class Murmur3HashFunction implements HashFunction {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private final ThreadLocal<Murmur3Hasher> pooled = ThreadLocal.withInitial(Murmur3Hasher::new);
+
+    @Override
+    public String name() {
+        return "MURMUR3_128";
+    }
+
+    @Override
+    public int digestLength() {
+        return Digest.MD5_LENGTH;
+    }
+
+    @Override
+    public Hasher newHasher() {
+        return new Murmur3Hasher();
+    }
+
+    @Override
+    public Digest hash(byte[] input, int offset, int length) {
+        Murmur3Hasher hasher = pooled.get();
+        hasher.reset();
+        hasher.update(input, offset, length);
+        return hasher.digest();
+    }
+
+    @Override
+    public int hash(byte[] input, int offset, int length, byte[] output,
+            int outputOffset) {
+        if (output.length - outputOffset < Digest.MD5_LENGTH)
+            throw new IllegalArgumentException("Spazio insufficiente per il digest");
+        Murmur3Hasher hasher = pooled.get();
+        hasher.reset();
+        hasher.update(input, offset, length);
+        hasher.finish();
+        for (int i = 0; i < 8; i++) {
+            output[outputOffset + i] = (byte) (hasher.h1 >>> (8 * i));
+            output[outputOffset + 8 + i] = (byte) (hasher.h2 >>> (8 * i));
+        }
+        hasher.reset();
+        return Digest.MD5_LENGTH;
+    }
+
+    @Override
+    public String toString() {
+        return name();
+    }
+
+    private static class Murmur3Hasher implements Hasher {
+        private final byte[] block = new byte[16]; // Blocco in attesa di essere completato.
+
+        private int blockLength; // Byte presenti nel blocco.
+
+        private long totalLength; // Byte aggiunti dall'ultimo digest.
+
+        private long h1;
+
+        private long h2;
+
+        @Override
+        public void update(byte b) {
+            block[blockLength++] = b;
+            if (blockLength == 16) {
+                mixBlock(block, 0);
+                blockLength = 0;
+            }
+            totalLength++;
+        }
+
+        @Override
+        public void update(byte[] input, int offset, int length) {
+            totalLength += length;
+            int end = offset + length;
+            if (blockLength > 0) {                      //completa il blocco parziale
+                int n = Math.min(16 - blockLength, length);
+                System.arraycopy(input, offset, block, blockLength, n);
+                blockLength += n;
+                offset += n;
+                if (blockLength < 16)
+                    return;
+                mixBlock(block, 0);
+                blockLength = 0;
+            }
+            while (end - offset >= 16) {               //blocchi interi direttamente dall'input
+                mixBlock(input, offset);
+                offset += 16;
+            }
+            blockLength = end - offset;
+            System.arraycopy(input, offset, block, 0, blockLength);
+        }
+
+        @Override
+        public Digest digest() {
+            finish();
+            // il digest è h1 seguito da h2, entrambi little-endian
+            Digest digest = Digest.ofWords(Long.reverseBytes(h1), Long.reverseBytes(h2));
+            reset();
+            return digest;
+        }
+
+        private void reset() {
+            h1 = 0;
+            h2 = 0;
+            blockLength = 0;
+            totalLength = 0;
+        }
+
+        /**
+         * Elabora il blocco parziale e applica la finalizzazione, lasciando il
+         * risultato in h1 e h2.
+         */
+        private void finish() {
+            long k1 = 0;
+            long k2 = 0;
+            for (int i = blockLength - 1; i >= 8; i--)
+                k2 = (k2 << 8) | (block[i] & 0xFF);
+            for (int i = Math.min(blockLength, 8) - 1; i >= 0; i--)
+                k1 = (k1 << 8) | (block[i] & 0xFF);
+            if (blockLength > 8) {
+                k2 *= C2;
+                k2 = Long.rotateLeft(k2, 33);
+                k2 *= C1;
+                h2 ^= k2;
+            }
+            if (blockLength > 0) {
+                k1 *= C1;
+                k1 = Long.rotateLeft(k1, 31);
+                k1 *= C2;
+                h1 ^= k1;
+            }
+
+            h1 ^= totalLength;
+            h2 ^= totalLength;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix(h1);
+            h2 = fmix(h2);
+            h1 += h2;
+            h2 += h1;
+        }
+
+        private void mixBlock(byte[] input, int offset) {
+            long k1 = readLongLE(input, offset);
+            long k2 = readLongLE(input, offset + 8);
+
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        private static long readLongLE(byte[] input, int offset) {
+            long value = 0;
+            for (int i = 7; i >= 0; i--)
+                value = (value << 8) | (input[offset + i] & 0xFF);
+            return value;
+        }
+
+        private static long fmix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
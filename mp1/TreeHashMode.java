@@ -0,0 +1,51 @@
+package it.unicam.cs.asdl2425.mp1;
+
+/**
+ * Modalità con cui il digest di un nodo intermedio di un albero di Merkle
+ * viene calcolato a partire dai digest dei due figli. Costruzione dell'albero
+ * e verifica delle prove devono usare la stessa modalità. In entrambe le
+ * modalità un nodo i cui figli hanno entrambi il digest vuoto ha a sua volta il
+ * digest vuoto, e un figlio con digest vuoto non contribuisce alcun byte.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+public enum TreeHashMode {
+
+    /**
+     * L'hash è calcolato sulla concatenazione delle rappresentazioni
+     * esadecimali dei digest dei figli, come nella formulazione originale
+     * dell'albero. È la modalità predefinita, per compatibilità con gli alberi
+     * e le prove esistenti.
+     */
+    HEX_CONCAT {
+        @Override
+        public Digest combine(HashFunction function, Digest left, Digest right) {
+            return HashUtil.combine(function, left, right);
+        }
+    },
+
+    /**
+     * L'hash è calcolato direttamente sulla concatenazione dei byte dei
+     * digest dei figli: metà dei byte da elaborare rispetto a
+     * {@link #HEX_CONCAT} e nessuna conversione esadecimale.
+     */
+    RAW_BYTES {
+        @Override
+        public Digest combine(HashFunction function, Digest left, Digest right) {
+            return HashUtil.combineRaw(function, left, right);
+        }
+    };
+
+    /**
+     * Calcola il digest di un nodo intermedio a partire dai digest dei figli.
+     *
+     * @param function
+     *                     la funzione di hash da utilizzare.
+     * @param left
+     *                     il digest del figlio sinistro.
+     * @param right
+     *                     il digest del figlio destro.
+     * @return il digest del nodo padre.
+     */
+    public abstract Digest combine(HashFunction function, Digest left, Digest right);
+}
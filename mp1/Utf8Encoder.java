@@ -0,0 +1,50 @@
+package it.unicam.cs.asdl2425.mp1;
+
+/**
+ * Codifica UTF-8 a blocchi di una sequenza di caratteri, usata dagli encoder
+ * {@link DataEncoder#CHAR_SEQUENCE} e {@link DataEncoder#STRING}. I byte sono
+ * accumulati in un buffer di dimensione fissa e inviati all'Hasher a ogni
+ * riempimento.
+ *
+ * @author Lorenzo Pane lorenzo.pane@studenti.unicam.it
+ */
+final class Utf8Encoder {
+
+    private static final int CHUNK = 256; // Dimensione del buffer di codifica.
+
+    private Utf8Encoder() {
+    }
+
+    static void encode(CharSequence data, HashFunction.Hasher sink) {
+        byte[] chunk = new byte[CHUNK];
+        int n = 0;
+        int length = data.length();
+        for (int i = 0; i < length; i++) {
+            if (n > CHUNK - 4) {                    //spazio per il carattere più lungo
+                sink.update(chunk, 0, n);
+                n = 0;
+            }
+            char c = data.charAt(i);
+            if (c < 0x80) {
+                chunk[n++] = (byte) c;
+            } else if (c < 0x800) {
+                chunk[n++] = (byte) (0xC0 | (c >> 6));
+                chunk[n++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(data.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, data.charAt(++i));
+                chunk[n++] = (byte) (0xF0 | (cp >> 18));
+                chunk[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                chunk[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                chunk[n++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                chunk[n++] = (byte) '?';
+            } else {
+                chunk[n++] = (byte) (0xE0 | (c >> 12));
+                chunk[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                chunk[n++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        sink.update(chunk, 0, n);
+    }
+}